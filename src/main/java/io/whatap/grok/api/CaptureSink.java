@@ -0,0 +1,27 @@
+package io.whatap.grok.api;
+
+/**
+ * Receives the captured fields of a successful {@link Grok#matchInto(CharSequence, CaptureSink)}
+ * straight from the matcher, without building any intermediate map or substring.
+ *
+ * <p>The {@code source} is only guaranteed to be valid for the duration of the callback;
+ * implementations that need to keep a value must copy it, e.g.
+ * {@code source.subSequence(start, end).toString()}.
+ *
+ * @since 1.0.2
+ */
+@FunctionalInterface
+public interface CaptureSink {
+
+  /**
+   * Called once per captured field, in pattern order.
+   *
+   * @param fieldIndex index of the field in the {@code Grok} field order
+   * @param fieldName final field name (reserved keywords renamed, type suffix removed)
+   * @param source the matched input, or the value alone for a field that has no group number
+   *     and is read by name (see {@link Grok#getFields()})
+   * @param start start offset of the field in {@code source}, or -1 if the group did not participate
+   * @param end end offset of the field in {@code source}, or -1 if the group did not participate
+   */
+  void capture(int fieldIndex, String fieldName, CharSequence source, int start, int end);
+}
@@ -0,0 +1,332 @@
+package io.whatap.grok.api;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.whatap.grok.api.engine.EngineMatcher;
+
+/**
+ * Column oriented result of {@link Grok#captureColumnar(List)}.
+ *
+ * <p>There is one {@link Column} per field name. Typed fields are stored in primitive arrays
+ * ({@code int[]} for byte/short/int, {@code long[]} for long, {@code double[]} for float/double,
+ * {@code boolean[]} for boolean and epoch millis {@code long[]} for datetime), everything else
+ * in a {@code String[]}. A validity bitmap per column marks rows where the field did not match
+ * or could not be converted.
+ *
+ * @since 1.0.2
+ */
+public final class ColumnarBatch {
+
+  /**
+   * Physical storage of a column.
+   */
+  public enum Storage {
+    INT, LONG, DOUBLE, BOOLEAN, EPOCH_MILLIS, STRING;
+
+    static Storage of(Converter.Type type) {
+      switch (type) {
+        case BYTE:
+        case SHORT:
+        case INT:
+          return INT;
+        case LONG:
+          return LONG;
+        case FLOAT:
+        case DOUBLE:
+          return DOUBLE;
+        case BOOLEAN:
+          return BOOLEAN;
+        case DATETIME:
+          return EPOCH_MILLIS;
+        default:
+          return STRING;
+      }
+    }
+  }
+
+  private final int size;
+  private final long[] matched;
+  private final Column[] columns;
+  private final Map<String, Column> columnsByName;
+
+  /**
+   * @param interners : interner of each field by index, {@code null} if none is interned
+   */
+  ColumnarBatch(GrokField[] fields, StringInterner[] interners, int size) {
+    this.size = size;
+    this.matched = new long[words(size)];
+    Map<String, List<GrokField>> byName = new LinkedHashMap<>();
+    for (GrokField field : fields) {
+      if (!field.isUnwanted()) {
+        byName.computeIfAbsent(field.getName(), k -> new ArrayList<>()).add(field);
+      }
+    }
+    this.columns = new Column[byName.size()];
+    this.columnsByName = new LinkedHashMap<>();
+    int index = 0;
+    for (Map.Entry<String, List<GrokField>> entry : byName.entrySet()) {
+      Column column = new Column(entry.getKey(), entry.getValue().toArray(new GrokField[0]), interners, size);
+      columns[index++] = column;
+      columnsByName.put(column.name, column);
+    }
+  }
+
+  private static int words(int size) {
+    return (size + 63) >>> 6;
+  }
+
+  private static void set(long[] bitmap, int row) {
+    bitmap[row >>> 6] |= 1L << row;
+  }
+
+  private static boolean get(long[] bitmap, int row) {
+    return (bitmap[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Store the fields of a successful match at the given row.
+   */
+  void fill(int row, CharSequence text, EngineMatcher matcher) {
+    set(matched, row);
+    for (Column column : columns) {
+      column.fill(row, text, matcher);
+    }
+  }
+
+  /**
+   * Number of rows, i.e. number of input lines.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Whether the line at {@code row} matched the pattern.
+   */
+  public boolean isMatched(int row) {
+    return get(matched, row);
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  public Column getColumn(int index) {
+    return columns[index];
+  }
+
+  /**
+   * Get a column by field name.
+   *
+   * @return the column, {@code null} if the pattern has no such field
+   */
+  public Column getColumn(String name) {
+    return columnsByName.get(name);
+  }
+
+  public List<String> getColumnNames() {
+    return Collections.unmodifiableList(new ArrayList<>(columnsByName.keySet()));
+  }
+
+  /**
+   * One field across all rows of the batch.
+   */
+  public static final class Column {
+    private final String name;
+    private final GrokField[] fields;
+    private final Converter.Type type;
+    private final Storage storage;
+    private final long[] valid;
+    private int[] ints;
+    private long[] longs;
+    private double[] doubles;
+    private boolean[] booleans;
+    private String[] strings;
+    private final StringInterner[] interners;
+
+    Column(String name, GrokField[] fields, StringInterner[] interners, int size) {
+      this.name = name;
+      this.interners = interners;
+      this.fields = fields;
+      this.type = typeOf(fields);
+      this.storage = Storage.of(type);
+      this.valid = new long[words(size)];
+      switch (storage) {
+        case INT:
+          ints = new int[size];
+          break;
+        case LONG:
+        case EPOCH_MILLIS:
+          longs = new long[size];
+          break;
+        case DOUBLE:
+          doubles = new double[size];
+          break;
+        case BOOLEAN:
+          booleans = new boolean[size];
+          break;
+        default:
+          strings = new String[size];
+          break;
+      }
+    }
+
+    /**
+     * Type shared by all the fields of this name, {@link Converter.Type#STRING} if they disagree:
+     * the text of whichever field matched is then stored as is.
+     */
+    private static Converter.Type typeOf(GrokField[] fields) {
+      Converter.Type type = fields[0].getType();
+      for (GrokField field : fields) {
+        if (field.getType() != type) {
+          return Converter.Type.STRING;
+        }
+      }
+      return type;
+    }
+
+    /**
+     * The first participating group with this name wins, as in a flattened capture.
+     */
+    void fill(int row, CharSequence text, EngineMatcher matcher) {
+      for (GrokField field : fields) {
+        if (field.getGroup() < 0) {
+          String value = Match.groupByName(matcher, field);
+          if (value != null) {
+            if (store(row, field, value, 0, value.length())) {
+              set(valid, row);
+            }
+            return;
+          }
+          continue;
+        }
+        int start = matcher.start(field.getGroup());
+        if (start >= 0) {
+          if (store(row, field, text, start, matcher.end(field.getGroup()))) {
+            set(valid, row);
+          }
+          return;
+        }
+      }
+    }
+
+    /**
+     * Numbers and booleans are parsed from the slice of {@code text}, without substring.
+     */
+    private boolean store(int row, GrokField field, CharSequence text, int start, int end) {
+      if (SliceParser.supports(type)) {
+        SliceParser parser = SliceParser.current();
+        if (parser.parse(type, text, start, end) != SliceParser.OK) {
+          return false;
+        }
+        switch (storage) {
+          case INT:
+            ints[row] = parser.intValue();
+            break;
+          case LONG:
+            longs[row] = parser.longValue();
+            break;
+          case DOUBLE:
+            doubles[row] = parser.doubleValue();
+            break;
+          default:
+            booleans[row] = parser.booleanValue();
+            break;
+        }
+        return true;
+      }
+      StringInterner interner = interners == null ? null : interners[field.getIndex()];
+      String value = interner == null ? text.subSequence(start, end).toString() : interner.intern(text, start, end);
+      if (type == Converter.Type.DATETIME) {
+        try {
+          Instant instant = (Instant) field.getConverter().convert(value);
+          if (instant == null) {
+            return false;
+          }
+          longs[row] = instant.toEpochMilli();
+          return true;
+        } catch (RuntimeException e) {
+          return false;
+        }
+      }
+      strings[row] = Match.cleanString(value);
+      return true;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Declared type of the field, {@link Converter.Type#STRING} when fields of this name are
+     * declared with different types.
+     */
+    public Converter.Type getType() {
+      return type;
+    }
+
+    public Storage getStorage() {
+      return storage;
+    }
+
+    /**
+     * Whether the row holds a value: the field matched and could be converted.
+     */
+    public boolean isValid(int row) {
+      return get(valid, row);
+    }
+
+    /**
+     * Backing array of {@link Storage#INT} columns.
+     */
+    public int[] getInts() {
+      return require(ints, Storage.INT);
+    }
+
+    /**
+     * Backing array of {@link Storage#LONG} and {@link Storage#EPOCH_MILLIS} columns.
+     */
+    public long[] getLongs() {
+      return require(longs, storage == Storage.EPOCH_MILLIS ? Storage.EPOCH_MILLIS : Storage.LONG);
+    }
+
+    /**
+     * Backing array of {@link Storage#DOUBLE} columns.
+     */
+    public double[] getDoubles() {
+      return require(doubles, Storage.DOUBLE);
+    }
+
+    /**
+     * Backing array of {@link Storage#BOOLEAN} columns.
+     */
+    public boolean[] getBooleans() {
+      return require(booleans, Storage.BOOLEAN);
+    }
+
+    /**
+     * Backing array of {@link Storage#STRING} columns.
+     */
+    public String[] getStrings() {
+      return require(strings, Storage.STRING);
+    }
+
+    private <T> T require(T array, Storage expected) {
+      if (array == null) {
+        throw new IllegalStateException(
+            String.format("Column '%s' is stored as %s, not %s", name, storage, expected));
+      }
+      return array;
+    }
+
+    @Override
+    public String toString() {
+      return "Column{" + name + ", " + storage + "}";
+    }
+  }
+}
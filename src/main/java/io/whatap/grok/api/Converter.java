@@ -88,6 +88,16 @@ public class Converter {
         ));
   }
 
+  /**
+   * Declared type of a grok key (expl: bytes:int), {@link Type#STRING} when none is declared.
+   */
+  static Type typeOfKey(String key) {
+    if (!containsDelimiter(key)) {
+      return Type.STRING;
+    }
+    return getType(splitGrokPattern(key)[1]);
+  }
+
   public static String extractKey(String key) {
     return splitGrokPattern(key)[0];
   }
@@ -110,25 +120,53 @@ public class Converter {
   }
 
 
+  /**
+   * Timestamps are first read by a {@link TimestampParser} when the formatter is
+   * {@link DateTimeFormatter#ISO_DATE_TIME} or a pattern it supports, then by the formatter.
+   * The last value converted by the formatter is memoized, log lines often repeat a timestamp.
+   */
   static class DateConverter implements IConverter<Instant> {
 
     private final DateTimeFormatter formatter;
     private final ZoneId timeZone;
+    private final TimestampParser parser;
+    private volatile LastValue lastValue;
 
     public DateConverter() {
       this.formatter = DateTimeFormatter.ISO_DATE_TIME;
       this.timeZone = ZoneOffset.UTC;
+      this.parser = TimestampParser.iso(timeZone);
     }
 
-    private DateConverter(DateTimeFormatter formatter, ZoneId timeZone) {
-      this.formatter = formatter;
+    private DateConverter(String pattern, ZoneId timeZone) {
+      this.formatter = DateTimeFormatter.ofPattern(pattern);
       this.timeZone = timeZone;
+      this.parser = TimestampParser.ofPattern(pattern, formatter.getLocale(), timeZone);
     }
 
     @Override
     public Instant convert(String value) {
+      String trimmed = value.trim();
+      if (parser != null) {
+        Instant instant = parser.parse(trimmed);
+        if (instant != null) {
+          return instant;
+        }
+      }
+      LastValue last = lastValue;
+      if (last != null && last.value.equals(trimmed)) {
+        return last.instant;
+      }
+      Instant instant = parseBest(trimmed);
+      if (instant != null) {
+        lastValue = new LastValue(trimmed, instant);
+      }
+      return instant;
+    }
+
+    private Instant parseBest(String value) {
       TemporalAccessor dt = formatter
-          .parseBest(value.trim(), ZonedDateTime::from, LocalDateTime::from, OffsetDateTime::from, Instant::from,
+          .parseBest(value, ZonedDateTime::from, LocalDateTime::from, OffsetDateTime::from, Instant::from,
               LocalDate::from);
       if (dt instanceof ZonedDateTime) {
         return ((ZonedDateTime) dt).toInstant();
@@ -150,7 +188,20 @@ public class Converter {
       if (!(params.length == 1 && params[0] instanceof ZoneId)) {
         throw new IllegalArgumentException("Invalid parameters");
       }
-      return new DateConverter(DateTimeFormatter.ofPattern(param), (ZoneId) params[0]);
+      return new DateConverter(param, (ZoneId) params[0]);
+    }
+
+    /**
+     * Immutable, published as a whole through the volatile {@link #lastValue}.
+     */
+    private static final class LastValue {
+      final String value;
+      final Instant instant;
+
+      LastValue(String value, Instant instant) {
+        this.value = value;
+        this.instant = instant;
+      }
     }
   }
 }
@@ -1,16 +1,34 @@
 package io.whatap.grok.api;
 
+import io.whatap.grok.api.engine.ByteMatcher;
 import io.whatap.grok.api.engine.CompiledPattern;
 import io.whatap.grok.api.engine.EngineMatcher;
 import io.whatap.grok.api.engine.HybridEngine;
 import io.whatap.grok.api.engine.RegexEngine;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * {@code Grok} parse arbitrary text and structure it.
@@ -27,6 +45,16 @@ public class Grok implements Serializable {
    */
   public static final int DEFAULT_MAX_INPUT_LENGTH = 1024 * 1024;
 
+  /**
+   * Default minimum number of lines per chunk of a parallel capture.
+   */
+  public static final int DEFAULT_MIN_CHUNK_SIZE = 1024;
+
+  /**
+   * Key of the single entry captured for a line that failed during a parallel capture.
+   */
+  public static final String FAILURE_KEY = "_grokfailure";
+
   /**
    * Maximum input length for matching. Set to 0 to disable limit.
    */
@@ -51,9 +79,14 @@ public class Grok implements Serializable {
   private final CompiledPattern compiledPattern;
 
   /**
-   * ThreadLocal matcher pool for improved performance.
+   * Matcher pool for improved performance, replaced by {@link #setMatcherPoolStrategy}.
+   */
+  private volatile MatcherPool matcherPool;
+
+  /**
+   * Matcher pool of the capture-free variant of {@link #compiledPattern}, created on first use.
    */
-  private final MatcherPool matcherPool;
+  private volatile MatcherPool matchOnlyPool;
 
   /**
    * {@code Grok} patterns definition.
@@ -66,6 +99,38 @@ public class Grok implements Serializable {
 
   public final Map<String, Converter.IConverter<? extends Object>> converters;
 
+  /**
+   * Field table in {@link #namedGroups} order, resolved to group numbers at construction time.
+   */
+  private final GrokField[] fields;
+
+  /**
+   * Whether a field has no group number (group -1) and is read by name from the matcher.
+   */
+  private final boolean unresolvedFields;
+
+  /**
+   * Literals required by the named regex, checked before running the regex engine.
+   */
+  private final LiteralPrefilter prefilter;
+
+  private volatile boolean prefilterEnabled = true;
+
+  private final LongAdder prefilterRejects = new LongAdder();
+
+  private final LongAdder regexRejects = new LongAdder();
+
+  /**
+   * Interner of each string field by field index, {@code null} entries for fields not interned.
+   * Replaced as a whole, never modified.
+   */
+  private volatile StringInterner[] interners;
+
+  /**
+   * Whether {@link #match(CharSequence)} only tries a match at the start of the text.
+   */
+  private boolean anchored;
+
   /**
    * {@code Grok} discovery.
    */
@@ -98,6 +163,33 @@ public class Grok implements Serializable {
     this.groupTypes = Converter.getGroupTypes(namedRegexCollection.values());
     this.converters = Converter.getConverters(namedRegexCollection.values(), defaultTimeZone);
     this.grokPatternDefinition = patternDefinitions;
+    this.fields = buildFields(namedRegex, namedGroups, namedRegexCollection, converters,
+        compiledPattern.namedGroups());
+    this.unresolvedFields = Arrays.stream(fields).anyMatch(field -> field.getGroup() < 0);
+    this.prefilter = LiteralPrefilter.forRegex(namedRegex);
+  }
+
+  private static GrokField[] buildFields(String namedRegex, Set<String> namedGroups,
+      Map<String, String> namedRegexCollection,
+      Map<String, Converter.IConverter<? extends Object>> converters,
+      Map<String, Integer> engineGroupIndexes) {
+    Map<String, Integer> groupIndexes = engineGroupIndexes != null
+        ? engineGroupIndexes : GrokUtils.getNamedGroupIndexes(namedRegex);
+    GrokField[] fields = new GrokField[namedGroups.size()];
+    int index = 0;
+    for (String groupName : namedGroups) {
+      String key = namedRegexCollection.get(groupName);
+      if (key == null || key.isEmpty()) {
+        key = groupName;
+      }
+      Converter.IConverter<? extends Object> converter = converters.get(key);
+      String name = converter != null ? Converter.extractKey(key) : key;
+      Converter.Type type = converter != null ? Converter.typeOfKey(key) : Converter.Type.STRING;
+      fields[index] = new GrokField(index, groupIndexes.getOrDefault(groupName, -1), groupName,
+          key, name, converter, type, "UNWANTED".equals(key));
+      index++;
+    }
+    return fields;
   }
 
   private static RegexEngine defaultEngine() {
@@ -108,6 +200,30 @@ public class Grok implements Serializable {
     return compiledPattern;
   }
 
+  /**
+   * Get the field table of this {@code Grok}, in named group order.
+   *
+   * @return immutable view of the fields
+   */
+  public List<GrokField> getFields() {
+    return Collections.unmodifiableList(Arrays.asList(fields));
+  }
+
+  GrokField[] fields() {
+    return fields;
+  }
+
+  /**
+   * @return true if a field could not be resolved to a group number, see {@link Match}
+   */
+  boolean hasUnresolvedFields() {
+    return unresolvedFields;
+  }
+
+  LiteralPrefilter prefilter() {
+    return prefilter;
+  }
+
   public String getEngineName() {
     return compiledPattern == null ? null : compiledPattern.getEngineName();
   }
@@ -160,9 +276,153 @@ public class Grok implements Serializable {
     return maxInputLength;
   }
 
+  /**
+   * Set by the compiler before the {@code Grok} is published, see
+   * {@link GrokCompiler#setPrefilterEnabled(boolean)}.
+   *
+   * @param enabled : false to always run the regex engine
+   */
+  void setPrefilterEnabled(boolean enabled) {
+    this.prefilterEnabled = enabled;
+  }
+
+  /**
+   * @return true if a line lacking a required literal is rejected without running the regex engine
+   */
+  public boolean isPrefilterEnabled() {
+    return prefilterEnabled;
+  }
+
+  /**
+   * Set by the compiler before the {@code Grok} is published, see
+   * {@link GrokCompiler#setMatcherPoolStrategy(MatcherPool.Strategy)}: a compiled {@code Grok}
+   * is shared by every caller compiling the same pattern.
+   */
+  synchronized void setMatcherPoolStrategy(MatcherPool.Strategy strategy) {
+    if (strategy != matcherPool.getStrategy()) {
+      matcherPool = new MatcherPool(compiledPattern, strategy);
+      matchOnlyPool = null;
+    }
+  }
+
+  /**
+   * How this {@code Grok} keeps its matchers between calls, see
+   * {@link GrokCompiler#setMatcherPoolStrategy(MatcherPool.Strategy)}.
+   */
+  public MatcherPool.Strategy getMatcherPoolStrategy() {
+    return matcherPool.getStrategy();
+  }
+
+  MatcherPool matcherPool() {
+    return matcherPool;
+  }
+
+  /**
+   * Intern the values of every untyped field with the given name, set by the compiler before
+   * the {@code Grok} is published, see {@link GrokCompiler#setInterning(String, int)}.
+   *
+   * @param fieldName : final field name
+   * @param maxSize : maximum number of distinct values kept, 0 to stop interning the field
+   * @return false if there is no untyped field with this name
+   */
+  synchronized boolean setInterning(String fieldName, int maxSize) {
+    StringInterner[] updated = interners == null ? new StringInterner[fields.length] : interners.clone();
+    boolean found = false;
+    for (GrokField field : fields) {
+      if (field.getName().equals(fieldName) && isInternable(field)) {
+        updated[field.getIndex()] = maxSize == 0 ? null : new StringInterner(maxSize);
+        found = true;
+      }
+    }
+    interners = updated;
+    return found;
+  }
+
+  /**
+   * Intern every untyped field not configured with {@link #setInterning(String, int)}, set by
+   * the compiler, see {@link GrokCompiler#setAutoInterning(boolean)}.
+   *
+   * @param enabled : false to drop the automatic interners
+   */
+  synchronized void setAutoInterning(boolean enabled) {
+    StringInterner[] updated = interners == null ? new StringInterner[fields.length] : interners.clone();
+    for (GrokField field : fields) {
+      int index = field.getIndex();
+      if (!isInternable(field)) {
+        continue;
+      }
+      if (enabled && updated[index] == null) {
+        updated[index] = StringInterner.adaptive(StringInterner.DEFAULT_MAX_SIZE);
+      } else if (!enabled && updated[index] != null && updated[index].isAdaptive()) {
+        updated[index] = null;
+      }
+    }
+    interners = updated;
+  }
+
+  private static boolean isInternable(GrokField field) {
+    return !field.isUnwanted() && field.getGroup() >= 0 && field.getConverter() == null;
+  }
+
+  /**
+   * @return the interner of a field, {@code null} if its values are not interned, see
+   *     {@link GrokCompiler#setInterning(String, int)}
+   */
+  public StringInterner getInterner(int fieldIndex) {
+    StringInterner[] current = interners;
+    return current == null ? null : current[fieldIndex];
+  }
+
+  StringInterner[] interners() {
+    return interners;
+  }
+
+  /**
+   * Whether this {@code Grok} is implicitly anchored at the start of the text,
+   * see {@link GrokCompiler#setImplicitAnchoring(boolean)}.
+   *
+   * @return true if {@link #match(CharSequence)} behaves like {@link #matchPrefix(CharSequence)}
+   */
+  public boolean isAnchored() {
+    return anchored;
+  }
+
+  void setAnchored(boolean anchored) {
+    this.anchored = anchored;
+  }
+
+  /**
+   * Get the literal substrings every match of the named regex must contain.
+   *
+   * @return required literals, longest first; empty if none could be extracted
+   */
+  public List<String> getRequiredLiterals() {
+    return prefilter.getLiterals();
+  }
+
+  /**
+   * @return number of lines rejected by the prefilter without running the regex engine
+   */
+  public long getPrefilterRejects() {
+    return prefilterRejects.sum();
+  }
+
+  /**
+   * @return number of lines the regex engine ran on and did not match
+   */
+  public long getRegexRejects() {
+    return regexRejects.sum();
+  }
+
   /**
    * Get the current map of {@code Grok} pattern.
    *
+   * <p>Since 1.0.2 the map is unmodifiable ({@code put} and {@code remove} throw
+   * {@link UnsupportedOperationException}): it is the definitions snapshot of the
+   * {@link GrokCompiler} this pattern was compiled from, shared by every {@code Grok} compiled
+   * from the same version, plus the inline definitions of this pattern if it has any. Copy it
+   * to modify it.
+   *
    * @return Patterns (name, regular expression)
    */
   public Map<String, String> getPatterns() {
@@ -232,36 +492,453 @@ public class Grok implements Serializable {
     return matched;
   }
 
+  /**
+   * Match the given list of log with the named regex in parallel on the common
+   * {@link ForkJoinPool}, see {@link #capture(List, ExecutorService, int)}.
+   *
+   * @param logs : list of log
+   * @return list of maps containing matches, in input order
+   */
+  public ArrayList<Map<String, Object>> captureParallel(List<String> logs) {
+    return capture(logs, ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK_SIZE);
+  }
+
+  /**
+   * Match the given list of log with the named regex in parallel on the given executor,
+   * see {@link #capture(List, ExecutorService, int)}.
+   *
+   * @param logs : list of log
+   * @param executor : executor running the chunks, {@code null} for the common {@link ForkJoinPool}
+   * @return list of maps containing matches, in input order
+   */
+  public ArrayList<Map<String, Object>> capture(List<String> logs, ExecutorService executor) {
+    return capture(logs, executor, DEFAULT_MIN_CHUNK_SIZE);
+  }
+
+  /**
+   * Match the given list of log with the named regex in parallel.
+   * The list is split in chunks of at least {@code minChunkSize} lines which are matched on
+   * {@code executor}, each worker thread using its own pooled matcher. Lists too small to give
+   * every chunk {@code minChunkSize} lines stay on the calling thread.
+   *
+   * <p>Results are returned in input order. Failures are isolated: a line that throws, or every
+   * line of a chunk the executor could not run, gets a map holding only a
+   * {@value #FAILURE_KEY} entry and the other lines are unaffected.
+   *
+   * @param logs : list of log
+   * @param executor : executor running the chunks, {@code null} for the common {@link ForkJoinPool}
+   * @param minChunkSize : minimum number of lines per chunk
+   * @return list of maps containing matches, in input order
+   */
+  public ArrayList<Map<String, Object>> capture(List<String> logs, ExecutorService executor,
+      int minChunkSize) {
+    final int size = logs.size();
+    final int chunkSize = Math.max(1, minChunkSize);
+    final Executor resolved = executor != null ? executor : ForkJoinPool.commonPool();
+    final int parallelism = resolved instanceof ForkJoinPool
+        ? ((ForkJoinPool) resolved).getParallelism()
+        : Runtime.getRuntime().availableProcessors();
+    final int chunks = Math.min(parallelism * 4, size / chunkSize);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final Map<String, Object>[] results = new Map[size];
+    if (chunks <= 1) {
+      captureChunk(logs, results, 0, size);
+    } else {
+      CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+      for (int chunk = 0; chunk < chunks; chunk++) {
+        final int from = (int) ((long) size * chunk / chunks);
+        final int to = (int) ((long) size * (chunk + 1) / chunks);
+        CompletableFuture<Void> future;
+        try {
+          future = CompletableFuture.runAsync(() -> captureChunk(logs, results, from, to), resolved);
+        } catch (RuntimeException e) {
+          future = new CompletableFuture<>();
+          future.completeExceptionally(e);
+        }
+        futures[chunk] = future.exceptionally(e -> {
+          failChunk(results, from, to, e);
+          return null;
+        });
+      }
+      CompletableFuture.allOf(futures).join();
+    }
+
+    final ArrayList<Map<String, Object>> matched = new ArrayList<>(size);
+    Collections.addAll(matched, results);
+    return matched;
+  }
+
+  private void captureChunk(List<String> logs, Map<String, Object>[] results, int from, int to) {
+    for (int i = from; i < to; i++) {
+      try {
+        results[i] = capture(logs.get(i));
+      } catch (RuntimeException e) {
+        results[i] = Collections.singletonMap(FAILURE_KEY, e.toString());
+      }
+    }
+  }
+
+  private static void failChunk(Map<String, Object>[] results, int from, int to, Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null
+        ? error.getCause() : error;
+    for (int i = from; i < to; i++) {
+      if (results[i] == null) {
+        results[i] = Collections.singletonMap(FAILURE_KEY, cause.toString());
+      }
+    }
+  }
+
+  /**
+   * Match the given list of log with the named regex and return the captured
+   * fields column by column, see {@link ColumnarBatch}.
+   * Typed fields are stored in primitive arrays, so no per-line map or boxed value is created.
+   *
+   * @param logs : list of log
+   * @return the columnar batch, one row per log
+   * @throws IllegalArgumentException if a log exceeds maximum allowed length
+   */
+  public ColumnarBatch captureColumnar(List<? extends CharSequence> logs) {
+    ColumnarBatch batch = new ColumnarBatch(fields, interners, logs.size());
+    if (compiledPattern == null) {
+      return batch;
+    }
+    MatcherPool pool = matcherPool;
+    int row = 0;
+    for (CharSequence log : logs) {
+      if (log != null) {
+        checkInputLength(log);
+        EngineMatcher matcher = find(pool, log, prefilterEnabled, defaultMode());
+        if (matcher != null) {
+          batch.fill(row, log, matcher);
+          pool.release(matcher);
+        }
+      }
+      row++;
+    }
+    return batch;
+  }
+
   /**
    * Match the given text with the named regex
    * {@code Grok} will extract data from the string and get an extence of {@link Match}.
+   * The {@link Match} keeps a copy of the group offsets, so it stays valid after later
+   * matches on the same thread and may be handed to another thread.
    *
    * @param text : Single line of log
    * @return Grok Match
    * @throws IllegalArgumentException if input length exceeds maximum allowed length
    */
   public Match match(CharSequence text) {
+    return match(text, prefilterEnabled, defaultMode());
+  }
+
+  /**
+   * Match the named regex against the whole text, like {@code ^...$}.
+   * The engine stops after a single attempt at the start of the text.
+   *
+   * @param text : Single line of log
+   * @return Grok Match, {@link Match#EMPTY} unless the regex matches the entire text
+   * @throws IllegalArgumentException if input length exceeds maximum allowed length
+   */
+  public Match matchFull(CharSequence text) {
+    return match(text, prefilterEnabled, Mode.FULL);
+  }
+
+  /**
+   * Match the named regex at the start of the text, like {@code ^...}.
+   * The engine stops after a single attempt at the start of the text.
+   *
+   * @param text : Single line of log
+   * @return Grok Match, {@link Match#EMPTY} unless the regex matches a prefix of the text
+   * @throws IllegalArgumentException if input length exceeds maximum allowed length
+   */
+  public Match matchPrefix(CharSequence text) {
+    return match(text, prefilterEnabled, Mode.PREFIX);
+  }
+
+  /**
+   * Tell whether the named regex matches the given text, without extracting any group.
+   * Runs the capture-free variant of the regex (see {@link CompiledPattern#withoutCaptures()}),
+   * which is cheaper than {@link #match(CharSequence)} for routing, filtering and counting.
+   *
+   * @param text : Single line of log
+   * @return true if {@link #match(CharSequence)} would return a non empty {@link Match}
+   * @throws IllegalArgumentException if input length exceeds maximum allowed length
+   */
+  public boolean matches(CharSequence text) {
     if (compiledPattern == null || text == null) {
-      return Match.EMPTY;
+      return false;
     }
+    checkInputLength(text);
+    MatcherPool pool = matchOnlyPool();
+    EngineMatcher matcher = find(pool, text, prefilterEnabled, defaultMode());
+    if (matcher == null) {
+      return false;
+    }
+    pool.release(matcher);
+    return true;
+  }
 
-    // Validate input length to prevent ReDoS attacks
-    if (maxInputLength > 0 && text.length() > maxInputLength) {
-      throw new IllegalArgumentException(
-          String.format("Input length %d exceeds maximum allowed length %d",
-              text.length(), maxInputLength));
+  /**
+   * Count the lines matching the named regex, see {@link #matches(CharSequence)}.
+   *
+   * @param lines : lines of log, {@code null} elements never match
+   * @return number of matching lines
+   * @throws IllegalArgumentException if a line exceeds maximum allowed length
+   */
+  public long count(Iterable<? extends CharSequence> lines) {
+    long count = 0;
+    for (CharSequence line : lines) {
+      if (matches(line)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Lazily match every line of {@code input}. Lines are read on demand through a reused
+   * buffer, so the input is never held in memory as a whole; lines end at {@code \n},
+   * {@code \r} or {@code \r\n}. The stream has one element per line, {@link Match#EMPTY}
+   * for the lines that do not match.
+   *
+   * <p>The stream is ordered and may be made {@link Stream#parallel() parallel}: the input is
+   * still read by one thread, in batches of lines matched on the other threads.
+   * Closing the stream closes {@code input}.
+   *
+   * @param input : lines of log
+   * @return lazily evaluated stream of matches, read errors are thrown as {@link UncheckedIOException}
+   */
+  public Stream<Match> stream(Reader input) {
+    return StreamSupport.stream(new LineSpliterator(input), false)
+        .map(this::match)
+        .onClose(() -> {
+          try {
+            input.close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  /**
+   * Lazily match every line of {@code input} decoded with {@code charset},
+   * see {@link #stream(Reader)}.
+   */
+  public Stream<Match> stream(InputStream input, Charset charset) {
+    return stream(new InputStreamReader(input, charset));
+  }
+
+  private MatcherPool matchOnlyPool() {
+    MatcherPool pool = matchOnlyPool;
+    if (pool == null) {
+      pool = new MatcherPool(compiledPattern.withoutCaptures(), matcherPool.getStrategy());
+      matchOnlyPool = pool;
     }
+    return pool;
+  }
+
+  /**
+   * Match without consulting the prefilter, for callers that already checked
+   * the required literals of this {@code Grok} (see {@link GrokSet}).
+   */
+  Match matchPrefiltered(CharSequence text) {
+    return match(text, false, defaultMode());
+  }
 
-    EngineMatcher matcher = matcherPool.getMatcher(text);
-    if (matcher.find()) {
-      return new Match(
-          text, this, matcher, matcher.start(0), matcher.end(0)
+  private Match match(CharSequence text, boolean usePrefilter, Mode mode) {
+    if (compiledPattern == null || text == null) {
+      return Match.EMPTY;
+    }
+
+    checkInputLength(text);
+
+    MatcherPool pool = matcherPool;
+    EngineMatcher matcher = find(pool, text, usePrefilter, mode);
+    if (matcher != null) {
+      Match match = new Match(
+          text, this, Match.snapshot(matcher), Match.unresolved(this, matcher), matcher.start(0), matcher.end(0)
       );
+      pool.release(matcher);
+      return match;
     }
 
     return Match.EMPTY;
   }
 
+  /**
+   * Match the named regex against a range of UTF-8 encoded bytes, without decoding it to a
+   * {@code String} first. The returned {@link Match} references {@code input}, reports byte
+   * offsets, and only decodes the fields that are read, so the range must not be modified
+   * while the match is in use.
+   *
+   * <p>Engines with a native byte matcher (re2j) run over the bytes without decoding them, but
+   * re2j only matches whole arrays: unless the range covers all of {@code input}, it is copied
+   * into a new array of its length for each line. The other engines decode the range into a
+   * char buffer that is reused per matcher.
+   *
+   * @param input : UTF-8 encoded log
+   * @param offset : first byte of the line
+   * @param length : number of bytes of the line
+   * @return Grok Match
+   * @throws IllegalArgumentException if the length in bytes exceeds maximum allowed length
+   */
+  public Match match(byte[] input, int offset, int length) {
+    if (compiledPattern == null || input == null) {
+      return Match.EMPTY;
+    }
+    if (offset < 0 || length < 0 || offset > input.length - length) {
+      throw new IndexOutOfBoundsException(
+          "offset " + offset + ", length " + length + ", array length " + input.length);
+    }
+    checkInputLength(length);
+
+    if (prefilterEnabled && !prefilter.mayMatch(input, offset, length)) {
+      prefilterRejects.increment();
+      return Match.EMPTY;
+    }
+    MatcherPool pool = matcherPool;
+    ByteMatcher matcher = pool.getByteMatcher(input, offset, length);
+    boolean found = anchored ? matcher.lookingAt() : matcher.find();
+    if (!found) {
+      pool.release(matcher);
+      regexRejects.increment();
+      return Match.EMPTY;
+    }
+    Match match = new Match(input, offset, length, this, Match.snapshot(matcher), Match.unresolved(this, matcher),
+        matcher.start(), matcher.end());
+    pool.release(matcher);
+    return match;
+  }
+
+  /**
+   * Match the named regex against the remaining bytes of a UTF-8 encoded buffer,
+   * see {@link #match(byte[], int, int)}. The position of {@code input} is not changed.
+   * Heap buffers are matched in place, direct buffers are copied.
+   *
+   * @param input : UTF-8 encoded log
+   * @return Grok Match
+   * @throws IllegalArgumentException if the length in bytes exceeds maximum allowed length
+   */
+  public Match match(ByteBuffer input) {
+    if (input == null) {
+      return Match.EMPTY;
+    }
+    if (input.hasArray()) {
+      return match(input.array(), input.arrayOffset() + input.position(), input.remaining());
+    }
+    byte[] copy = new byte[input.remaining()];
+    input.duplicate().get(copy);
+    return match(copy, 0, copy.length);
+  }
+
+  /**
+   * Match the given text with the named regex and hand every captured field
+   * to {@code sink} as offsets into {@code text}.
+   * No map, {@link Match} or substring is created on this path.
+   *
+   * @param text : Single line of log
+   * @param sink : receiver of the captured fields
+   * @return true if the text matched
+   * @throws IllegalArgumentException if input length exceeds maximum allowed length
+   */
+  public boolean matchInto(CharSequence text, CaptureSink sink) {
+    if (compiledPattern == null || text == null) {
+      return false;
+    }
+
+    checkInputLength(text);
+
+    MatcherPool pool = matcherPool;
+    EngineMatcher matcher = find(pool, text, prefilterEnabled, defaultMode());
+    if (matcher == null) {
+      return false;
+    }
+
+    for (GrokField field : fields) {
+      if (field.isUnwanted()) {
+        continue;
+      }
+      int group = field.getGroup();
+      if (group < 0) {
+        String value = unresolvedFields ? Match.groupByName(matcher, field) : null;
+        if (value == null) {
+          sink.capture(field.getIndex(), field.getName(), text, -1, -1);
+        } else {
+          sink.capture(field.getIndex(), field.getName(), value, 0, value.length());
+        }
+      } else {
+        sink.capture(field.getIndex(), field.getName(), text, matcher.start(group), matcher.end(group));
+      }
+    }
+    pool.release(matcher);
+    return true;
+  }
+
+  /**
+   * How the pooled matcher looks for a match.
+   */
+  private enum Mode {
+    /** Anywhere in the text. */
+    FIND,
+    /** At the start of the text. */
+    PREFIX,
+    /** Over the whole text. */
+    FULL
+  }
+
+  private Mode defaultMode() {
+    return anchored ? Mode.PREFIX : Mode.FIND;
+  }
+
+  /**
+   * Run the prefilter and then the pooled matcher on {@code text}.
+   *
+   * @return the matcher positioned on the first match, to release to {@code pool} once read,
+   *     or {@code null} if there is none
+   */
+  private EngineMatcher find(MatcherPool pool, CharSequence text, boolean usePrefilter, Mode mode) {
+    if (usePrefilter && !prefilter.mayMatch(text)) {
+      prefilterRejects.increment();
+      return null;
+    }
+    EngineMatcher matcher = pool.getMatcher(text);
+    boolean found;
+    switch (mode) {
+      case PREFIX:
+        found = matcher.lookingAt();
+        break;
+      case FULL:
+        found = matcher.matches();
+        break;
+      default:
+        found = matcher.find();
+        break;
+    }
+    if (found) {
+      return matcher;
+    }
+    pool.release(matcher);
+    regexRejects.increment();
+    return null;
+  }
+
+  /**
+   * Validate input length to prevent ReDoS attacks.
+   */
+  static void checkInputLength(CharSequence text) {
+    checkInputLength(text.length());
+  }
+
+  static void checkInputLength(int length) {
+    if (maxInputLength > 0 && length > maxInputLength) {
+      throw new IllegalArgumentException(
+          String.format("Input length %d exceeds maximum allowed length %d",
+              length, maxInputLength));
+    }
+  }
+
   /**
    * {@code Grok} will try to find the best expression that will match your input.
    * {@link Discovery}
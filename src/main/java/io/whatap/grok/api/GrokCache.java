@@ -1,80 +1,140 @@
 package io.whatap.grok.api;
 
+import java.time.ZoneId;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 /**
- * Cache for compiled Grok patterns with O(1) LRU eviction.
- * Thread-safe implementation using synchronized LinkedHashMap.
+ * Cache for compiled Grok patterns, bounded by entry count and by estimated weight.
+ *
+ * <p>Lookups are lock free: entries live in a {@link ConcurrentHashMap} and a hit only records
+ * the access in a frequency sketch. Writes are serialized and evict with a W-TinyLFU like policy:
+ * new entries go to a small admission window, and an entry leaving the window only replaces a
+ * sampled victim of the main area when it has been requested more often. A stream of one-off
+ * patterns therefore churns the window without flushing the patterns in regular use.
+ *
+ * <p>The weight of an entry is estimated from the size of its regex and its number of groups,
+ * see {@link #weigh(Grok)}. Entries not accessed for 30 minutes are dropped by a maintenance
+ * thread shared by all caches.
  *
  * @since 1.0.1
  */
 public class GrokCache {
 
-    private static final int DEFAULT_MAX_SIZE = 500;
+    /**
+     * Default bound of the estimated weight, in bytes, of each of the Grok and regex caches.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 64L << 20;
     private static final long CLEANUP_INTERVAL_SECONDS = 300;
     private static final long ENTRY_EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    /** Typical weight of a compiled pattern, only used to size the frequency sketch. */
+    private static final long TYPICAL_WEIGHT = 16L << 10;
+    /** Number of main area entries compared when looking for an eviction victim. */
+    private static final int SAMPLE_SIZE = 8;
 
     private final int maxSize;
-    private final Map<String, CacheEntry<Grok>> compiledPatterns;
-    private final Map<String, CacheEntry<Pattern>> regexPatterns;
-    private final ScheduledExecutorService cleanupExecutor;
+    private final long maxWeight;
+    private final Store<Grok> compiledPatterns;
+    private final Store<Pattern> regexPatterns;
+    /** Lookups and compilations by regex engine, for the lookups by {@link CacheKey}. */
+    private final ConcurrentHashMap<String, EngineCounters> engines = new ConcurrentHashMap<>();
+    private final LoadTimes loadTimes = new LoadTimes();
 
+    /**
+     * Cache bounded by {@link #DEFAULT_MAX_WEIGHT} only.
+     */
     public GrokCache() {
-        this(DEFAULT_MAX_SIZE);
+        this(Integer.MAX_VALUE, DEFAULT_MAX_WEIGHT);
     }
 
+    /**
+     * @param maxSize : maximum number of entries of each of the Grok and regex caches
+     */
     public GrokCache(int maxSize) {
-        this.maxSize = Math.min(maxSize, 2000);
-        this.compiledPatterns = createLRUCache(this.maxSize);
-        this.regexPatterns = createLRUCache(this.maxSize);
-        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "GrokCache-Cleanup");
-            t.setDaemon(true);
-            return t;
-        });
-        cleanupExecutor.scheduleAtFixedRate(this::performCleanup,
-            CLEANUP_INTERVAL_SECONDS, CLEANUP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        this(maxSize, DEFAULT_MAX_WEIGHT);
     }
 
-    private <T> Map<String, CacheEntry<T>> createLRUCache(int maxSize) {
-        return Collections.synchronizedMap(new LinkedHashMap<String, CacheEntry<T>>(maxSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
-                return size() > maxSize;
-            }
-        });
+    /**
+     * @param maxSize : maximum number of entries of each of the Grok and regex caches
+     * @param maxWeight : maximum estimated weight, in bytes, of each of the Grok and regex caches
+     * @since 1.0.2
+     */
+    public GrokCache(int maxSize, long maxWeight) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("max size must be positive: " + maxSize);
+        }
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("max weight must be positive: " + maxWeight);
+        }
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.compiledPatterns = new Store<>(maxSize, maxWeight);
+        this.regexPatterns = new Store<>(maxSize, maxWeight);
+        Maintenance.register(this);
     }
 
     public Grok getGrok(String pattern) {
-        CacheEntry<Grok> entry = compiledPatterns.get(pattern);
-        if (entry != null) {
-            entry.updateAccessTime();
-            return entry.getValue();
-        }
-        return null;
+        return compiledPatterns.get(pattern);
     }
 
     public void putGrok(String pattern, Grok grok) {
-        compiledPatterns.put(pattern, new CacheEntry<>(grok));
+        compiledPatterns.put(pattern, grok, weigh(grok));
     }
 
-    public Pattern getPattern(String regex) {
-        CacheEntry<Pattern> entry = regexPatterns.get(regex);
-        if (entry != null) {
-            entry.updateAccessTime();
-            return entry.getValue();
+    /**
+     * Look up a compiled Grok, counting the hit or miss for its engine.
+     *
+     * @since 1.0.2
+     */
+    public Grok getGrok(CacheKey key) {
+        Grok grok = compiledPatterns.get(key);
+        EngineCounters counters = engine(key.engineName);
+        if (grok != null) {
+            counters.hits.increment();
+        } else {
+            counters.misses.increment();
         }
-        return null;
+        return grok;
+    }
+
+    /**
+     * Cache a Grok compiled after a miss.
+     *
+     * @param loadNanos : time taken to compile it
+     * @since 1.0.2
+     */
+    public void putGrok(CacheKey key, Grok grok, long loadNanos) {
+        loadTimes.record(loadNanos);
+        engine(key.engineName).loadTimes.record(loadNanos);
+        compiledPatterns.put(key, grok, weigh(grok));
+    }
+
+    private EngineCounters engine(String engineName) {
+        EngineCounters counters = engines.get(engineName);
+        return counters != null ? counters : engines.computeIfAbsent(engineName, name -> new EngineCounters());
+    }
+
+    public Pattern getPattern(String regex) {
+        return regexPatterns.get(regex);
     }
 
     public void putPattern(String regex, Pattern pattern) {
-        regexPatterns.put(regex, new CacheEntry<>(pattern));
+        regexPatterns.put(regex, pattern, weigh(pattern));
     }
 
     public void clear() {
@@ -82,56 +142,648 @@ public class GrokCache {
         regexPatterns.clear();
     }
 
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @since 1.0.2
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return estimated weight, in bytes, of the cached Groks and regexes
+     * @since 1.0.2
+     */
+    public long getWeightedSize() {
+        return compiledPatterns.weight + regexPatterns.weight;
+    }
+
+    /**
+     * @return sizes, and counters of the compiled Grok cache since its creation
+     */
     public CacheStats getStats() {
         Runtime runtime = Runtime.getRuntime();
         long usedMemory = runtime.totalMemory() - runtime.freeMemory();
         long maxMemory = runtime.maxMemory();
+        Map<String, EngineStats> engineStats = new LinkedHashMap<>();
+        engines.forEach((name, counters) -> engineStats.put(name, counters.snapshot()));
         return new CacheStats(compiledPatterns.size(), regexPatterns.size(), maxSize,
-            usedMemory, maxMemory, (double) usedMemory / maxMemory * 100);
+            usedMemory, maxMemory, (double) usedMemory / maxMemory * 100,
+            getWeightedSize(), maxWeight, compiledPatterns.hits.sum(), compiledPatterns.misses.sum(),
+            compiledPatterns.evictions.sum(), compiledPatterns.expirations.sum(), loadTimes.snapshot(),
+            Collections.unmodifiableMap(engineStats));
     }
 
-    private void performCleanup() {
-        long expireTime = System.currentTimeMillis() - ENTRY_EXPIRE_MILLIS;
-        synchronized (compiledPatterns) {
-            compiledPatterns.entrySet().removeIf(e -> e.getValue().getLastAccessTime() < expireTime);
-        }
-        synchronized (regexPatterns) {
-            regexPatterns.entrySet().removeIf(e -> e.getValue().getLastAccessTime() < expireTime);
-        }
+    /**
+     * Estimated retained size of a compiled Grok: its regex program, which grows with the
+     * expanded regex, and its capture groups.
+     */
+    static long weigh(Grok grok) {
+        return 1024 + 32L * grok.getNamedRegex().length() + 256L * grok.getNamedRegexCollection().size();
+    }
+
+    static long weigh(Pattern pattern) {
+        return 1024 + 32L * pattern.pattern().length() + 256L * pattern.matcher("").groupCount();
     }
 
+    void performCleanup() {
+        performCleanup(System.currentTimeMillis());
+    }
+
+    void performCleanup(long now) {
+        compiledPatterns.expire(now);
+        regexPatterns.expire(now);
+    }
+
+    /**
+     * Empty the cache and stop its maintenance. The cache can still be used afterwards.
+     */
     public void shutdown() {
-        cleanupExecutor.shutdown();
-        try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
+        Maintenance.deregister(this);
+        clear();
+    }
+
+    /**
+     * Maintenance shared by all the caches: a single daemon thread, and no strong reference to
+     * the caches, which are collected with their {@code GrokCompiler}.
+     */
+    private static final class Maintenance {
+        private static final Set<GrokCache> CACHES =
+            Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "GrokCache-Maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+
+        static {
+            EXECUTOR.scheduleWithFixedDelay(Maintenance::run,
+                CLEANUP_INTERVAL_SECONDS, CLEANUP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+
+        static void register(GrokCache cache) {
+            CACHES.add(cache);
+        }
+
+        static void deregister(GrokCache cache) {
+            CACHES.remove(cache);
+        }
+
+        private static void run() {
+            GrokCache[] caches;
+            synchronized (CACHES) {
+                caches = CACHES.toArray(new GrokCache[0]);
+            }
+            for (GrokCache cache : caches) {
+                try {
+                    cache.performCleanup();
+                } catch (RuntimeException e) {
+                    // keep the schedule alive for the other caches
+                }
             }
-        } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
         }
-        clear();
     }
 
-    private static class CacheEntry<T> {
-        private final T value;
-        private volatile long lastAccessTime;
+    private static final class Node<T> {
+        final Object key;
+        final T value;
+        final long weight;
+        /** Last access as seen by the maintenance, within one cleanup interval. */
+        volatile long lastAccessTime;
+        /** Set by a hit, cleared by the maintenance: hits only write once per interval. */
+        volatile boolean accessed;
+        /** In the admission window rather than the main area, guarded by the store. */
+        boolean inWindow = true;
 
-        public CacheEntry(T value) {
+        Node(Object key, T value, long weight) {
+            this.key = key;
             this.value = value;
+            this.weight = weight;
             this.lastAccessTime = System.currentTimeMillis();
         }
+    }
+
+    /**
+     * One bounded map. Reads are lock free, writes and evictions synchronize on the store.
+     */
+    private static final class Store<T> {
+        private final ConcurrentHashMap<Object, Node<T>> map = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder expirations = new LongAdder();
+        private final FrequencySketch sketch;
+        private final int maxSize;
+        private final long maxWeight;
+        private final int windowMaxSize;
+        private final long windowMaxWeight;
+        /** Window entries, oldest first. */
+        private final ArrayDeque<Node<T>> window = new ArrayDeque<>();
+        private long windowWeight;
+        private volatile long weight;
+        /** Position of the victim sampling in the main area, resumed by the next eviction. */
+        private Iterator<Node<T>> hand;
 
-        public T getValue() {
-            return value;
+        Store(int maxSize, long maxWeight) {
+            this.maxSize = maxSize;
+            this.maxWeight = maxWeight;
+            this.windowMaxSize = Math.max(1, maxSize / 100);
+            this.windowMaxWeight = Math.max(1, maxWeight / 100);
+            this.sketch = new FrequencySketch((int) Math.min(maxSize, maxWeight / TYPICAL_WEIGHT));
         }
 
-        public long getLastAccessTime() {
-            return lastAccessTime;
+        T get(Object key) {
+            sketch.increment(key.hashCode());
+            Node<T> node = map.get(key);
+            if (node == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            if (!node.accessed) {
+                node.accessed = true;
+            }
+            return node.value;
         }
 
-        public void updateAccessTime() {
-            this.lastAccessTime = System.currentTimeMillis();
+        int size() {
+            return map.size();
+        }
+
+        synchronized void put(Object key, T value, long nodeWeight) {
+            if (nodeWeight > maxWeight) {
+                // would evict everything else
+                Node<T> previous = map.get(key);
+                if (previous != null && evict(previous)) {
+                    evictions.increment();
+                }
+                return;
+            }
+            Node<T> node = new Node<>(key, value, nodeWeight);
+            Node<T> previous = map.put(key, node);
+            if (previous != null) {
+                weight -= previous.weight;
+                unlinkWindow(previous);
+            }
+            weight += nodeWeight;
+            window.addLast(node);
+            windowWeight += nodeWeight;
+
+            while (window.size() > windowMaxSize || (window.size() > 1 && windowWeight > windowMaxWeight)) {
+                Node<T> candidate = window.pollFirst();
+                windowWeight -= candidate.weight;
+                candidate.inWindow = false;
+                admit(candidate);
+            }
+            while (map.size() > maxSize || weight > maxWeight) {
+                Node<T> victim = sample(null);
+                if (victim == null) {
+                    victim = window.peekFirst();
+                    if (victim == null || victim == node) {
+                        break;
+                    }
+                }
+                if (evict(victim)) {
+                    evictions.increment();
+                }
+            }
+        }
+
+        /**
+         * Make room in the main area for an entry leaving the window, or drop it if it was
+         * requested less often than the entries it would replace.
+         */
+        private void admit(Node<T> candidate) {
+            while (map.size() > maxSize || weight > maxWeight) {
+                Node<T> victim = sample(candidate);
+                if (victim == null) {
+                    return;
+                }
+                if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                    evict(victim);
+                    evictions.increment();
+                } else {
+                    evict(candidate);
+                    evictions.increment();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return the least frequently, then least recently, used of a few main area entries
+         */
+        private Node<T> sample(Node<T> excluded) {
+            Node<T> victim = null;
+            int victimFrequency = 0;
+            int sampled = 0;
+            for (int visited = 0, limit = map.size() + 1; sampled < SAMPLE_SIZE && visited < limit; visited++) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = map.values().iterator();
+                    if (!hand.hasNext()) {
+                        break;
+                    }
+                }
+                Node<T> node = hand.next();
+                if (node.inWindow || node == excluded || map.get(node.key) != node) {
+                    continue;
+                }
+                sampled++;
+                int frequency = sketch.frequency(node.key.hashCode());
+                if (victim == null || frequency < victimFrequency
+                    || (frequency == victimFrequency && node.lastAccessTime < victim.lastAccessTime)) {
+                    victim = node;
+                    victimFrequency = frequency;
+                }
+            }
+            return victim;
+        }
+
+        private boolean evict(Node<T> node) {
+            if (map.remove(node.key, node)) {
+                weight -= node.weight;
+                unlinkWindow(node);
+                return true;
+            }
+            return false;
+        }
+
+        private void unlinkWindow(Node<T> node) {
+            if (node.inWindow && window.remove(node)) {
+                windowWeight -= node.weight;
+            }
+        }
+
+        synchronized void expire(long now) {
+            for (Node<T> node : map.values()) {
+                if (node.accessed) {
+                    node.accessed = false;
+                    node.lastAccessTime = now;
+                } else if (node.lastAccessTime < now - ENTRY_EXPIRE_MILLIS && evict(node)) {
+                    expirations.increment();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            window.clear();
+            windowWeight = 0;
+            weight = 0;
+            hand = null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 bit counters estimating how often keys are requested, halved
+     * periodically so that old popularity fades. Four counters per key, in 64 bit words updated
+     * with compare and set; a saturated counter is only read, so hot keys do not contend.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final AtomicLongArray table;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+
+        FrequencySketch(int expectedEntries) {
+            int capacity = Integer.highestOneBit(Math.max(16, Math.min(expectedEntries, 1 << 20)) * 2 - 1);
+            this.table = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.sampleSize = 10 * capacity;
+        }
+
+        /**
+         * @return estimated number of requests of the key, at most 15
+         */
+        int frequency(int keyHash) {
+            int hash = spread(keyHash);
+            int start = (hash & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                long word = table.get(indexOf(hash, i));
+                frequency = Math.min(frequency, (int) ((word >>> ((start + i) << 2)) & 0xfL));
+            }
+            return frequency;
+        }
+
+        void increment(int keyHash) {
+            int hash = spread(keyHash);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && additions.incrementAndGet() >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int counter) {
+            int shift = counter << 2;
+            long counterMask = 0xfL << shift;
+            while (true) {
+                long word = table.get(index);
+                if ((word & counterMask) == counterMask) {
+                    return false;
+                }
+                if (table.compareAndSet(index, word, word + (1L << shift))) {
+                    return true;
+                }
+            }
+        }
+
+        private synchronized void reset() {
+            if (additions.get() < sampleSize) {
+                return;
+            }
+            for (int i = 0; i < table.length(); i++) {
+                long word;
+                do {
+                    word = table.get(i);
+                } while (!table.compareAndSet(i, word, (word >>> 1) & RESET_MASK));
+            }
+            additions.set(sampleSize >>> 1);
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
+    /**
+     * Key of a compiled Grok: the pattern and every compiler option that changes the result.
+     * Cheaper to build than a concatenated string, and unambiguous whatever the pattern contains.
+     *
+     * @since 1.0.2
+     */
+    public static final class CacheKey {
+        private final String pattern;
+        private final ZoneId timeZone;
+        private final boolean namedOnly;
+        private final boolean reservedKeywordRenaming;
+        private final boolean implicitAnchoring;
+        private final String engineName;
+        private final long patternVersion;
+        private final MatcherPool.Strategy matcherPoolStrategy;
+        private final Map<String, Integer> interning;
+        private final boolean autoInterning;
+        private final boolean prefilterEnabled;
+        private final int hash;
+
+        /**
+         * @param pattern : Grok pattern
+         * @param timeZone : default time zone of the date conversions, may be null
+         * @param namedOnly : only named groups are captured
+         * @param reservedKeywordRenaming : reserved field names are renamed
+         * @param implicitAnchoring : matches are anchored at the start of the input
+         * @param engineName : regex engine
+         * @param patternVersion : version of the pattern definitions
+         */
+        public CacheKey(String pattern, ZoneId timeZone, boolean namedOnly, boolean reservedKeywordRenaming,
+                        boolean implicitAnchoring, String engineName, long patternVersion) {
+            this(pattern, timeZone, namedOnly, reservedKeywordRenaming, implicitAnchoring, engineName,
+                patternVersion, MatcherPool.getDefaultStrategy(), Collections.emptyMap(), false, true);
+        }
+
+        /**
+         * @param matcherPoolStrategy : how the compiled {@code Grok} keeps its matchers
+         * @param interning : field name to maximum number of interned values, not copied
+         * @param autoInterning : untyped fields are interned automatically
+         * @param prefilterEnabled : the required-literal prefilter runs before the regex engine
+         */
+        CacheKey(String pattern, ZoneId timeZone, boolean namedOnly, boolean reservedKeywordRenaming,
+                 boolean implicitAnchoring, String engineName, long patternVersion,
+                 MatcherPool.Strategy matcherPoolStrategy, Map<String, Integer> interning, boolean autoInterning,
+                 boolean prefilterEnabled) {
+            this.pattern = Objects.requireNonNull(pattern);
+            this.timeZone = timeZone;
+            this.namedOnly = namedOnly;
+            this.reservedKeywordRenaming = reservedKeywordRenaming;
+            this.implicitAnchoring = implicitAnchoring;
+            this.engineName = Objects.requireNonNull(engineName);
+            this.patternVersion = patternVersion;
+            this.matcherPoolStrategy = Objects.requireNonNull(matcherPoolStrategy);
+            this.interning = Objects.requireNonNull(interning);
+            this.autoInterning = autoInterning;
+            this.prefilterEnabled = prefilterEnabled;
+            int h = pattern.hashCode();
+            h = 31 * h + Objects.hashCode(timeZone);
+            h = 31 * h + (namedOnly ? 1 : 0);
+            h = 31 * h + (reservedKeywordRenaming ? 1 : 0);
+            h = 31 * h + (implicitAnchoring ? 1 : 0);
+            h = 31 * h + engineName.hashCode();
+            h = 31 * h + Long.hashCode(patternVersion);
+            h = 31 * h + matcherPoolStrategy.hashCode();
+            h = 31 * h + interning.hashCode();
+            h = 31 * h + (autoInterning ? 1 : 0);
+            h = 31 * h + (prefilterEnabled ? 1 : 0);
+            this.hash = h;
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public String getEngineName() {
+            return engineName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash
+                && namedOnly == other.namedOnly
+                && reservedKeywordRenaming == other.reservedKeywordRenaming
+                && implicitAnchoring == other.implicitAnchoring
+                && patternVersion == other.patternVersion
+                && matcherPoolStrategy == other.matcherPoolStrategy
+                && autoInterning == other.autoInterning
+                && prefilterEnabled == other.prefilterEnabled
+                && pattern.equals(other.pattern)
+                && engineName.equals(other.engineName)
+                && Objects.equals(timeZone, other.timeZone)
+                && interning.equals(other.interning);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CacheKey{pattern=%s, timeZone=%s, namedOnly=%s, renaming=%s, anchoring=%s, "
+                    + "engine=%s, version=%d, pool=%s, interning=%s, autoInterning=%s, prefilter=%s}",
+                pattern, timeZone, namedOnly, reservedKeywordRenaming, implicitAnchoring, engineName,
+                patternVersion, matcherPoolStrategy, interning, autoInterning, prefilterEnabled);
+        }
+    }
+
+    private static final class EngineCounters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LoadTimes loadTimes = new LoadTimes();
+
+        EngineStats snapshot() {
+            return new EngineStats(hits.sum(), misses.sum(), loadTimes.snapshot());
+        }
+    }
+
+    /**
+     * Lock free histogram of compilation times: 4 buckets per power of two of nanoseconds, so a
+     * percentile is within 25% of the actual value.
+     */
+    static final class LoadTimes {
+        private static final int SUB_BUCKETS = 4;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int fraction = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return (exponent - 1) * SUB_BUCKETS + fraction;
+        }
+
+        /**
+         * @return the largest value falling in the bucket
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + 1;
+            long fraction = bucket % SUB_BUCKETS;
+            long lower = (SUB_BUCKETS + fraction) << (exponent - 2);
+            return lower + (1L << (exponent - 2)) - 1;
+        }
+
+        LoadStats snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            long max = maxNanos.get();
+            return new LoadStats(count.sum(), totalNanos.sum(), percentile(counts, total, 0.50, max),
+                percentile(counts, total, 0.90, max), percentile(counts, total, 0.99, max), max);
+        }
+
+        private static long percentile(long[] counts, long total, double quantile, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Compilation times, the percentiles are approximate.
+     *
+     * @since 1.0.2
+     */
+    public static final class LoadStats {
+        public static final LoadStats EMPTY = new LoadStats(0, 0, 0, 0, 0, 0);
+
+        public final long loadCount;
+        public final long totalLoadTimeNanos;
+        public final long loadTimeP50Nanos;
+        public final long loadTimeP90Nanos;
+        public final long loadTimeP99Nanos;
+        public final long maxLoadTimeNanos;
+
+        public LoadStats(long loadCount, long totalLoadTimeNanos, long loadTimeP50Nanos, long loadTimeP90Nanos,
+                         long loadTimeP99Nanos, long maxLoadTimeNanos) {
+            this.loadCount = loadCount;
+            this.totalLoadTimeNanos = totalLoadTimeNanos;
+            this.loadTimeP50Nanos = loadTimeP50Nanos;
+            this.loadTimeP90Nanos = loadTimeP90Nanos;
+            this.loadTimeP99Nanos = loadTimeP99Nanos;
+            this.maxLoadTimeNanos = maxLoadTimeNanos;
+        }
+
+        public double averageLoadTimeNanos() {
+            return loadCount == 0 ? 0 : (double) totalLoadTimeNanos / loadCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LoadStats{count=%d, p50=%.3fms, p90=%.3fms, p99=%.3fms, max=%.3fms}",
+                loadCount, loadTimeP50Nanos / 1e6, loadTimeP90Nanos / 1e6, loadTimeP99Nanos / 1e6,
+                maxLoadTimeNanos / 1e6);
+        }
+    }
+
+    /**
+     * Lookups and compilations of one regex engine.
+     *
+     * @since 1.0.2
+     */
+    public static final class EngineStats {
+        public final long hitCount;
+        public final long missCount;
+        public final LoadStats loads;
+
+        public EngineStats(long hitCount, long missCount, LoadStats loads) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loads = loads;
+        }
+
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("EngineStats{hits=%d, misses=%d, %s}", hitCount, missCount, loads);
         }
     }
 
@@ -142,21 +794,67 @@ public class GrokCache {
         public final long usedMemory;
         public final long maxMemory;
         public final double memoryUsagePercent;
+        /** @since 1.0.2 */
+        public final long weightedSize;
+        /** @since 1.0.2 */
+        public final long maxWeight;
+        /** Lookups of compiled Groks, @since 1.0.2 */
+        public final long hitCount;
+        /** @since 1.0.2 */
+        public final long missCount;
+        /** Entries removed or not admitted to stay within the bounds, @since 1.0.2 */
+        public final long evictionCount;
+        /** Entries removed after being idle, @since 1.0.2 */
+        public final long expiryCount;
+        /** Compilations after a miss, @since 1.0.2 */
+        public final LoadStats loads;
+        /** Lookups and compilations by engine name, @since 1.0.2 */
+        public final Map<String, EngineStats> engines;
 
         public CacheStats(int grokCacheSize, int regexCacheSize, int maxSize,
                          long usedMemory, long maxMemory, double memoryUsagePercent) {
+            this(grokCacheSize, regexCacheSize, maxSize, usedMemory, maxMemory, memoryUsagePercent,
+                0, 0, 0, 0, 0, 0, LoadStats.EMPTY, Collections.emptyMap());
+        }
+
+        /**
+         * @since 1.0.2
+         */
+        public CacheStats(int grokCacheSize, int regexCacheSize, int maxSize,
+                         long usedMemory, long maxMemory, double memoryUsagePercent,
+                         long weightedSize, long maxWeight, long hitCount, long missCount,
+                         long evictionCount, long expiryCount, LoadStats loads, Map<String, EngineStats> engines) {
             this.grokCacheSize = grokCacheSize;
             this.regexCacheSize = regexCacheSize;
             this.maxSize = maxSize;
             this.usedMemory = usedMemory;
             this.maxMemory = maxMemory;
             this.memoryUsagePercent = memoryUsagePercent;
+            this.weightedSize = weightedSize;
+            this.maxWeight = maxWeight;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.expiryCount = expiryCount;
+            this.loads = Objects.requireNonNull(loads);
+            this.engines = Objects.requireNonNull(engines);
+        }
+
+        /**
+         * @return share of the lookups that found a compiled Grok, 1 without any lookup
+         * @since 1.0.2
+         */
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
         }
 
         @Override
         public String toString() {
-            return String.format("CacheStats{grok=%d, regex=%d, max=%d, memory=%.1f%%}",
-                grokCacheSize, regexCacheSize, maxSize, memoryUsagePercent);
+            return String.format("CacheStats{grok=%d, regex=%d, max=%d, memory=%.1f%%, hits=%d, misses=%d, "
+                    + "evictions=%d, expired=%d, %s, engines=%s}",
+                grokCacheSize, regexCacheSize, maxSize, memoryUsagePercent, hitCount, missCount,
+                evictionCount, expiryCount, loads, engines);
         }
     }
 }
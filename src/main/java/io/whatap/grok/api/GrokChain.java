@@ -0,0 +1,289 @@
+package io.whatap.grok.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ordered list of {@link Grok} tried one after the other until one matches, which
+ * reorders itself from the live traffic so the patterns most likely to match cheaply
+ * are tried first.
+ *
+ * <p>Every pattern belongs to a priority band. Bands are always tried in ascending
+ * priority, and reordering only happens inside a band, so patterns whose relative order
+ * matters (a specific pattern before a catch-all one) keep it by being given different
+ * priorities. Within a band, patterns are sorted by hit probability divided by the average
+ * cost of an attempt. Reordering is triggered on average once every
+ * {@link #setReorderInterval(int) interval} lines, and can be disabled.
+ *
+ * <p>Counters are {@link LongAdder}s and the order is an immutable array swapped on
+ * reorder, so concurrent callers never contend on the match path.
+ *
+ * @since 1.0.2
+ */
+public final class GrokChain {
+
+  public static final int DEFAULT_REORDER_INTERVAL = 4096;
+
+  /** One attempt out of COST_SAMPLING is timed. */
+  private static final int COST_SAMPLING = 64;
+
+  private final List<Entry> entries = new ArrayList<>();
+  private final AtomicBoolean reordering = new AtomicBoolean();
+  private volatile Entry[] order = new Entry[0];
+  private volatile boolean adaptive = true;
+  private volatile int reorderInterval = DEFAULT_REORDER_INTERVAL;
+
+  /**
+   * Append a pattern to the default band (priority 0).
+   */
+  public void add(Grok grok) {
+    add(grok, 0);
+  }
+
+  /**
+   * Append a pattern to a priority band. Lower priorities are tried first.
+   *
+   * @param grok : pattern
+   * @param priority : band of the pattern
+   */
+  public synchronized void add(Grok grok, int priority) {
+    Entry entry = new Entry(entries.size(), grok, priority);
+    entries.add(entry);
+    Entry[] next = Arrays.copyOf(order, order.length + 1);
+    next[next.length - 1] = entry;
+    Arrays.sort(next, Comparator.comparingInt(item -> item.priority));
+    order = next;
+  }
+
+  /**
+   * Enable or disable reordering (enabled by default). When disabled the chain keeps the
+   * current order, statistics are still collected.
+   */
+  public void setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+  }
+
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * Average number of lines between two reorders.
+   */
+  public void setReorderInterval(int lines) {
+    if (lines <= 0) {
+      throw new IllegalArgumentException("interval must be positive: " + lines);
+    }
+    this.reorderInterval = lines;
+  }
+
+  public int size() {
+    return order.length;
+  }
+
+  /**
+   * Match the given text against the patterns in the current order and return the first match.
+   *
+   * @param text : Single line of log
+   * @return the matching pattern, its insertion index and its {@link Match},
+   *     {@link GrokSet.Result#NO_MATCH} if none matched
+   */
+  public GrokSet.Result match(CharSequence text) {
+    if (text == null) {
+      return GrokSet.Result.NO_MATCH;
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (adaptive && random.nextInt(reorderInterval) == 0) {
+      reorder();
+    }
+    for (Entry entry : order) {
+      Match match;
+      entry.attempts.increment();
+      if (random.nextInt(COST_SAMPLING) == 0) {
+        long start = System.nanoTime();
+        match = entry.grok.match(text);
+        entry.sampledNanos.add(System.nanoTime() - start);
+        entry.samples.increment();
+      } else {
+        match = entry.grok.match(text);
+      }
+      if (!match.isNull()) {
+        entry.hits.increment();
+        return new GrokSet.Result(entry.index, entry.grok, match);
+      }
+    }
+    return GrokSet.Result.NO_MATCH;
+  }
+
+  /**
+   * Match the given log and return the json representation of the first match.
+   *
+   * @param log : log to match
+   * @return map containing matches, empty if no pattern matched
+   */
+  public Map<String, Object> capture(String log) {
+    return match(log).getMatch().capture();
+  }
+
+  /**
+   * Sort every priority band by score now. Concurrent calls are skipped while a reorder is
+   * in progress.
+   */
+  public void reorder() {
+    if (!reordering.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      Entry[] next = order.clone();
+      // patterns without a cost sample yet are assumed to cost the average
+      double totalNanos = 0;
+      int sampled = 0;
+      for (Entry entry : next) {
+        double nanos = entry.averageNanos();
+        if (nanos > 0) {
+          totalNanos += nanos;
+          sampled++;
+        }
+      }
+      double defaultNanos = sampled == 0 ? 1.0 : totalNanos / sampled;
+      double[] scores = new double[next.length];
+      for (Entry entry : next) {
+        scores[entry.index] = entry.score(defaultNanos);
+      }
+      // stable: ties keep their current relative order
+      Arrays.sort(next, Comparator.<Entry>comparingInt(entry -> entry.priority)
+          .thenComparing(entry -> -scores[entry.index]));
+      synchronized (this) {
+        if (next.length == order.length) {
+          order = next;
+        }
+      }
+    } finally {
+      reordering.set(false);
+    }
+  }
+
+  /**
+   * @return the patterns in current evaluation order
+   */
+  public List<Grok> getOrder() {
+    Entry[] current = order;
+    List<Grok> groks = new ArrayList<>(current.length);
+    for (Entry entry : current) {
+      groks.add(entry.grok);
+    }
+    return Collections.unmodifiableList(groks);
+  }
+
+  /**
+   * @return a snapshot of the counters of every pattern, in current evaluation order
+   */
+  public List<Stats> getStats() {
+    Entry[] current = order;
+    List<Stats> stats = new ArrayList<>(current.length);
+    for (Entry entry : current) {
+      stats.add(new Stats(entry));
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  private static final class Entry {
+    final int index;
+    final Grok grok;
+    final int priority;
+    final LongAdder attempts = new LongAdder();
+    final LongAdder hits = new LongAdder();
+    final LongAdder samples = new LongAdder();
+    final LongAdder sampledNanos = new LongAdder();
+
+    Entry(int index, Grok grok, int priority) {
+      this.index = index;
+      this.grok = grok;
+      this.priority = priority;
+    }
+
+    double averageNanos() {
+      long count = samples.sum();
+      return count == 0 ? 0 : sampledNanos.sum() / (double) count;
+    }
+
+    /**
+     * Hit probability per nanosecond spent, with a Laplace prior so unseen patterns
+     * neither jump to the front nor sink to the back. Trying patterns by decreasing
+     * score minimizes the expected cost of a line.
+     */
+    double score(double defaultNanos) {
+      double probability = (hits.sum() + 1.0) / (attempts.sum() + 2.0);
+      double nanos = averageNanos();
+      return probability / Math.max(1.0, nanos > 0 ? nanos : defaultNanos);
+    }
+  }
+
+  /**
+   * Counters of one pattern of the chain.
+   */
+  public static final class Stats {
+    private final int index;
+    private final Grok grok;
+    private final int priority;
+    private final long attempts;
+    private final long hits;
+    private final double averageNanos;
+
+    Stats(Entry entry) {
+      this.index = entry.index;
+      this.grok = entry.grok;
+      this.priority = entry.priority;
+      this.hits = entry.hits.sum();
+      this.attempts = Math.max(hits, entry.attempts.sum());
+      this.averageNanos = entry.averageNanos();
+    }
+
+    /**
+     * Insertion index of the pattern.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    public Grok getGrok() {
+      return grok;
+    }
+
+    public int getPriority() {
+      return priority;
+    }
+
+    public long getAttempts() {
+      return attempts;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return attempts - hits;
+    }
+
+    /**
+     * Average duration of a sampled attempt, 0 until one was sampled.
+     */
+    public double getAverageNanos() {
+      return averageNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "Stats{index=" + index + ", priority=" + priority + ", attempts=" + attempts
+          + ", hits=" + hits + ", averageNanos=" + averageNanos + '}';
+    }
+  }
+}
@@ -17,7 +17,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,9 +50,10 @@ public class GrokCompiler implements Serializable {
   }
 
   /**
-   * {@code Grok} patterns definitions.
+   * {@code Grok} patterns definitions: immutable snapshot, replaced as a whole by every
+   * registration. Compiled {@code Grok}s share the snapshot they were compiled from.
    */
-  private final Map<String, String> grokPatternDefinitions = new ConcurrentHashMap<>();
+  private volatile PatternSnapshot patterns = PatternSnapshot.EMPTY;
 
   /**
    * Cache for compiled patterns to improve performance.
@@ -66,14 +66,68 @@ public class GrokCompiler implements Serializable {
    */
   private boolean reservedKeywordRenaming = true;
 
+  /**
+   * Whether compiled patterns are implicitly anchored at the start of the text.
+   */
+  private boolean implicitAnchoring = false;
+
+  /**
+   * How compiled patterns keep their matchers, {@code null} for the default strategy.
+   */
+  private MatcherPool.Strategy matcherPoolStrategy;
+
+  /**
+   * Field name to maximum number of interned values, replaced on every change so that cache
+   * keys can hold it.
+   */
+  private Map<String, Integer> interning = Collections.emptyMap();
+
+  private boolean autoInterning = false;
+
+  /**
+   * Whether compiled patterns check their required literals before running the regex engine.
+   */
+  private boolean prefilterEnabled = true;
+
   private GrokCompiler() {}
 
   public static GrokCompiler newInstance() {
     return new GrokCompiler();
   }
 
+  /**
+   * Get the registered pattern definitions.
+   *
+   * <p>Since 1.0.2 this is an unmodifiable snapshot shared with the compiled {@code Grok}s, no
+   * longer the live registry: {@code put} and {@code remove} throw
+   * {@link UnsupportedOperationException}. Use {@link #register(String, String)} to add or
+   * replace a definition, and call this method again to see it.
+   *
+   * @return unmodifiable snapshot of the definitions, not affected by later registrations
+   */
   public Map<String, String> getPatternDefinitions() {
-    return grokPatternDefinitions;
+    return patterns.definitions;
+  }
+
+  /**
+   * Version of the registered pattern definitions, incremented by every registration that
+   * changes them. {@code Grok}s compiled from the same version share their
+   * {@link Grok#getPatterns() pattern map}.
+   *
+   * @return the version, 0 before the first registration
+   */
+  public long getPatternVersion() {
+    return patterns.version;
+  }
+
+  /**
+   * Statistics of the compiled pattern cache: hits, misses, evictions and compilation times,
+   * overall and by regex engine.
+   *
+   * @return a snapshot of the counters
+   */
+  public GrokCache.CacheStats getCacheStats() {
+    return cache.getStats();
   }
 
   /**
@@ -94,6 +148,125 @@ public class GrokCompiler implements Serializable {
     return reservedKeywordRenaming;
   }
 
+  /**
+   * Treat compiled patterns as implicitly {@code ^}-anchored: {@link Grok#match(CharSequence)}
+   * then only tries a match at the start of the text instead of at every offset, so a
+   * non-matching line costs a single attempt. Disabled by default.
+   *
+   * @param enabled true to anchor compiled patterns at the start of the text
+   */
+  public void setImplicitAnchoring(boolean enabled) {
+    this.implicitAnchoring = enabled;
+  }
+
+  /**
+   * Check if implicit anchoring is enabled.
+   *
+   * @return true if compiled patterns are anchored at the start of the text
+   */
+  public boolean isImplicitAnchoring() {
+    return implicitAnchoring;
+  }
+
+  /**
+   * Choose how the patterns compiled from now on keep their matchers between calls, instead of
+   * the {@link MatcherPool#getDefaultStrategy() default strategy}. The strategy is part of the
+   * compile cache key: compiling a pattern again with another strategy gives another
+   * {@code Grok}, and the {@code Grok}s compiled before are not affected.
+   *
+   * @param strategy : {@link MatcherPool.Strategy#STRIPED} for many patterns shared by many or
+   *     virtual threads, {@link MatcherPool.Strategy#PER_CALL} for rarely used patterns,
+   *     {@code null} for the default strategy at compile time
+   * @since 1.0.2
+   */
+  public void setMatcherPoolStrategy(MatcherPool.Strategy strategy) {
+    this.matcherPoolStrategy = strategy;
+  }
+
+  /**
+   * @return the strategy given to compiled patterns, {@code null} for the default strategy
+   * @since 1.0.2
+   */
+  public MatcherPool.Strategy getMatcherPoolStrategy() {
+    return matcherPoolStrategy;
+  }
+
+  /**
+   * Enable or disable the required-literal prefilter of the patterns compiled from now on
+   * (enabled by default). When enabled, a line lacking one of the literals reported by
+   * {@link Grok#getRequiredLiterals()} is rejected without running the regex engine. Part of
+   * the compile cache key: the {@code Grok}s compiled before are not affected.
+   *
+   * @param enabled : false to always run the regex engine
+   * @since 1.0.2
+   */
+  public void setPrefilterEnabled(boolean enabled) {
+    this.prefilterEnabled = enabled;
+  }
+
+  /**
+   * @since 1.0.2
+   */
+  public boolean isPrefilterEnabled() {
+    return prefilterEnabled;
+  }
+
+  /**
+   * Return canonical instances for the values of a low cardinality string field, such as an
+   * HTTP verb or a log level, instead of a new string per match, in the patterns compiled from
+   * now on. Values are looked up from the matched slice, without substring. Patterns without an
+   * untyped field of this name are not affected.
+   *
+   * <p>The interning settings are part of the compile cache key: every {@code Grok} compiled
+   * with them has interners of its own, and the {@code Grok}s compiled before are not affected.
+   *
+   * @param fieldName : final field name; every untyped field with this name is interned
+   * @param maxSize : maximum number of distinct values kept per pattern, 0 to stop interning
+   *     the field
+   * @since 1.0.2
+   */
+  public void setInterning(String fieldName, int maxSize) {
+    Objects.requireNonNull(fieldName);
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("max size must not be negative: " + maxSize);
+    }
+    Map<String, Integer> updated = new HashMap<>(interning);
+    if (maxSize == 0) {
+      updated.remove(fieldName);
+    } else {
+      updated.put(fieldName, maxSize);
+    }
+    interning = updated.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(updated);
+  }
+
+  /**
+   * @return field name to maximum number of interned values, see {@link #setInterning(String, int)}
+   * @since 1.0.2
+   */
+  public Map<String, Integer> getInterning() {
+    return interning;
+  }
+
+  /**
+   * Intern every untyped field not configured with {@link #setInterning(String, int)}, up to
+   * {@link StringInterner#DEFAULT_MAX_SIZE} values each, in the patterns compiled from now on.
+   * A field that shows more distinct values than that stops being interned. Part of the compile
+   * cache key, like {@link #setInterning(String, int)}.
+   *
+   * @param enabled : true to intern automatically, false by default
+   * @since 1.0.2
+   */
+  public void setAutoInterning(boolean enabled) {
+    this.autoInterning = enabled;
+  }
+
+  /**
+   * @since 1.0.2
+   */
+  public boolean isAutoInterning() {
+    return autoInterning;
+  }
+
   /**
    * Get the reserved keyword mappings.
    *
@@ -111,20 +284,64 @@ public class GrokCompiler implements Serializable {
    * @throws GrokException runtime expt
    **/
   public void register(String name, String pattern) {
+    Map<String, String> definitions = new HashMap<>();
+    collect(definitions, name, pattern);
+    registerAll(definitions);
+  }
+
+  /**
+   * Registers multiple pattern definitions.
+   */
+  public void register(Map<String, String> patternDefinitions) {
+    Objects.requireNonNull(patternDefinitions);
+    Map<String, String> definitions = new HashMap<>();
+    patternDefinitions.forEach((name, pattern) -> collect(definitions, name, pattern));
+    registerAll(definitions);
+  }
+
+  private static void collect(Map<String, String> definitions, String name, String pattern) {
     name = Objects.requireNonNull(name).trim();
     pattern = Objects.requireNonNull(pattern).trim();
 
     if (!name.isEmpty() && !pattern.isEmpty()) {
-      grokPatternDefinitions.put(name, pattern);
+      definitions.put(name, pattern);
     }
   }
 
   /**
-   * Registers multiple pattern definitions.
+   * Publish a new snapshot with the given definitions, copying the registry once per call.
    */
-  public void register(Map<String, String> patternDefinitions) {
-    Objects.requireNonNull(patternDefinitions);
-    patternDefinitions.forEach(this::register);
+  private synchronized void registerAll(Map<String, String> definitions) {
+    PatternSnapshot current = patterns;
+    boolean changed = false;
+    for (Map.Entry<String, String> entry : definitions.entrySet()) {
+      if (!entry.getValue().equals(current.definitions.get(entry.getKey()))) {
+        changed = true;
+        break;
+      }
+    }
+    if (changed) {
+      Map<String, String> updated = new HashMap<>(current.definitions);
+      updated.putAll(definitions);
+      patterns = new PatternSnapshot(current.version + 1, Collections.unmodifiableMap(updated));
+    }
+  }
+
+  /**
+   * Registered definitions at a given version.
+   */
+  private static final class PatternSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final PatternSnapshot EMPTY = new PatternSnapshot(0, Collections.emptyMap());
+
+    final long version;
+    final Map<String, String> definitions;
+
+    PatternSnapshot(long version, Map<String, String> definitions) {
+      this.version = version;
+      this.definitions = definitions;
+    }
   }
 
   public void registerDefaultPatterns() {
@@ -192,10 +409,7 @@ public class GrokCompiler implements Serializable {
   public void register(InputStream input, Charset charset) throws IOException {
     try (
         BufferedReader in = new BufferedReader(new InputStreamReader(input, charset))) {
-      in.lines()
-      .map(patternLinePattern::matcher)
-      .filter(Matcher::matches)
-        .forEach(m -> register(m.group(1), m.group(2)));
+      register(in);
     }
   }
 
@@ -203,10 +417,12 @@ public class GrokCompiler implements Serializable {
    * Registers multiple pattern definitions from a given Reader.
    */
   public void register(Reader input) throws IOException {
+    Map<String, String> definitions = new HashMap<>();
     new BufferedReader(input).lines()
     .map(patternLinePattern::matcher)
     .filter(Matcher::matches)
-      .forEach(m -> register(m.group(1), m.group(2)));
+      .forEach(m -> collect(definitions, m.group(1), m.group(2)));
+    registerAll(definitions);
   }
 
   /**
@@ -254,25 +470,81 @@ public class GrokCompiler implements Serializable {
 
     RegexEngine resolvedEngine = engine != null ? engine : defaultEngine();
 
+    PatternSnapshot snapshot = patterns;
+    MatcherPool.Strategy strategy = matcherPoolStrategy != null
+        ? matcherPoolStrategy : MatcherPool.getDefaultStrategy();
+
     // Check cache first
-    String cacheKey = pattern + ":" + defaultTimeZone + ":" + namedOnly + ":" + reservedKeywordRenaming
-        + ":" + resolvedEngine.getName();
+    GrokCache.CacheKey cacheKey = new GrokCache.CacheKey(pattern, defaultTimeZone, namedOnly,
+        reservedKeywordRenaming, implicitAnchoring, resolvedEngine.getName(), snapshot.version, strategy,
+        interning, autoInterning, prefilterEnabled);
     Grok cached = cache.getGrok(cacheKey);
     if (cached != null) {
       return cached;
     }
+    long start = System.nanoTime();
+
+    Map<String, String> renames = reservedKeywordRenaming ? RESERVED_KEYWORDS : Collections.emptyMap();
+    // the snapshot is immutable and shared with the compiled Grok; only patterns with inline
+    // definitions (%{FOO=regex}) get a copy of their own
+    Map<String, String> patternDefinitions = snapshot.definitions;
+    Map<String, String> inline = new HashMap<>();
+
+    // output
+    Map<String, String> namedRegexCollection = new HashMap<>();
+
+    String namedRegex = PatternExpander.expand(pattern, patternDefinitions, inline, namedOnly, renames,
+        namedRegexCollection);
+    if (namedRegex == null) {
+      Map<String, String> copy = new HashMap<>(snapshot.definitions);
+      namedRegexCollection = new HashMap<>();
+      namedRegex = expandByRescan(pattern, copy, namedOnly, renames, namedRegexCollection);
+      patternDefinitions = Collections.unmodifiableMap(copy);
+    } else if (!inline.isEmpty()) {
+      Map<String, String> copy = new HashMap<>(snapshot.definitions);
+      copy.putAll(inline);
+      patternDefinitions = Collections.unmodifiableMap(copy);
+    }
+
+    if (namedRegex.length() == 0) {
+      throw new IllegalArgumentException("Pattern not found");
+    }
+
+    Grok result = new Grok(
+        pattern,
+        namedRegex,
+        namedRegexCollection,
+        patternDefinitions,
+        defaultTimeZone,
+        resolvedEngine
+    );
+    result.setAnchored(implicitAnchoring);
+    result.setMatcherPoolStrategy(strategy);
+    result.setPrefilterEnabled(prefilterEnabled);
+    interning.forEach(result::setInterning);
+    if (autoInterning) {
+      result.setAutoInterning(true);
+    }
 
+    // Cache the compiled result
+    cache.putGrok(cacheKey, result, System.nanoTime() - start);
+
+    return result;
+  }
+
+  /**
+   * Expand the {@code %{...}} references by rewriting the text, one reference name at a time.
+   * Only used when a definition could form a reference with the text around it once expanded
+   * (a {@code %{} without closing brace), see {@link PatternExpander} which produces the same
+   * output on everything else.
+   */
+  static String expandByRescan(String pattern, Map<String, String> patternDefinitions, boolean namedOnly,
+      Map<String, String> renames, Map<String, String> namedRegexCollection) {
     StringBuilder namedRegex = new StringBuilder(pattern);
     int index = 0;
     /** flag for infinite recursion. */
-    int iterationLeft = 1000;
+    int iterationLeft = PatternExpander.MAX_ITERATIONS;
     Boolean continueIteration = true;
-    // Create a defensive copy for pattern resolution to avoid ConcurrentModificationException
-    // while other threads may be registering new patterns
-    Map<String, String> patternDefinitions = new HashMap<>(grokPatternDefinitions);
-
-    // output
-    Map<String, String> namedRegexCollection = new HashMap<>();
 
     // Replace %{foo} with the regex (mostly group name regex)
     // and then compile the regex
@@ -307,8 +579,8 @@ public class GrokCompiler implements Serializable {
             replacement = String.format("(?:%s)", definitionOfPattern);
           }
           String subname = group.get("subname") != null ? group.get("subname") : group.get("name");
-          if (reservedKeywordRenaming && group.get("subname") != null) {
-            String renamed = RESERVED_KEYWORDS.get(subname);
+          if (group.get("subname") != null) {
+            String renamed = renames.get(subname);
             if (renamed != null) {
               subname = renamed;
             }
@@ -326,22 +598,6 @@ public class GrokCompiler implements Serializable {
       }
     }
 
-    if (namedRegex.length() == 0) {
-      throw new IllegalArgumentException("Pattern not found");
-    }
-
-    Grok result = new Grok(
-        pattern,
-        namedRegex.toString(),
-        namedRegexCollection,
-        patternDefinitions,
-        defaultTimeZone,
-        resolvedEngine
-    );
-
-    // Cache the compiled result
-    cache.putGrok(cacheKey, result);
-
-    return result;
+    return namedRegex.toString();
   }
 }
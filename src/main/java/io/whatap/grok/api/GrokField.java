@@ -0,0 +1,95 @@
+package io.whatap.grok.api;
+
+/**
+ * Immutable description of one named group of a compiled {@link Grok}.
+ * Built once at construction time so the match path only deals with
+ * integer group numbers instead of per-match name lookups.
+ *
+ * @since 1.0.2
+ */
+public final class GrokField {
+
+  private final int index;
+  private final int group;
+  private final String groupName;
+  private final String key;
+  private final String name;
+  private final Converter.IConverter<? extends Object> converter;
+  private final Converter.Type type;
+  private final boolean unwanted;
+
+  GrokField(int index, int group, String groupName, String key, String name,
+      Converter.IConverter<? extends Object> converter, Converter.Type type, boolean unwanted) {
+    this.index = index;
+    this.group = group;
+    this.groupName = groupName;
+    this.key = key;
+    this.name = name;
+    this.converter = converter;
+    this.type = type;
+    this.unwanted = unwanted;
+  }
+
+  /**
+   * Position of this field in the {@code Grok} field table.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Regex group number, or -1 if the group could not be located in the regex: such a field
+   * is then read from the matcher by its group name.
+   */
+  public int getGroup() {
+    return group;
+  }
+
+  /**
+   * Raw regex group name (expl: name3).
+   */
+  public String getGroupName() {
+    return groupName;
+  }
+
+  /**
+   * Key before type suffix removal (expl: bytes:int).
+   */
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Final field name, after reserved keyword renaming and type suffix removal.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Converter declared on the field, or {@code null} for plain strings.
+   */
+  public Converter.IConverter<? extends Object> getConverter() {
+    return converter;
+  }
+
+  /**
+   * Declared type of the field, {@link Converter.Type#STRING} when none was declared.
+   */
+  public Converter.Type getType() {
+    return type;
+  }
+
+  /**
+   * Whether the field was declared as UNWANTED and must not be captured.
+   */
+  public boolean isUnwanted() {
+    return unwanted;
+  }
+
+  @Override
+  public String toString() {
+    return "GrokField{" + index + ", group=" + group + ", name=" + name + ", type=" + type
+        + (unwanted ? ", unwanted" : "") + "}";
+  }
+}
@@ -0,0 +1,311 @@
+package io.whatap.grok.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parses a UTF-8 log file by memory-mapping it in windows ({@link FileChannel#map}) and
+ * matching every line straight from the mapped bytes, for re-parsing large archived files.
+ *
+ * <p>Lines are terminated by {@code \n} or {@code \r\n}; a last line without terminator is
+ * reported too. Pure ASCII lines are handed to the {@link Grok} or {@link GrokSet} as a
+ * {@link CharSequence} view over the mapped bytes, without any copy. Lines holding other
+ * characters are decoded into a buffer reused from line to line. No {@code String} is
+ * created per line: only the fields that are read are.
+ *
+ * <p>A window holds as many complete lines as fit in {@link #setWindowSize(int) window size}
+ * bytes; the next window starts at the first incomplete line. A line longer than the window
+ * temporarily grows it.
+ *
+ * <p>A scanner is stateless between scans and may be shared by threads.
+ *
+ * @since 1.0.2
+ */
+public final class GrokFileScanner {
+
+  public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+  private static final long LOW_BITS = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+
+  /**
+   * Receives every line of the file, in order.
+   *
+   * <p>The {@code line} and the {@link Match} of {@code result} are views over the current
+   * window and are only valid during the callback. Values that must outlive it have to be
+   * copied, e.g. with {@link Match#capture()} or {@code line.toString()}.
+   */
+  @FunctionalInterface
+  public interface Handler {
+    /**
+     * @param lineNumber : 1-based number of the line in the scanned range
+     * @param line : the line, without its terminator
+     * @param result : match of the line, {@link GrokSet.Result#NO_MATCH} if nothing matched
+     */
+    void onLine(long lineNumber, CharSequence line, GrokSet.Result result);
+  }
+
+  private final Grok grok;
+  private final GrokSet set;
+  private volatile int windowSize = DEFAULT_WINDOW_SIZE;
+
+  /**
+   * @param grok : pattern matched against every line, reported as member 0
+   */
+  public GrokFileScanner(Grok grok) {
+    this.grok = grok;
+    this.set = null;
+  }
+
+  /**
+   * @param set : patterns matched against every line, first match wins
+   */
+  public GrokFileScanner(GrokSet set) {
+    this.grok = null;
+    this.set = set;
+  }
+
+  /**
+   * Number of bytes mapped at once (64 MiB by default).
+   */
+  public void setWindowSize(int bytes) {
+    if (bytes <= 0) {
+      throw new IllegalArgumentException("window size must be positive: " + bytes);
+    }
+    this.windowSize = bytes;
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Match every line of {@code file}.
+   *
+   * @param file : UTF-8 log file
+   * @param handler : receives every line
+   * @return number of lines
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if a line exceeds maximum allowed length
+   */
+  public long scan(Path file, Handler handler) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return scan(channel, handler);
+    }
+  }
+
+  /**
+   * Match every line of an open channel, from its start to its current size.
+   * The position of the channel is not used nor changed.
+   *
+   * @param channel : readable channel on a UTF-8 log file
+   * @param handler : receives every line
+   * @return number of lines
+   * @throws IOException if the file cannot be read
+   */
+  public long scan(FileChannel channel, Handler handler) throws IOException {
+    return scan(channel, 0, channel.size(), handler);
+  }
+
+  /**
+   * Match every line of the byte range {@code [from, to)}, which must start at a line start.
+   * A line still open at {@code to} is reported as a last line without terminator, so
+   * {@code to} should be a line start too or the end of the file. Line numbers start at 1
+   * at {@code from}. Ranges of the same channel may be scanned concurrently.
+   *
+   * @param channel : readable channel on a UTF-8 log file
+   * @param from : first byte of the range
+   * @param to : end of the range, exclusive
+   * @param handler : receives every line of the range
+   * @return number of lines in the range
+   * @throws IOException if the file cannot be read
+   */
+  public long scan(FileChannel channel, long from, long to, Handler handler) throws IOException {
+    Lines lines = new Lines(handler);
+    long position = from;
+    int window = windowSize;
+    while (position < to) {
+      int size = (int) Math.min(window, to - position);
+      boolean last = position + size == to;
+      ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+      int consumed = lines.split(bytes, size, last);
+      if (consumed == 0) {
+        // a single line longer than the window
+        if (window == Integer.MAX_VALUE) {
+          throw new IOException("Line at offset " + position + " is longer than " + window + " bytes");
+        }
+        window = (int) Math.min(Integer.MAX_VALUE, window * 2L);
+        continue;
+      }
+      position += consumed;
+      window = windowSize;
+    }
+    return lines.count;
+  }
+
+  /**
+   * Line splitting and matching state of one scan.
+   */
+  private final class Lines {
+    private final Handler handler;
+    private final AsciiView ascii = new AsciiView();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer decoded = CharBuffer.allocate(256);
+    long count;
+
+    Lines(Handler handler) {
+      this.handler = handler;
+    }
+
+    /**
+     * Report every complete line of the window, and the trailing partial line when it is
+     * the last window.
+     *
+     * @return number of bytes consumed, 0 if the window holds no complete line
+     */
+    int split(ByteBuffer window, int size, boolean last) {
+      window.order(ByteOrder.LITTLE_ENDIAN);
+      int start = 0;
+      while (start < size) {
+        int newline = indexOfNewline(window, start, size);
+        if (newline < 0) {
+          if (!last) {
+            return start;
+          }
+          line(window, start, size);
+          return size;
+        }
+        int end = newline > start && window.get(newline - 1) == '\r' ? newline - 1 : newline;
+        line(window, start, end);
+        start = newline + 1;
+      }
+      return size;
+    }
+
+    private void line(ByteBuffer window, int start, int end) {
+      CharSequence text;
+      if (isAscii(window, start, end)) {
+        ascii.reset(window, start, end - start);
+        text = ascii;
+      } else {
+        text = decode(window, start, end);
+      }
+      count++;
+      handler.onLine(count, text, match(text));
+    }
+
+    private CharBuffer decode(ByteBuffer window, int start, int end) {
+      ByteBuffer source = window.duplicate();
+      source.limit(end).position(start);
+      int capacity = end - start;
+      if (decoded.capacity() < capacity) {
+        decoded = CharBuffer.allocate(Math.max(capacity, decoded.capacity() * 2));
+      }
+      decoded.clear();
+      decoder.reset();
+      decoder.decode(source, decoded, true);
+      decoder.flush(decoded);
+      decoded.flip();
+      return decoded;
+    }
+  }
+
+  private GrokSet.Result match(CharSequence line) {
+    if (set != null) {
+      return set.match(line);
+    }
+    Match match = grok.match(line);
+    return match.isNull() ? GrokSet.Result.NO_MATCH : new GrokSet.Result(0, grok, match);
+  }
+
+  /**
+   * Position of the first {@code \n} in {@code [from, to)}, -1 if there is none.
+   * Scans eight bytes at a time.
+   */
+  static int indexOfNewline(ByteBuffer bytes, int from, int to) {
+    int i = from;
+    for (; i + Long.BYTES <= to; i += Long.BYTES) {
+      long word = bytes.getLong(i) ^ NEWLINES;
+      long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+      if (found != 0) {
+        // little endian: the lowest flagged byte is the first newline
+        return i + (Long.numberOfTrailingZeros(found) >>> 3);
+      }
+    }
+    for (; i < to; i++) {
+      if (bytes.get(i) == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static boolean isAscii(ByteBuffer bytes, int from, int to) {
+    int i = from;
+    long bits = 0;
+    for (; i + Long.BYTES <= to; i += Long.BYTES) {
+      bits |= bytes.getLong(i);
+    }
+    for (; i < to; i++) {
+      bits |= bytes.get(i);
+    }
+    return (bits & HIGH_BITS) == 0;
+  }
+
+  /**
+   * Zero-copy {@link CharSequence} over ASCII bytes of a mapped window, repointed at
+   * every line. Only {@link #subSequence} and {@link #toString} copy.
+   */
+  static final class AsciiView implements CharSequence {
+    private ByteBuffer bytes;
+    private int offset;
+    private int length;
+
+    void reset(ByteBuffer bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+      }
+      return (char) bytes.get(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+      }
+      byte[] copy = new byte[end - start];
+      for (int i = 0; i < copy.length; i++) {
+        copy[i] = bytes.get(offset + start + i);
+      }
+      return new String(copy, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+      return subSequence(0, length).toString();
+    }
+  }
+}
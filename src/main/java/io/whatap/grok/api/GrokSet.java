@@ -0,0 +1,211 @@
+package io.whatap.grok.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered set of {@link Grok} tried on a line with "first match wins" semantics,
+ * like a list of patterns in a single Logstash {@code match}.
+ *
+ * <p>The required literals of every member (see {@link Grok#getRequiredLiterals()}) are
+ * compiled into one shared Aho-Corasick automaton. A line is scanned once to find which
+ * literals it contains, and only the members whose literals are all present run their regex.
+ * Members without required literals, or with their prefilter disabled when the set was
+ * built, are always tried. The cost of a line therefore grows with the number of plausible
+ * candidates rather than with the size of the set.
+ *
+ * <p>A {@code GrokSet} is immutable and thread safe.
+ *
+ * @since 1.0.2
+ */
+public final class GrokSet {
+
+  private final Grok[] groks;
+  /** Number of distinct literals required by every member, 0 if it is always a candidate. */
+  private final int[] required;
+  /** Members requiring every literal id. */
+  private final int[][] literalMembers;
+  private final LiteralAutomaton automaton;
+  private final ThreadLocal<Scan> scans;
+
+  /**
+   * @param groks : members, in evaluation order
+   */
+  public GrokSet(List<Grok> groks) {
+    this.groks = groks.toArray(new Grok[0]);
+    this.required = new int[this.groks.length];
+
+    Map<String, Integer> literalIds = new HashMap<>();
+    List<String> literals = new ArrayList<>();
+    List<List<Integer>> members = new ArrayList<>();
+    for (int index = 0; index < this.groks.length; index++) {
+      Grok grok = this.groks[index];
+      if (!grok.isPrefilterEnabled()) {
+        continue;
+      }
+      for (String literal : grok.prefilter().getLiterals()) {
+        Integer id = literalIds.get(literal);
+        if (id == null) {
+          id = literals.size();
+          literalIds.put(literal, id);
+          literals.add(literal);
+          members.add(new ArrayList<>());
+        }
+        members.get(id).add(index);
+        required[index]++;
+      }
+    }
+
+    this.literalMembers = new int[members.size()][];
+    for (int id = 0; id < literalMembers.length; id++) {
+      List<Integer> list = members.get(id);
+      literalMembers[id] = new int[list.size()];
+      for (int i = 0; i < list.size(); i++) {
+        literalMembers[id][i] = list.get(i);
+      }
+    }
+    this.automaton = new LiteralAutomaton(literals);
+    this.scans = ThreadLocal.withInitial(Scan::new);
+  }
+
+  public int size() {
+    return groks.length;
+  }
+
+  /**
+   * @return immutable view of the members, in evaluation order
+   */
+  public List<Grok> getGroks() {
+    return Collections.unmodifiableList(Arrays.asList(groks));
+  }
+
+  /**
+   * @return number of distinct literals in the shared automaton
+   */
+  public int getLiteralCount() {
+    return automaton.getLiteralCount();
+  }
+
+  /**
+   * Match the given text against the members in order and return the first match.
+   *
+   * @param text : Single line of log
+   * @return the matching member and its {@link Match}, {@link Result#NO_MATCH} if none matched
+   * @throws IllegalArgumentException if input length exceeds maximum allowed length
+   */
+  public Result match(CharSequence text) {
+    if (text == null) {
+      return Result.NO_MATCH;
+    }
+    Grok.checkInputLength(text);
+    Scan scan = scans.get();
+    scan.run(text);
+    for (int index = 0; index < groks.length; index++) {
+      if (!scan.isCandidate(index)) {
+        continue;
+      }
+      Match match = groks[index].matchPrefiltered(text);
+      if (!match.isNull()) {
+        return new Result(index, groks[index], match);
+      }
+    }
+    return Result.NO_MATCH;
+  }
+
+  /**
+   * Match the given log and return the json representation of the first match.
+   *
+   * @param log : log to match
+   * @return map containing matches, empty if no member matched
+   */
+  public Map<String, Object> capture(String log) {
+    return match(log).getMatch().capture();
+  }
+
+  /**
+   * Outcome of {@link #match(CharSequence)}.
+   */
+  public static final class Result {
+
+    public static final Result NO_MATCH = new Result(-1, null, Match.EMPTY);
+
+    private final int index;
+    private final Grok grok;
+    private final Match match;
+
+    Result(int index, Grok grok, Match match) {
+      this.index = index;
+      this.grok = grok;
+      this.match = match;
+    }
+
+    public boolean isMatched() {
+      return grok != null;
+    }
+
+    /**
+     * Position of the matching member in the set, -1 if none matched.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * Matching member, {@code null} if none matched.
+     */
+    public Grok getGrok() {
+      return grok;
+    }
+
+    /**
+     * Match of the matching member, {@link Match#EMPTY} if none matched.
+     */
+    public Match getMatch() {
+      return match;
+    }
+  }
+
+  /**
+   * Per-thread scan state. Arrays are reset lazily with a generation stamp so a scan
+   * costs nothing for the members and literals it does not touch.
+   */
+  private final class Scan implements LiteralAutomaton.Visitor {
+    private final int[] literalStamp = new int[literalMembers.length];
+    private final int[] memberStamp = new int[groks.length];
+    private final int[] memberHits = new int[groks.length];
+    private int stamp;
+
+    void run(CharSequence text) {
+      if (++stamp == 0) {
+        Arrays.fill(literalStamp, 0);
+        Arrays.fill(memberStamp, 0);
+        stamp = 1;
+      }
+      automaton.scan(text, this);
+    }
+
+    @Override
+    public void found(int literal) {
+      if (literalStamp[literal] == stamp) {
+        return;
+      }
+      literalStamp[literal] = stamp;
+      for (int member : literalMembers[literal]) {
+        if (memberStamp[member] != stamp) {
+          memberStamp[member] = stamp;
+          memberHits[member] = 0;
+        }
+        memberHits[member]++;
+      }
+    }
+
+    boolean isCandidate(int member) {
+      return required[member] == 0
+          || memberStamp[member] == stamp && memberHits[member] == required[member];
+    }
+  }
+}
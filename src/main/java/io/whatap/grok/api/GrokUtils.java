@@ -2,6 +2,7 @@ package io.whatap.grok.api;
 
 import io.whatap.grok.api.engine.EngineMatcher;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -48,6 +49,79 @@ public class GrokUtils {
     return namedGroups;
   }
 
+  /**
+   * Resolve the group number of every named group of the given regex, read with the
+   * java.util.regex syntax: a '[' inside a character class opens a nested class. Engines with
+   * another syntax resolve the numbers themselves, see
+   * {@link io.whatap.grok.api.engine.CompiledPattern#namedGroups()}.
+   * Accepts both java style {@code (?<name>)} and re2j style {@code (?P<name>)} groups,
+   * and skips escaped parentheses, quoted sections and character classes.
+   *
+   * @param regex : regular expression
+   * @return map of group name to group number
+   */
+  public static Map<String, Integer> getNamedGroupIndexes(String regex) {
+    Map<String, Integer> indexes = new HashMap<>();
+    int group = 0;
+    int classDepth = 0;
+    int length = regex.length();
+    for (int i = 0; i < length; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 < length && regex.charAt(i + 1) == 'Q') {
+          int quoteEnd = regex.indexOf("\\E", i + 2);
+          i = quoteEnd < 0 ? length : quoteEnd + 1;
+        } else {
+          i++;
+        }
+      } else if (classDepth > 0) {
+        if (c == '[') {
+          classDepth++;
+          i = skipClassStart(regex, i);
+        } else if (c == ']') {
+          classDepth--;
+        }
+      } else if (c == '[') {
+        classDepth++;
+        i = skipClassStart(regex, i);
+      } else if (c == '(') {
+        if (i + 1 >= length || regex.charAt(i + 1) != '?') {
+          group++;
+          continue;
+        }
+        int nameStart = -1;
+        if (regex.startsWith("?<", i + 1) && i + 3 < length && Character.isLetter(regex.charAt(i + 3))) {
+          nameStart = i + 3;
+        } else if (regex.startsWith("?P<", i + 1)) {
+          nameStart = i + 4;
+        }
+        if (nameStart >= 0) {
+          group++;
+          int nameEnd = regex.indexOf('>', nameStart);
+          if (nameEnd > nameStart) {
+            indexes.put(regex.substring(nameStart, nameEnd), group);
+            i = nameEnd;
+          }
+        }
+      }
+    }
+    return indexes;
+  }
+
+  /**
+   * A ']' right after '[' or '[^' is a literal, not the end of the class.
+   */
+  private static int skipClassStart(String regex, int open) {
+    int i = open;
+    if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+      i++;
+    }
+    if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+      i++;
+    }
+    return i;
+  }
+
   public static Map<String, String> namedGroups(Matcher matcher, Set<String> groupNames) {
     Map<String, String> namedGroups = new LinkedHashMap<>();
     for (String groupName : groupNames) {
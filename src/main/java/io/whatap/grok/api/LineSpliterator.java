@@ -0,0 +1,155 @@
+package io.whatap.grok.api;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Lazily splits a {@link Reader} into lines, with the same line terminators as
+ * {@link java.io.BufferedReader#readLine()} ({@code \n}, {@code \r} or {@code \r\n}).
+ *
+ * <p>Characters are read into a single buffer reused for the whole input; it only grows to
+ * hold a line longer than itself. {@link #trySplit()} hands out batches of lines of growing
+ * size, so a parallel stream matches batches on other threads while this spliterator keeps
+ * reading sequentially.
+ *
+ * @since 1.0.2
+ */
+final class LineSpliterator implements Spliterator<String> {
+
+  static final int BUFFER_SIZE = 8192;
+  private static final int BATCH_UNIT = 1 << 10;
+  private static final int MAX_BATCH = 1 << 25;
+
+  private final Reader reader;
+  private char[] buffer;
+  private int position;
+  private int limit;
+  /** The previous line ended with {@code \r}: a following {@code \n} belongs to it. */
+  private boolean skipLf;
+  private boolean eof;
+  private int batch;
+
+  LineSpliterator(Reader reader) {
+    this(reader, BUFFER_SIZE);
+  }
+
+  LineSpliterator(Reader reader, int bufferSize) {
+    this.reader = reader;
+    this.buffer = new char[bufferSize];
+  }
+
+  /**
+   * @return the next line without its terminator, {@code null} at the end of the input
+   */
+  String nextLine() throws IOException {
+    int scan = position;
+    while (true) {
+      if (skipLf && position < limit) {
+        skipLf = false;
+        if (buffer[position] == '\n') {
+          position++;
+          scan = position;
+        }
+      }
+      for (; scan < limit; scan++) {
+        char c = buffer[scan];
+        if (c == '\n' || c == '\r') {
+          String line = new String(buffer, position, scan - position);
+          position = scan + 1;
+          skipLf = c == '\r';
+          return line;
+        }
+      }
+      if (eof) {
+        if (position == limit) {
+          return null;
+        }
+        String line = new String(buffer, position, limit - position);
+        position = limit;
+        return line;
+      }
+      scan = fill(scan);
+    }
+  }
+
+  /**
+   * Move the pending characters to the start of the buffer, grow it if the pending line
+   * fills it, then read more.
+   *
+   * @return {@code scan} adjusted to the moved characters
+   */
+  private int fill(int scan) throws IOException {
+    int shift = position;
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    } else if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    int read = reader.read(buffer, limit, buffer.length - limit);
+    if (read < 0) {
+      eof = true;
+    } else {
+      limit += read;
+    }
+    return scan - shift;
+  }
+
+  private String next() {
+    try {
+      return nextLine();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super String> action) {
+    String line = next();
+    if (line == null) {
+      return false;
+    }
+    action.accept(line);
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super String> action) {
+    String line;
+    while ((line = next()) != null) {
+      action.accept(line);
+    }
+  }
+
+  @Override
+  public Spliterator<String> trySplit() {
+    int size = Math.min(batch + BATCH_UNIT, MAX_BATCH);
+    String[] lines = new String[size];
+    int count = 0;
+    String line;
+    while (count < size && (line = next()) != null) {
+      lines[count++] = line;
+    }
+    if (count == 0) {
+      return null;
+    }
+    batch = count;
+    return Spliterators.spliterator(lines, 0, count, characteristics());
+  }
+
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
@@ -0,0 +1,143 @@
+package io.whatap.grok.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed set of literals, reporting every literal
+ * occurring in a text in a single left-to-right scan.
+ *
+ * @since 1.0.2
+ */
+final class LiteralAutomaton {
+
+  private static final int[] NO_OUTPUT = new int[0];
+
+  /** Sorted transition characters of every node. */
+  private final char[][] keys;
+  /** Target node of each transition, parallel to {@link #keys}. */
+  private final int[][] targets;
+  private final int[] failure;
+  /** Literal ids ending at every node, including the ones reached through failure links. */
+  private final int[][] output;
+  private final int literalCount;
+
+  /**
+   * Receiver of the literals found by {@link #scan(CharSequence, Visitor)}.
+   */
+  interface Visitor {
+    /**
+     * @param literal : id of the literal, its index in the constructor list
+     */
+    void found(int literal);
+  }
+
+  /**
+   * @param literals : non empty literals, the position in the list is the literal id
+   */
+  LiteralAutomaton(List<String> literals) {
+    this.literalCount = literals.size();
+    List<Map<Character, Integer>> trie = new ArrayList<>();
+    List<List<Integer>> ends = new ArrayList<>();
+    trie.add(new TreeMap<>());
+    ends.add(new ArrayList<>());
+    for (int id = 0; id < literals.size(); id++) {
+      String literal = literals.get(id);
+      int node = 0;
+      for (int i = 0; i < literal.length(); i++) {
+        Integer next = trie.get(node).get(literal.charAt(i));
+        if (next == null) {
+          next = trie.size();
+          trie.get(node).put(literal.charAt(i), next);
+          trie.add(new TreeMap<>());
+          ends.add(new ArrayList<>());
+        }
+        node = next;
+      }
+      ends.get(node).add(id);
+    }
+
+    int size = trie.size();
+    keys = new char[size][];
+    targets = new int[size][];
+    failure = new int[size];
+    output = new int[size][];
+    for (int node = 0; node < size; node++) {
+      Map<Character, Integer> children = trie.get(node);
+      keys[node] = new char[children.size()];
+      targets[node] = new int[children.size()];
+      int i = 0;
+      for (Map.Entry<Character, Integer> child : children.entrySet()) {
+        keys[node][i] = child.getKey();
+        targets[node][i] = child.getValue();
+        i++;
+      }
+    }
+
+    // Breadth first, so the failure target of a node is always complete before the node.
+    output[0] = NO_OUTPUT;
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int child : targets[0]) {
+      failure[child] = 0;
+      output[child] = toArray(ends.get(child), NO_OUTPUT);
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      for (int i = 0; i < keys[node].length; i++) {
+        char c = keys[node][i];
+        int child = targets[node][i];
+        int fallback = failure[node];
+        int next;
+        while ((next = transition(fallback, c)) < 0 && fallback != 0) {
+          fallback = failure[fallback];
+        }
+        failure[child] = next < 0 ? 0 : next;
+        output[child] = toArray(ends.get(child), output[failure[child]]);
+        queue.add(child);
+      }
+    }
+  }
+
+  private static int[] toArray(List<Integer> own, int[] inherited) {
+    if (own.isEmpty()) {
+      return inherited;
+    }
+    int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+    for (int i = 0; i < own.size(); i++) {
+      result[inherited.length + i] = own.get(i);
+    }
+    return result;
+  }
+
+  private int transition(int node, char c) {
+    int i = Arrays.binarySearch(keys[node], c);
+    return i < 0 ? -1 : targets[node][i];
+  }
+
+  int getLiteralCount() {
+    return literalCount;
+  }
+
+  /**
+   * Report every occurrence of every literal in {@code text}.
+   */
+  void scan(CharSequence text, Visitor visitor) {
+    int node = 0;
+    for (int i = 0, length = text.length(); i < length; i++) {
+      char c = text.charAt(i);
+      int next;
+      while ((next = transition(node, c)) < 0 && node != 0) {
+        node = failure[node];
+      }
+      node = next < 0 ? 0 : next;
+      for (int literal : output[node]) {
+        visitor.found(literal);
+      }
+    }
+  }
+}
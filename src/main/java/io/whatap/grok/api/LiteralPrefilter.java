@@ -0,0 +1,518 @@
+package io.whatap.grok.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Literal substrings that every match of a regex must contain.
+ *
+ * <p>Extracted once from the expanded named regex of a {@link Grok}: a line that lacks one of
+ * them cannot match, so it can be rejected with a plain {@code indexOf} scan before running the
+ * regex engine. The analysis is conservative: optional parts, alternations, lookarounds and
+ * anything it does not understand (inline flags, {@code \Q..\E}, numeric escapes) contribute no
+ * literal, so the filter never rejects a line the regex would match.
+ *
+ * @since 1.0.2
+ */
+final class LiteralPrefilter {
+
+  static final LiteralPrefilter NONE = new LiteralPrefilter(new String[0]);
+
+  /** Shorter literals are too common to reject anything. */
+  private static final int MIN_LITERAL_LENGTH = 2;
+  private static final int MAX_LITERALS = 4;
+
+  private final String[] literals;
+  /** UTF-8 encoding of {@link #literals}, for byte input. */
+  private final byte[][] utf8Literals;
+
+  private LiteralPrefilter(String[] literals) {
+    this.literals = literals;
+    this.utf8Literals = new byte[literals.length][];
+    for (int i = 0; i < literals.length; i++) {
+      utf8Literals[i] = literals[i].getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Build the prefilter of a regex.
+   *
+   * @param regex : java.util.regex syntax
+   * @return the prefilter, {@link #NONE} if no usable literal was found
+   */
+  static LiteralPrefilter forRegex(String regex) {
+    Set<String> required;
+    try {
+      Parser parser = new Parser(regex);
+      required = parser.parseAlternation().required;
+      if (parser.pos != regex.length()) {
+        return NONE;
+      }
+    } catch (Unsupported e) {
+      return NONE;
+    }
+
+    List<String> candidates = new ArrayList<>();
+    for (String literal : required) {
+      if (literal.length() >= MIN_LITERAL_LENGTH) {
+        candidates.add(literal);
+      }
+    }
+    candidates.sort((a, b) -> b.length() - a.length());
+    List<String> selected = new ArrayList<>();
+    for (String literal : candidates) {
+      boolean covered = false;
+      for (String longer : selected) {
+        if (longer.contains(literal)) {
+          covered = true;
+          break;
+        }
+      }
+      if (!covered) {
+        selected.add(literal);
+      }
+      if (selected.size() == MAX_LITERALS) {
+        break;
+      }
+    }
+    return selected.isEmpty() ? NONE : new LiteralPrefilter(selected.toArray(new String[0]));
+  }
+
+  /**
+   * @return false if {@code text} lacks a required literal and therefore cannot match
+   */
+  boolean mayMatch(CharSequence text) {
+    for (String literal : literals) {
+      if (indexOf(text, literal, 0) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return false if the UTF-8 range lacks a required literal and therefore cannot match
+   */
+  boolean mayMatch(byte[] input, int offset, int length) {
+    for (byte[] literal : utf8Literals) {
+      if (indexOf(input, offset, length, literal) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static int indexOf(byte[] input, int offset, int length, byte[] literal) {
+    int last = offset + length - literal.length;
+    byte first = literal[0];
+    for (int i = offset; i <= last; i++) {
+      if (input[i] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < literal.length && input[i + j] == literal[j]) {
+        j++;
+      }
+      if (j == literal.length) {
+        return i - offset;
+      }
+    }
+    return -1;
+  }
+
+  boolean isEmpty() {
+    return literals.length == 0;
+  }
+
+  List<String> getLiterals() {
+    return Collections.unmodifiableList(Arrays.asList(literals));
+  }
+
+  static int indexOf(CharSequence text, String literal, int from) {
+    if (text instanceof String) {
+      return ((String) text).indexOf(literal, from);
+    }
+    int last = text.length() - literal.length();
+    char first = literal.charAt(0);
+    for (int i = from; i <= last; i++) {
+      if (text.charAt(i) != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < literal.length() && text.charAt(i + j) == literal.charAt(j)) {
+        j++;
+      }
+      if (j == literal.length()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** {@code parseAtom} result of an assertion matching the empty string. */
+  private static final int ZERO_WIDTH = -2;
+
+  /**
+   * Literal run being built by a sequence, and what was known before it was broken.
+   */
+  private static final class Sequence {
+    final StringBuilder run = new StringBuilder();
+    final Set<String> required = new LinkedHashSet<>();
+    /** Content of the run when it was first broken, {@code null} while the sequence is exact. */
+    String prefix;
+
+    void breakRun() {
+      if (prefix == null) {
+        prefix = run.toString();
+      }
+      if (run.length() > 0) {
+        required.add(run.toString());
+        run.setLength(0);
+      }
+    }
+
+    Info finish() {
+      if (prefix == null) {
+        return Info.exact(run.toString());
+      }
+      String suffix = run.toString();
+      if (!suffix.isEmpty()) {
+        required.add(suffix);
+      }
+      return new Info(required, null, prefix, suffix);
+    }
+  }
+
+  private static final class Unsupported extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    Unsupported() {
+      super(null, null, false, false);
+    }
+  }
+
+  /**
+   * Literal facts about a sub-expression: every match of it starts with {@code prefix}, ends
+   * with {@code suffix} and contains every string of {@code required}. {@code exact} is set
+   * when the sub-expression only ever matches that one string.
+   */
+  private static final class Info {
+    final Set<String> required;
+    final String exact;
+    final String prefix;
+    final String suffix;
+
+    Info(Set<String> required, String exact, String prefix, String suffix) {
+      this.required = required;
+      this.exact = exact;
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    static Info exact(String literal) {
+      Set<String> required = new LinkedHashSet<>();
+      if (!literal.isEmpty()) {
+        required.add(literal);
+      }
+      return new Info(required, literal, literal, literal);
+    }
+  }
+
+  /**
+   * Recursive descent over java.util.regex syntax, computing the literal facts of every
+   * sub-expression. Zero-width assertions are transparent: a string matched by {@code a\bb}
+   * still contains {@code ab}.
+   */
+  private static final class Parser {
+    private final String regex;
+    private int pos;
+
+    Parser(String regex) {
+      this.regex = regex;
+    }
+
+    /**
+     * alternation := sequence ('|' sequence)*
+     * Only literals required by every branch are required by the alternation.
+     */
+    Info parseAlternation() throws Unsupported {
+      Info first = parseSequence();
+      if (pos >= regex.length() || regex.charAt(pos) != '|') {
+        return first;
+      }
+      Set<String> required = withExact(first);
+      String exact = first.exact;
+      String prefix = first.prefix;
+      String suffix = first.suffix;
+      while (pos < regex.length() && regex.charAt(pos) == '|') {
+        pos++;
+        Info branch = parseSequence();
+        required.retainAll(withExact(branch));
+        if (exact != null && !exact.equals(branch.exact)) {
+          exact = null;
+        }
+        prefix = commonPrefix(prefix, branch.prefix);
+        suffix = commonSuffix(suffix, branch.suffix);
+      }
+      if (exact != null) {
+        return Info.exact(exact);
+      }
+      addLiteral(required, prefix);
+      addLiteral(required, suffix);
+      return new Info(required, null, prefix, suffix);
+    }
+
+    private static Set<String> withExact(Info info) {
+      Set<String> set = new LinkedHashSet<>(info.required);
+      addLiteral(set, info.exact);
+      return set;
+    }
+
+    private static void addLiteral(Set<String> set, String literal) {
+      if (literal != null && !literal.isEmpty()) {
+        set.add(literal);
+      }
+    }
+
+    private static String commonPrefix(String a, String b) {
+      int i = 0;
+      while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) {
+        i++;
+      }
+      return a.substring(0, i);
+    }
+
+    private static String commonSuffix(String a, String b) {
+      int i = 0;
+      while (i < a.length() && i < b.length()
+          && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+        i++;
+      }
+      return a.substring(a.length() - i);
+    }
+
+    private Info parseSequence() throws Unsupported {
+      Sequence sequence = new Sequence();
+      while (pos < regex.length()) {
+        char c = regex.charAt(pos);
+        if (c == '|' || c == ')') {
+          break;
+        }
+        if (c == '(') {
+          Info group = parseGroup();
+          int min = quantifierMin();
+          if (min == 0) {
+            sequence.breakRun();
+          } else if (min < 0 && group.exact != null) {
+            sequence.run.append(group.exact);
+          } else {
+            // X or X+: the match starts with a prefix of X and ends with a suffix of X
+            sequence.run.append(group.prefix);
+            sequence.breakRun();
+            sequence.required.addAll(group.required);
+            sequence.run.append(group.suffix);
+          }
+          continue;
+        }
+        int literal = parseAtom();
+        int min = quantifierMin();
+        if (literal == ZERO_WIDTH && min < 0) {
+          continue;
+        }
+        if (literal < 0 || min == 0) {
+          sequence.breakRun();
+        } else if (min < 0) {
+          sequence.run.append((char) literal);
+        } else {
+          sequence.run.append((char) literal);
+          sequence.breakRun();
+          sequence.run.append((char) literal);
+        }
+      }
+      return sequence.finish();
+    }
+
+    /**
+     * Parse a group starting at '('. Lookarounds are zero width and match the empty string.
+     */
+    private Info parseGroup() throws Unsupported {
+      pos++;
+      boolean lookaround = false;
+      if (regex.startsWith("?", pos)) {
+        if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+          pos += 2;
+        } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+          pos += 2;
+          lookaround = true;
+        } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+          pos += 3;
+          lookaround = true;
+        } else if (regex.startsWith("?<", pos) || regex.startsWith("?P<", pos)) {
+          int close = regex.indexOf('>', pos);
+          if (close < 0) {
+            throw new Unsupported();
+          }
+          pos = close + 1;
+        } else {
+          // inline flags such as (?i) change the meaning of literals
+          throw new Unsupported();
+        }
+      }
+      Info inner = parseAlternation();
+      if (pos >= regex.length() || regex.charAt(pos) != ')') {
+        throw new Unsupported();
+      }
+      pos++;
+      return lookaround ? Info.exact("") : inner;
+    }
+
+    /**
+     * Parse one atom outside a group.
+     *
+     * @return the literal character it matches, {@link #ZERO_WIDTH} for an assertion,
+     *     or -1 for anything else
+     */
+    private int parseAtom() throws Unsupported {
+      char c = regex.charAt(pos++);
+      switch (c) {
+        case '\\':
+          return parseEscape();
+        case '[':
+          skipClass();
+          return -1;
+        case '.':
+          return -1;
+        case '^':
+        case '$':
+          return ZERO_WIDTH;
+        case '*':
+        case '+':
+        case '?':
+          throw new Unsupported();
+        default:
+          return c;
+      }
+    }
+
+    private int parseEscape() throws Unsupported {
+      if (pos >= regex.length()) {
+        throw new Unsupported();
+      }
+      char c = regex.charAt(pos++);
+      if (!Character.isLetterOrDigit(c)) {
+        return c;
+      }
+      switch (c) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return '\u0007';
+        case 'e':
+          return '\u001B';
+        case 'd': case 'D': case 'w': case 'W': case 's': case 'S':
+        case 'h': case 'H': case 'v': case 'V': case 'R': case 'X':
+          return -1;
+        case 'b': case 'B': case 'A': case 'z': case 'Z': case 'G':
+          return ZERO_WIDTH;
+        case 'p':
+        case 'P':
+          if (pos < regex.length() && regex.charAt(pos) == '{') {
+            int close = regex.indexOf('}', pos);
+            if (close < 0) {
+              throw new Unsupported();
+            }
+            pos = close + 1;
+          } else {
+            pos++;
+          }
+          return -1;
+        case 'k':
+          int close = regex.indexOf('>', pos);
+          if (close < 0) {
+            throw new Unsupported();
+          }
+          pos = close + 1;
+          return -1;
+        default:
+          if (c >= '1' && c <= '9') {
+            while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+              pos++;
+            }
+            return -1;
+          }
+          throw new Unsupported();
+      }
+    }
+
+    private void skipClass() throws Unsupported {
+      int depth = 1;
+      if (pos < regex.length() && regex.charAt(pos) == '^') {
+        pos++;
+      }
+      if (pos < regex.length() && regex.charAt(pos) == ']') {
+        pos++;
+      }
+      while (pos < regex.length()) {
+        char c = regex.charAt(pos++);
+        if (c == '\\') {
+          pos++;
+        } else if (c == '[') {
+          depth++;
+        } else if (c == ']' && --depth == 0) {
+          return;
+        }
+      }
+      throw new Unsupported();
+    }
+
+    /**
+     * Consume a quantifier following an atom, if any.
+     *
+     * @return its minimum repetition count, or -1 if there is no quantifier
+     */
+    private int quantifierMin() throws Unsupported {
+      if (pos >= regex.length()) {
+        return -1;
+      }
+      int min;
+      char c = regex.charAt(pos);
+      if (c == '?' || c == '*') {
+        pos++;
+        min = 0;
+      } else if (c == '+') {
+        pos++;
+        min = 1;
+      } else if (c == '{') {
+        int close = regex.indexOf('}', pos);
+        if (close < 0) {
+          throw new Unsupported();
+        }
+        String bounds = regex.substring(pos + 1, close);
+        int comma = bounds.indexOf(',');
+        try {
+          min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+        } catch (NumberFormatException e) {
+          throw new Unsupported();
+        }
+        pos = close + 1;
+      } else {
+        return -1;
+      }
+      if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+        pos++;
+      }
+      return min;
+    }
+  }
+}
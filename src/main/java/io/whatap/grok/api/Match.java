@@ -3,6 +3,7 @@ package io.whatap.grok.api;
 
 import static java.lang.String.format;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 
 import io.whatap.grok.api.Converter.IConverter;
+import io.whatap.grok.api.engine.ByteMatcher;
 import io.whatap.grok.api.engine.EngineMatcher;
 import io.whatap.grok.api.exception.GrokException;
 
@@ -19,21 +21,68 @@ import io.whatap.grok.api.exception.GrokException;
  * @since 0.0.1
  */
 public class Match {
-  private final CharSequence subject;
+  private static final int[] NO_OFFSETS = new int[0];
+
+  /**
+   * Matched text; decoded on first use for a byte match.
+   */
+  private CharSequence subject;
+  /**
+   * UTF-8 input of a byte match, {@code null} for a text match.
+   */
+  private final byte[] bytes;
+  private final int bytesOffset;
+  private final int bytesLength;
   private final Grok grok;
-  private final EngineMatcher match;
+  /**
+   * Start/end offsets of every regex group (group 0 included), copied at match time
+   * so the {@code Match} does not depend on the pooled matcher.
+   */
+  private final int[] offsets;
+  /**
+   * Values of the fields without a group number, by field index, read by group name at match
+   * time; {@code null} when every field has a group number.
+   */
+  private final String[] unresolved;
   private final int start;
   private final int end;
   private boolean keepEmptyCaptures = true;
   private Map<String, Object> capture = Collections.emptyMap();
+  private EngineMatcher snapshotMatcher;
 
   /**
    * Create a new {@code Match} object.
+   * The group offsets of {@code match} are copied, the matcher itself is not retained.
    */
   public Match(CharSequence subject, Grok grok, EngineMatcher match, int start, int end) {
+    this(subject, grok, match == null ? NO_OFFSETS : snapshot(match),
+        match == null || grok == null ? null : unresolved(grok, match), start, end);
+  }
+
+  Match(CharSequence subject, Grok grok, int[] offsets, String[] unresolved, int start, int end) {
     this.subject = subject;
+    this.bytes = null;
+    this.bytesOffset = 0;
+    this.bytesLength = 0;
     this.grok = grok;
-    this.match = match;
+    this.offsets = offsets;
+    this.unresolved = unresolved;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Match over a UTF-8 range; offsets are byte offsets relative to {@code offset}.
+   * The bytes are referenced, not copied, and only the fields that are read get decoded.
+   */
+  Match(byte[] bytes, int offset, int length, Grok grok, int[] offsets, String[] unresolved, int start, int end) {
+    this.subject = null;
+    this.bytes = bytes;
+    this.bytesOffset = offset;
+    this.bytesLength = length;
+    this.grok = grok;
+    this.offsets = offsets;
+    this.unresolved = unresolved;
     this.start = start;
     this.end = end;
   }
@@ -41,10 +90,122 @@ public class Match {
   /**
    * Create Empty grok matcher.
    */
-  public static final Match EMPTY = new Match("", null, null, 0, 0);
+  public static final Match EMPTY = new Match("", null, NO_OFFSETS, null, 0, 0);
 
+  /**
+   * Copy the start/end offsets of every group of a successful match.
+   */
+  static int[] snapshot(EngineMatcher matcher) {
+    int groupCount = matcher.groupCount();
+    int[] offsets = new int[(groupCount + 1) * 2];
+    for (int group = 0; group <= groupCount; group++) {
+      offsets[group * 2] = matcher.start(group);
+      offsets[group * 2 + 1] = matcher.end(group);
+    }
+    return offsets;
+  }
+
+  /**
+   * Read the fields without a group number by name, as before group numbers were resolved.
+   *
+   * @return their values by field index, {@code null} if every field of {@code grok} has a
+   *     group number
+   */
+  static String[] unresolved(Grok grok, EngineMatcher matcher) {
+    if (!grok.hasUnresolvedFields()) {
+      return null;
+    }
+    GrokField[] fields = grok.fields();
+    String[] values = new String[fields.length];
+    for (GrokField field : fields) {
+      if (field.getGroup() < 0) {
+        values[field.getIndex()] = groupByName(matcher, field);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Byte match counterpart of {@link #unresolved(Grok, EngineMatcher)}.
+   */
+  static String[] unresolved(Grok grok, ByteMatcher matcher) {
+    if (!grok.hasUnresolvedFields()) {
+      return null;
+    }
+    GrokField[] fields = grok.fields();
+    String[] values = new String[fields.length];
+    for (GrokField field : fields) {
+      if (field.getGroup() < 0) {
+        try {
+          values[field.getIndex()] = matcher.group(field.getGroupName());
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+          values[field.getIndex()] = null;
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return the text of the named group of {@code field}, {@code null} if it did not
+   *     participate or the engine does not know the name
+   */
+  static String groupByName(EngineMatcher matcher, GrokField field) {
+    try {
+      return matcher.group(field.getGroupName());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Copy the start/end byte offsets of every group of a successful byte match.
+   */
+  static int[] snapshot(ByteMatcher matcher) {
+    int groupCount = matcher.groupCount();
+    int[] offsets = new int[(groupCount + 1) * 2];
+    for (int group = 0; group <= groupCount; group++) {
+      offsets[group * 2] = matcher.start(group);
+      offsets[group * 2 + 1] = matcher.end(group);
+    }
+    return offsets;
+  }
+
+  /**
+   * Whether this match was made over UTF-8 bytes, see {@link Grok#match(byte[], int, int)}.
+   * Offsets of a byte match are byte offsets.
+   */
+  public boolean isByteMatch() {
+    return bytes != null;
+  }
+
+  /**
+   * Text between two offsets of the subject, decoded from UTF-8 for a byte match.
+   */
+  String text(int from, int to) {
+    if (bytes != null) {
+      return new String(bytes, bytesOffset + from, to - from, StandardCharsets.UTF_8);
+    }
+    return subject.subSequence(from, to).toString();
+  }
+
+  /**
+   * Matcher view over the offsets captured by this {@code Match}. Its group accessors read
+   * the copied offsets; {@code find()}, {@code reset()}, {@code matches()} and
+   * {@code lookingAt()} go on with a matcher of its own over the subject, starting from this
+   * match, so iterating with {@code getMatch().find()} still returns the following matches.
+   * The view is not thread safe.
+   *
+   * @return the matcher view, {@code null} for {@link #EMPTY}
+   */
   public EngineMatcher getMatch() {
-    return match;
+    if (grok == null) {
+      return null;
+    }
+    if (snapshotMatcher == null) {
+      snapshotMatcher = new SnapshotMatcher(this, offsets, grok.fields(), grok.getCompiledPattern());
+    }
+    return snapshotMatcher;
   }
 
   public int getStart() {
@@ -55,6 +216,207 @@ public class Match {
     return end;
   }
 
+  /**
+   * Number of fields of the {@code Grok} that produced this match.
+   *
+   * @return field count, 0 for {@link #EMPTY}
+   */
+  public int getFieldCount() {
+    return grok == null ? 0 : grok.fields().length;
+  }
+
+  /**
+   * Start offset of a field in the subject, in bytes for a byte match.
+   *
+   * @param fieldIndex index in {@link Grok#getFields()}
+   * @return start offset, -1 if the field did not participate in the match or has no group
+   *     number (see {@link Grok#getFields()})
+   */
+  public int getStart(int fieldIndex) {
+    int group = groupOf(fieldIndex);
+    return group < 0 ? -1 : offsets[group * 2];
+  }
+
+  /**
+   * End offset of a field in the subject, in bytes for a byte match.
+   *
+   * @param fieldIndex index in {@link Grok#getFields()}
+   * @return end offset, -1 if the field did not participate in the match or has no group
+   *     number
+   */
+  public int getEnd(int fieldIndex) {
+    int group = groupOf(fieldIndex);
+    return group < 0 ? -1 : offsets[group * 2 + 1];
+  }
+
+  /**
+   * String value of a field, unquoted the same way as {@link #capture()}.
+   *
+   * @param fieldIndex index in {@link Grok#getFields()}
+   * @return the value, {@code null} if the field did not participate in the match
+   */
+  public String getString(int fieldIndex) {
+    return cleanString(rawValue(fieldIndex));
+  }
+
+  /**
+   * String value of the first participating field with the given name.
+   *
+   * @param fieldName final field name
+   * @return the value, {@code null} if no such field participated in the match
+   */
+  public String getString(String fieldName) {
+    int fieldIndex = indexOf(fieldName);
+    return fieldIndex < 0 ? null : getString(fieldIndex);
+  }
+
+  /**
+   * Value of a field, converted to its declared type.
+   *
+   * @param fieldIndex index in {@link Grok#getFields()}
+   * @return the converted value, {@code null} if the field did not participate or conversion failed
+   */
+  public Object getValue(int fieldIndex) {
+    Converter.Type type = grok == null ? null : grok.fields()[fieldIndex].getType();
+    if (type != null && SliceParser.supports(type)) {
+      SliceParser parser = parse(fieldIndex, type);
+      if (parser != null) {
+        return parser.value(type);
+      }
+    }
+    String value = rawValue(fieldIndex);
+    if (value == null) {
+      return null;
+    }
+    IConverter<?> converter = grok.fields()[fieldIndex].getConverter();
+    if (converter == null) {
+      return cleanString(value);
+    }
+    Object converted;
+    try {
+      converted = converter.convert(value);
+    } catch (Exception e) {
+      return null;
+    }
+    return converted instanceof String ? cleanString((String) converted) : converted;
+  }
+
+  /**
+   * Value of the first participating field with the given name, converted to its declared type.
+   *
+   * @param fieldName final field name
+   * @return the converted value, {@code null} if no such field participated or conversion failed
+   */
+  public Object getValue(String fieldName) {
+    int fieldIndex = indexOf(fieldName);
+    return fieldIndex < 0 ? null : getValue(fieldIndex);
+  }
+
+  /**
+   * Field parsed as an {@code int}, straight from the subject without substring nor boxing.
+   *
+   * @param fieldIndex index in {@link Grok#getFields()}
+   * @param defaultValue : returned if the field did not participate or is not an int
+   * @return the value, or {@code defaultValue}
+   */
+  public int getInt(int fieldIndex, int defaultValue) {
+    SliceParser parser = parse(fieldIndex, Converter.Type.INT);
+    return parser == null ? defaultValue : parser.intValue();
+  }
+
+  /**
+   * Field parsed as a {@code long}, see {@link #getInt(int, int)}.
+   */
+  public long getLong(int fieldIndex, long defaultValue) {
+    SliceParser parser = parse(fieldIndex, Converter.Type.LONG);
+    return parser == null ? defaultValue : parser.longValue();
+  }
+
+  /**
+   * Field parsed as a {@code double}, see {@link #getInt(int, int)}.
+   */
+  public double getDouble(int fieldIndex, double defaultValue) {
+    SliceParser parser = parse(fieldIndex, Converter.Type.DOUBLE);
+    return parser == null ? defaultValue : parser.doubleValue();
+  }
+
+  /**
+   * Field parsed as a {@code boolean} ("true" in any case), see {@link #getInt(int, int)}.
+   */
+  public boolean getBoolean(int fieldIndex, boolean defaultValue) {
+    SliceParser parser = parse(fieldIndex, Converter.Type.BOOLEAN);
+    return parser == null ? defaultValue : parser.booleanValue();
+  }
+
+  /**
+   * Parse a field from its slice of the subject.
+   *
+   * @return the parser of the thread holding the value, {@code null} if the field did not
+   *     participate or is not valid for the type
+   */
+  private SliceParser parse(int fieldIndex, Converter.Type type) {
+    int group = groupOf(fieldIndex);
+    if (group < 0) {
+      String value = unresolved == null ? null : unresolved[fieldIndex];
+      if (value == null) {
+        return null;
+      }
+      SliceParser parser = SliceParser.current();
+      return parser.parse(type, value, 0, value.length()) == SliceParser.OK ? parser : null;
+    }
+    if (offsets[group * 2] < 0) {
+      return null;
+    }
+    SliceParser parser = SliceParser.current();
+    int status;
+    if (bytes == null) {
+      status = parser.parse(type, subject, offsets[group * 2], offsets[group * 2 + 1]);
+    } else {
+      String value = text(offsets[group * 2], offsets[group * 2 + 1]);
+      status = parser.parse(type, value, 0, value.length());
+    }
+    return status == SliceParser.OK ? parser : null;
+  }
+
+  private int groupOf(int fieldIndex) {
+    if (grok == null) {
+      throw new IndexOutOfBoundsException("Empty match has no field " + fieldIndex);
+    }
+    return grok.fields()[fieldIndex].getGroup();
+  }
+
+  String rawValue(int fieldIndex) {
+    int group = groupOf(fieldIndex);
+    if (group < 0) {
+      return unresolved == null ? null : unresolved[fieldIndex];
+    }
+    if (offsets[group * 2] < 0) {
+      return null;
+    }
+    int from = offsets[group * 2];
+    int to = offsets[group * 2 + 1];
+    StringInterner interner = grok.getInterner(fieldIndex);
+    if (interner != null) {
+      return bytes == null ? interner.intern(subject, from, to) : interner.intern(bytes, bytesOffset + from, to - from);
+    }
+    return text(from, to);
+  }
+
+  private int indexOf(String fieldName) {
+    if (grok == null) {
+      return -1;
+    }
+    for (GrokField field : grok.fields()) {
+      int group = field.getGroup();
+      boolean participated = group >= 0
+          ? offsets[group * 2] >= 0 : unresolved != null && unresolved[field.getIndex()] != null;
+      if (!field.isUnwanted() && participated && field.getName().equals(fieldName)) {
+        return field.getIndex();
+      }
+    }
+    return -1;
+  }
+
   /**
    * Ignore empty captures.
    */
@@ -76,6 +438,9 @@ public class Match {
    * @return the single line of log
    */
   public CharSequence getSubject() {
+    if (subject == null) {
+      subject = new String(bytes, bytesOffset, bytesLength, StandardCharsets.UTF_8);
+    }
     return subject;
   }
 
@@ -114,7 +479,7 @@ public class Match {
    * @throws GrokException if a keys has multiple non-null values, but only if flattened is set to true.
    */
   private Map<String, Object> capture(boolean flattened ) throws GrokException {
-    if (match == null) {
+    if (grok == null) {
       return Collections.emptyMap();
     }
 
@@ -124,24 +489,26 @@ public class Match {
 
     capture = new LinkedHashMap<>();
 
-    Map<String, String> mappedw = GrokUtils.namedGroups(this.match, this.grok.namedGroups);
-
-    mappedw.forEach((key, valueString) -> {
-      String id = this.grok.getNamedRegexCollectionById(key);
-      if (id != null && !id.isEmpty()) {
-        key = id;
+    for (GrokField field : grok.fields()) {
+      if (field.isUnwanted()) {
+        continue;
       }
 
-      if ("UNWANTED".equals(key)) {
-        return;
-      }
+      String key = field.getKey();
+      Converter.Type type = field.getType();
+      SliceParser parser = SliceParser.supports(type) ? parse(field.getIndex(), type) : null;
 
+      // typed fields are parsed from the subject; the converter only runs to report failures
+      String valueString = parser == null ? rawValue(field.getIndex()) : null;
       Object value = valueString;
-      if (valueString != null) {
-        IConverter<?> converter = grok.converters.get(key);
+      if (parser != null) {
+        key = field.getName();
+        value = parser.value(type);
+      } else if (valueString != null) {
+        IConverter<?> converter = field.getConverter();
 
         if (converter != null) {
-          key = Converter.extractKey(key);
+          key = field.getName();
           try {
             value = converter.convert(valueString);
           } catch (Exception e) {
@@ -155,7 +522,7 @@ public class Match {
           value = cleanString(valueString);
         }
       } else if (!isKeepEmptyCaptures()) {
-        return;
+        continue;
       }
 
       if (capture.containsKey(key)) {
@@ -188,7 +555,7 @@ public class Match {
       } else {
         capture.put(key, value);
       }
-    });
+    }
 
     capture = Collections.unmodifiableMap(capture);
 
@@ -201,7 +568,7 @@ public class Match {
    * @param value string to pure: "my/text"
    * @return unquoted string: my/text
    */
-  private String cleanString(String value) {
+  static String cleanString(String value) {
     if (value == null || value.isEmpty()) {
       return value;
     }
@@ -236,7 +603,7 @@ public class Match {
    * @return boolean
    */
   public Boolean isNull() {
-    return this.match == null;
+    return this.grok == null;
   }
 
 }
@@ -1,43 +1,263 @@
 package io.whatap.grok.api;
 
+import io.whatap.grok.api.engine.ByteMatcher;
 import io.whatap.grok.api.engine.CompiledPattern;
 import io.whatap.grok.api.engine.EngineMatcher;
 
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * ThreadLocal pool for {@link EngineMatcher} instances. Reuses one matcher per
- * thread (per {@link CompiledPattern}) to avoid per-call allocation.
+ * Pool of {@link EngineMatcher} instances of one {@link CompiledPattern}, to avoid a
+ * per-call allocation. How matchers are kept depends on the {@link Strategy}.
+ *
+ * <p>A matcher obtained from {@link #getMatcher(CharSequence)} or
+ * {@link #getByteMatcher(byte[], int, int)} is handed back with {@code release} once its
+ * groups have been read; a matcher that is never released is simply not reused.
  *
  * @since 1.0.1
  */
 public class MatcherPool {
 
-    private final ThreadLocal<EngineMatcher> matcherCache = new ThreadLocal<>();
+    /**
+     * How a pool keeps its matchers.
+     *
+     * @since 1.0.2
+     */
+    public enum Strategy {
+        /**
+         * One matcher per thread, the fastest on a fixed set of long lived threads. Retains
+         * a matcher per pattern per thread, until the thread dies, and allocates one for every
+         * new thread, such as every virtual thread.
+         */
+        THREAD_LOCAL,
+        /**
+         * A few matchers per pattern, shared by all threads through lock free slots: bounded
+         * memory whatever the number of threads, and reuse across virtual threads.
+         */
+        STRIPED,
+        /**
+         * A new matcher for every call, nothing retained.
+         */
+        PER_CALL
+    }
+
+    /** Slots of a striped pool: twice the processors, rounded to a power of two. */
+    static final int STRIPES = Math.min(64,
+        Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1));
+
+    /** Slots tried before allocating a matcher, or dropping a released one. */
+    private static final int PROBES = 4;
+
+    private static volatile Strategy defaultStrategy = Strategy.THREAD_LOCAL;
+
     private final CompiledPattern pattern;
+    private final Strategy strategy;
+    private final ThreadLocal<EngineMatcher> matcherCache;
+    private final ThreadLocal<ByteMatcher> byteMatcherCache;
+    private final AtomicReferenceArray<EngineMatcher> matchers;
+    private final AtomicReferenceArray<ByteMatcher> byteMatchers;
+    private final LongAdder allocations = new LongAdder();
 
+    /**
+     * Pool with the {@link #getDefaultStrategy() default strategy}.
+     */
     public MatcherPool(CompiledPattern pattern) {
+        this(pattern, defaultStrategy);
+    }
+
+    /**
+     * @since 1.0.2
+     */
+    public MatcherPool(CompiledPattern pattern, Strategy strategy) {
         this.pattern = pattern;
+        this.strategy = Objects.requireNonNull(strategy);
+        boolean threadLocal = strategy == Strategy.THREAD_LOCAL;
+        boolean striped = strategy == Strategy.STRIPED;
+        this.matcherCache = threadLocal ? new ThreadLocal<>() : null;
+        this.byteMatcherCache = threadLocal ? new ThreadLocal<>() : null;
+        this.matchers = striped ? new AtomicReferenceArray<>(STRIPES) : null;
+        this.byteMatchers = striped ? new AtomicReferenceArray<>(STRIPES) : null;
     }
 
     /**
-     * Get an {@link EngineMatcher} for the current thread, reusing a cached
+     * Strategy of the pools created without one, and of the patterns compiled by a
+     * {@link GrokCompiler} without strategy of its own, see
+     * {@link GrokCompiler#setMatcherPoolStrategy(Strategy)}. The strategy is part of the compile
+     * cache key, so compiling a pattern again after a change gives a {@code Grok} with the new
+     * strategy; the {@code Grok}s compiled before keep theirs.
+     *
+     * @since 1.0.2
+     */
+    public static void setDefaultStrategy(Strategy strategy) {
+        defaultStrategy = Objects.requireNonNull(strategy);
+    }
+
+    /**
+     * @since 1.0.2
+     */
+    public static Strategy getDefaultStrategy() {
+        return defaultStrategy;
+    }
+
+    /**
+     * Get an {@link EngineMatcher} reset to the given input, reusing a pooled
      * instance when possible.
      */
     public EngineMatcher getMatcher(CharSequence input) {
-        EngineMatcher matcher = matcherCache.get();
+        EngineMatcher matcher;
+        switch (strategy) {
+            case THREAD_LOCAL:
+                matcher = matcherCache.get();
+                if (matcher == null) {
+                    matcher = newMatcher(input);
+                    matcherCache.set(matcher);
+                    return matcher;
+                }
+                break;
+            case STRIPED:
+                matcher = take(matchers);
+                if (matcher == null) {
+                    return newMatcher(input);
+                }
+                break;
+            default:
+                return newMatcher(input);
+        }
+        matcher.reset(input);
+        return matcher;
+    }
+
+    /**
+     * Get a {@link ByteMatcher} reset to the given UTF-8 range.
+     */
+    public ByteMatcher getByteMatcher(byte[] input, int offset, int length) {
+        ByteMatcher matcher = null;
+        if (strategy == Strategy.THREAD_LOCAL) {
+            matcher = byteMatcherCache.get();
+            if (matcher == null) {
+                matcher = newByteMatcher();
+                byteMatcherCache.set(matcher);
+            }
+        } else if (strategy == Strategy.STRIPED) {
+            matcher = take(byteMatchers);
+        }
         if (matcher == null) {
-            matcher = pattern.matcher(input);
-            matcherCache.set(matcher);
-        } else {
-            matcher.reset(input);
+            matcher = newByteMatcher();
         }
+        matcher.reset(input, offset, length);
         return matcher;
     }
 
+    /**
+     * Hand back a matcher obtained from {@link #getMatcher(CharSequence)}.
+     *
+     * @since 1.0.2
+     */
+    public void release(EngineMatcher matcher) {
+        if (strategy == Strategy.STRIPED) {
+            give(matchers, matcher);
+        }
+    }
+
+    /**
+     * Hand back a matcher obtained from {@link #getByteMatcher(byte[], int, int)}.
+     *
+     * @since 1.0.2
+     */
+    public void release(ByteMatcher matcher) {
+        if (strategy == Strategy.STRIPED) {
+            give(byteMatchers, matcher);
+        }
+    }
+
+    private EngineMatcher newMatcher(CharSequence input) {
+        allocations.increment();
+        return pattern.matcher(input);
+    }
+
+    private ByteMatcher newByteMatcher() {
+        allocations.increment();
+        return pattern.byteMatcher();
+    }
+
+    /**
+     * First slot probed by the current thread, so that threads mostly use different slots.
+     */
+    private static int home() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private static <T> T take(AtomicReferenceArray<T> slots) {
+        int index = home();
+        for (int probe = 0; probe < PROBES; probe++, index = (index + 1) & (STRIPES - 1)) {
+            T matcher = slots.get(index);
+            if (matcher != null && slots.compareAndSet(index, matcher, null)) {
+                return matcher;
+            }
+        }
+        return null;
+    }
+
+    private static <T> void give(AtomicReferenceArray<T> slots, T matcher) {
+        int index = home();
+        for (int probe = 0; probe < PROBES; probe++, index = (index + 1) & (STRIPES - 1)) {
+            if (slots.get(index) == null && slots.compareAndSet(index, null, matcher)) {
+                return;
+            }
+        }
+    }
+
     public void clearCache() {
-        matcherCache.remove();
+        if (strategy == Strategy.THREAD_LOCAL) {
+            matcherCache.remove();
+            byteMatcherCache.remove();
+        } else if (strategy == Strategy.STRIPED) {
+            for (int i = 0; i < STRIPES; i++) {
+                matchers.set(i, null);
+                byteMatchers.set(i, null);
+            }
+        }
     }
 
     public CompiledPattern getPattern() {
         return pattern;
     }
+
+    /**
+     * @since 1.0.2
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return number of matchers created by this pool
+     */
+    long allocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return number of matchers kept in the slots of a striped pool, 0 for the other
+     *     strategies, whose matchers are kept by their threads or not at all
+     */
+    int retained() {
+        if (strategy != Strategy.STRIPED) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            if (matchers.get(i) != null) {
+                count++;
+            }
+            if (byteMatchers.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
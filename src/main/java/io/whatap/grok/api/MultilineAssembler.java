@@ -0,0 +1,292 @@
+package io.whatap.grok.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Joins physical lines into logical events, such as a log line followed by its stack trace.
+ *
+ * <p>An assembler either recognizes the first line of an event ({@link #startingWith(Grok)},
+ * {@link #startingWithPrefix(String)}), every other line continuing the current event, or the
+ * continuation lines ({@link #continuedBy(Grok)}, {@link #continuedByPrefix(String)}), every
+ * other line starting a new event. {@code Grok} based rules use {@link Grok#matches}, which
+ * does not extract any field.
+ *
+ * <p>Lines are appended to a single buffer, joined with {@code \n}, and copied once when the
+ * event is complete. An event is complete when the next one starts, when it would exceed
+ * {@link #setMaxLines(int) max lines} or {@link #setMaxBytes(int) max bytes} (the line then
+ * starts a new event and the complete one is flagged {@link Event#isTruncated() truncated}),
+ * on {@link #flush()}, or in streaming mode once no line arrived for the
+ * {@link #setIdleTimeout(long, TimeUnit) idle timeout}. Memory is therefore bounded by the
+ * limits whatever the input.
+ *
+ * <p>Streaming: call {@link #offer(CharSequence)} for every line and {@link #pollIdle()}
+ * periodically. Batch: {@link #assemble(Iterable)}. An assembler is not thread safe.
+ *
+ * @since 1.0.2
+ */
+public final class MultilineAssembler {
+
+  public static final int DEFAULT_MAX_LINES = 500;
+  public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+  /** Buffers grown past this size by a large event are released once it is emitted. */
+  private static final int RETAINED_CAPACITY = 64 * 1024;
+
+  private final Predicate<CharSequence> rule;
+  /** true if {@link #rule} recognizes first lines, false if it recognizes continuation lines. */
+  private final boolean startRule;
+  private int maxLines = DEFAULT_MAX_LINES;
+  private int maxBytes = DEFAULT_MAX_BYTES;
+  private long idleTimeoutNanos;
+
+  private StringBuilder text = new StringBuilder();
+  private int lines;
+  private int bytes;
+  private long lastLineNanos;
+
+  private MultilineAssembler(Predicate<CharSequence> rule, boolean startRule) {
+    this.rule = rule;
+    this.startRule = startRule;
+  }
+
+  /**
+   * Events start with a line matching {@code start}; other lines continue the current event.
+   */
+  public static MultilineAssembler startingWith(Grok start) {
+    return new MultilineAssembler(start::matches, true);
+  }
+
+  /**
+   * Lines matching {@code continuation} (e.g. {@code %{JAVASTACKTRACEPART}}) continue the
+   * current event; other lines start a new one.
+   */
+  public static MultilineAssembler continuedBy(Grok continuation) {
+    return new MultilineAssembler(continuation::matches, false);
+  }
+
+  /**
+   * Events start with a line beginning with {@code prefix}; other lines continue the current event.
+   */
+  public static MultilineAssembler startingWithPrefix(String prefix) {
+    return new MultilineAssembler(line -> startsWith(line, prefix), true);
+  }
+
+  /**
+   * Lines beginning with {@code prefix} (e.g. a tab) continue the current event;
+   * other lines start a new one.
+   */
+  public static MultilineAssembler continuedByPrefix(String prefix) {
+    return new MultilineAssembler(line -> startsWith(line, prefix), false);
+  }
+
+  private static boolean startsWith(CharSequence line, String prefix) {
+    if (line.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (line.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Maximum number of lines of an event, {@value #DEFAULT_MAX_LINES} by default.
+   */
+  public void setMaxLines(int maxLines) {
+    if (maxLines <= 0) {
+      throw new IllegalArgumentException("max lines must be positive: " + maxLines);
+    }
+    this.maxLines = maxLines;
+  }
+
+  public int getMaxLines() {
+    return maxLines;
+  }
+
+  /**
+   * Maximum UTF-8 size of an event, {@value #DEFAULT_MAX_BYTES} by default. A single line
+   * larger than this still makes an event of its own.
+   */
+  public void setMaxBytes(int maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("max bytes must be positive: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Time without new line after which {@link #pollIdle()} completes the pending event,
+   * 0 (default) to disable.
+   */
+  public void setIdleTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("idle timeout must not be negative: " + timeout);
+    }
+    this.idleTimeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Add the next line.
+   *
+   * @param line : physical line, without terminator
+   * @return the event completed by this line, {@code null} if none
+   */
+  public Event offer(CharSequence line) {
+    return offer(line, System.nanoTime());
+  }
+
+  Event offer(CharSequence line, long nowNanos) {
+    lastLineNanos = nowNanos;
+    int lineBytes = utf8Length(line);
+    Event complete = null;
+    if (lines > 0) {
+      boolean continues = startRule ? !rule.test(line) : rule.test(line);
+      if (!continues) {
+        complete = emit(false);
+      } else if (lines >= maxLines || bytes + 1 + lineBytes > maxBytes) {
+        complete = emit(true);
+      }
+    }
+    if (lines > 0) {
+      text.append('\n');
+      bytes++;
+    }
+    text.append(line);
+    bytes += lineBytes;
+    lines++;
+    return complete;
+  }
+
+  /**
+   * Complete the pending event if no line arrived for the idle timeout.
+   *
+   * @return the pending event, {@code null} if there is none or it may still continue
+   */
+  public Event pollIdle() {
+    return pollIdle(System.nanoTime());
+  }
+
+  Event pollIdle(long nowNanos) {
+    if (lines == 0 || idleTimeoutNanos == 0 || nowNanos - lastLineNanos < idleTimeoutNanos) {
+      return null;
+    }
+    return emit(false);
+  }
+
+  /**
+   * Complete the pending event, e.g. at the end of the input.
+   *
+   * @return the pending event, {@code null} if there is none
+   */
+  public Event flush() {
+    return lines == 0 ? null : emit(false);
+  }
+
+  /**
+   * Assemble a batch of lines: {@link #offer} every line, then {@link #flush()}.
+   *
+   * @return the complete events, in order
+   */
+  public List<Event> assemble(Iterable<? extends CharSequence> batch) {
+    List<Event> events = new ArrayList<>();
+    for (CharSequence line : batch) {
+      Event event = offer(line);
+      if (event != null) {
+        events.add(event);
+      }
+    }
+    Event last = flush();
+    if (last != null) {
+      events.add(last);
+    }
+    return events;
+  }
+
+  /**
+   * @return number of lines of the pending event
+   */
+  public int getPendingLines() {
+    return lines;
+  }
+
+  private Event emit(boolean truncated) {
+    Event event = new Event(text.toString(), lines, truncated);
+    if (text.capacity() > RETAINED_CAPACITY) {
+      text = new StringBuilder();
+    } else {
+      text.setLength(0);
+    }
+    lines = 0;
+    bytes = 0;
+    return event;
+  }
+
+  private static int utf8Length(CharSequence line) {
+    int length = line.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = line.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes++;
+        } else if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(line.charAt(i + 1))) {
+          // 4 bytes for the pair
+          bytes += 2;
+          i++;
+        } else {
+          bytes += 2;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * One logical event.
+   */
+  public static final class Event {
+    private final String text;
+    private final int lineCount;
+    private final boolean truncated;
+
+    Event(String text, int lineCount, boolean truncated) {
+      this.text = text;
+      this.lineCount = lineCount;
+      this.truncated = truncated;
+    }
+
+    /**
+     * @return the lines of the event joined with {@code \n}
+     */
+    public String getText() {
+      return text;
+    }
+
+    public int getLineCount() {
+      return lineCount;
+    }
+
+    /**
+     * @return true if the event was cut by the max lines or max bytes limit;
+     *     the following lines were assembled into the next event
+     */
+    public boolean isTruncated() {
+      return truncated;
+    }
+
+    @Override
+    public String toString() {
+      return "Event{lines=" + lineCount + ", truncated=" + truncated + ", text=" + text + '}';
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package io.whatap.grok.api;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+/**
+ * Expands the {@code %{...}} references of a {@code Grok} pattern into a named regex.
+ *
+ * <p>Every definition is tokenized once into literals and references; the tokens are memoized
+ * by definition text and shared by all compilers. Expansion then works on a graph instead of
+ * text: each reference occurrence is a node whose children are the tokens of its definition,
+ * and the references not expanded yet form a list in text order. The regex is emitted in a
+ * single pass at the end.
+ *
+ * <p>The result is identical to the historical text rewriting of {@link GrokCompiler}, which
+ * repeatedly took the leftmost reference of the text and replaced every identical reference,
+ * leftmost first, numbering groups {@code name0, name1...} in that order. One such step is a
+ * batch here, and the limit of 1000 steps against recursive definitions is kept.
+ *
+ * <p>Only the tokens of a definition are memoized, not its expanded form. That numbering
+ * interleaves the groups of sibling references: in {@code %{OUTER} %{OUTER}} with {@code OUTER}
+ * defined as {@code %{INNER}}, the two {@code OUTER} are {@code name0} and {@code name1}, and
+ * their {@code INNER} {@code name2} and {@code name3}. An inline definition met later may also
+ * change what a reference expands to. A memoized subtree would have to be renumbered by
+ * replaying the same steps over it, which is the work done here, so the steps run on freshly
+ * linked nodes; each one walks the list of pending references, never the text.
+ *
+ * @since 1.0.2
+ */
+final class PatternExpander {
+
+  static final int MAX_ITERATIONS = 1000;
+
+  /** Memoized tokens are dropped past this number of distinct definition texts. */
+  private static final int MAX_MEMOIZED = 8192;
+
+  private static final Map<String, Object[]> TOKENS = new ConcurrentHashMap<>();
+
+  private PatternExpander() {
+  }
+
+  /**
+   * One {@code %{...}} reference of a definition, as matched by {@link GrokUtils#GROK_PATTERN}.
+   */
+  private static final class Reference {
+    /** Matched text, two references with the same text are expanded in the same step. */
+    final String text;
+    final String pattern;
+    final String subname;
+    final String definition;
+
+    Reference(String text, String pattern, String subname, String definition) {
+      this.text = text;
+      this.pattern = pattern;
+      this.subname = subname;
+      this.definition = definition;
+    }
+  }
+
+  /**
+   * One occurrence of a reference in the pattern being expanded.
+   */
+  private static final class Node {
+    final Reference reference;
+    /** Literals and child nodes, once expanded. */
+    Object[] children;
+    int index;
+    boolean named;
+    /** Neighbours in the list of occurrences not expanded yet, in text order. */
+    Node previous;
+    Node next;
+
+    Node(Reference reference) {
+      this.reference = reference;
+    }
+  }
+
+  /**
+   * @param text : pattern or definition
+   * @return literals ({@code String}) and {@link Reference}s, {@code null} if a {@code %{} is
+   *     not followed by any {@code }}: it might form a reference with the text following the
+   *     definition once expanded
+   */
+  private static Object[] tokens(String text, boolean memoize) {
+    Object[] tokens = TOKENS.get(text);
+    if (tokens != null) {
+      return tokens;
+    }
+    if (text.lastIndexOf("%{") > text.lastIndexOf('}')) {
+      return null;
+    }
+    List<Object> list = new ArrayList<>();
+    Matcher matcher = GrokUtils.GROK_PATTERN.matcher(text);
+    int last = 0;
+    while (matcher.find()) {
+      if (matcher.start() > last) {
+        list.add(text.substring(last, matcher.start()));
+      }
+      list.add(new Reference(matcher.group(), matcher.group("pattern"), matcher.group("subname"),
+          matcher.group("definition")));
+      last = matcher.end();
+    }
+    if (last < text.length()) {
+      list.add(text.substring(last));
+    }
+    tokens = list.toArray();
+    if (memoize) {
+      if (TOKENS.size() >= MAX_MEMOIZED) {
+        TOKENS.clear();
+      }
+      TOKENS.put(text, tokens);
+    }
+    return tokens;
+  }
+
+  /**
+   * Expand a pattern.
+   *
+   * @param pattern : {@code Grok} pattern
+   * @param definitions : pattern definitions, not modified
+   * @param inline : filled with the inline definitions ({@code %{FOO=regex}}), which take
+   *     precedence over {@code definitions}
+   * @param namedOnly : only references with a subname become named groups
+   * @param renames : subnames to rename, such as the reserved keywords
+   * @param namedRegexCollection : filled with the field name of every {@code nameN} group
+   * @return the named regex, {@code null} if the pattern can only be expanded as text, see
+   *     {@link GrokCompiler}
+   * @throws IllegalArgumentException on a missing definition or too deep a recursion
+   */
+  static String expand(String pattern, Map<String, String> definitions, Map<String, String> inline,
+      boolean namedOnly, Map<String, String> renames, Map<String, String> namedRegexCollection) {
+    Object[] root = tokens(pattern, false);
+    if (root == null) {
+      return null;
+    }
+    // sentinel head of the list of occurrences not expanded yet
+    Node pending = new Node(null);
+    root = link(root, pending);
+
+    int index = 0;
+    int iterationLeft = MAX_ITERATIONS;
+    while (true) {
+      if (iterationLeft <= 0) {
+        throw new IllegalArgumentException("Deep recursion pattern compilation of " + pattern);
+      }
+      iterationLeft--;
+      Node first = pending.next;
+      if (first == null) {
+        break;
+      }
+      Reference reference = first.reference;
+      if (reference.definition != null) {
+        inline.put(reference.pattern, reference.definition);
+      }
+      String name = reference.definition != null
+          ? reference.pattern + (reference.subname != null ? ":" + reference.subname : "") + "="
+              + reference.definition
+          : reference.pattern + (reference.subname != null ? ":" + reference.subname : "");
+      int count = 0;
+      for (Node node = first; node != null; node = node.next) {
+        if (node.reference.text.equals(reference.text)) {
+          count++;
+        }
+      }
+      Node from = first;
+      for (int i = 0; i < count; i++) {
+        // children of an expanded occurrence take its place: the next identical occurrence
+        // is at or after it
+        Node node = from;
+        while (!node.reference.text.equals(reference.text)) {
+          node = node.next;
+        }
+        String definition = inline.isEmpty() ? definitions.get(reference.pattern)
+            : inline.getOrDefault(reference.pattern, definitions.get(reference.pattern));
+        if (definition == null) {
+          throw new IllegalArgumentException(format("No definition for key '%s' found, aborting",
+              reference.pattern));
+        }
+        Object[] tokens = tokens(definition, true);
+        if (tokens == null) {
+          return null;
+        }
+        String subname = reference.subname != null ? reference.subname : name;
+        if (reference.subname != null) {
+          String renamed = renames.get(subname);
+          if (renamed != null) {
+            subname = renamed;
+          }
+        }
+        namedRegexCollection.put("name" + index, subname);
+        node.index = index;
+        node.named = !(namedOnly && reference.subname == null);
+        Node previous = node.previous;
+        unlink(node);
+        node.children = link(tokens, previous);
+        from = previous.next;
+        index++;
+      }
+    }
+
+    StringBuilder namedRegex = new StringBuilder(pattern.length() * 4);
+    emit(root, namedRegex);
+    return namedRegex.toString();
+  }
+
+  /**
+   * Create the nodes of the references of {@code tokens} and insert them in the pending list
+   * after {@code after}, in text order.
+   *
+   * @return literals and nodes
+   */
+  private static Object[] link(Object[] tokens, Node after) {
+    Object[] children = new Object[tokens.length];
+    Node previous = after;
+    Node next = after.next;
+    for (int i = 0; i < tokens.length; i++) {
+      if (tokens[i] instanceof Reference) {
+        Node node = new Node((Reference) tokens[i]);
+        node.previous = previous;
+        previous.next = node;
+        previous = node;
+        children[i] = node;
+      } else {
+        children[i] = tokens[i];
+      }
+    }
+    previous.next = next;
+    if (next != null) {
+      next.previous = previous;
+    }
+    return children;
+  }
+
+  private static void unlink(Node node) {
+    node.previous.next = node.next;
+    if (node.next != null) {
+      node.next.previous = node.previous;
+    }
+    node.previous = null;
+    node.next = null;
+  }
+
+  private static void emit(Object[] tokens, StringBuilder out) {
+    for (Object token : tokens) {
+      if (token instanceof String) {
+        out.append((String) token);
+        continue;
+      }
+      Node node = (Node) token;
+      if (node.named) {
+        out.append("(?<name").append(node.index).append('>');
+      } else {
+        out.append("(?:");
+      }
+      emit(node.children, out);
+      out.append(')');
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package io.whatap.grok.api;
+
+/**
+ * Parses numbers and booleans straight from a slice {@code [start, end)} of a
+ * {@link CharSequence}, without substring, boxing or exception on malformed input.
+ *
+ * <p>Every {@code parse} method returns a status code and leaves the value in the parser,
+ * read back with the matching accessor. Accepted syntax and results are those of
+ * {@link Long#parseLong}, {@link Integer#parseInt}, {@link Short#parseShort},
+ * {@link Byte#parseByte}, {@link Double#parseDouble}, {@link Float#parseFloat} and
+ * {@link Boolean#parseBoolean}. Plain decimal ASCII input is handled by hand; rarer forms
+ * (non ASCII digits, hexadecimal floats, more than 15 significant digits...) fall back to
+ * the JDK parser on a substring.
+ *
+ * <p>A parser is a small mutable holder meant to be reused by one thread.
+ *
+ * @since 1.0.2
+ */
+public final class SliceParser {
+
+  public static final int OK = 0;
+  /** Not a number of the requested syntax. */
+  public static final int MALFORMED = 1;
+  /** A valid integer that does not fit the requested type. */
+  public static final int OUT_OF_RANGE = 2;
+
+  private static final ThreadLocal<SliceParser> PARSERS = ThreadLocal.withInitial(SliceParser::new);
+
+  /** Largest mantissa converted exactly by a double. */
+  private static final long DOUBLE_EXACT_MANTISSA = 1L << 53;
+  /** Largest mantissa converted exactly by a float. */
+  private static final long FLOAT_EXACT_MANTISSA = 1L << 24;
+  private static final double[] DOUBLE_POWERS = new double[23];
+  private static final float[] FLOAT_POWERS = new float[11];
+
+  static {
+    double power = 1;
+    for (int i = 0; i < DOUBLE_POWERS.length; i++) {
+      DOUBLE_POWERS[i] = power;
+      power *= 10;
+    }
+    float floatPower = 1;
+    for (int i = 0; i < FLOAT_POWERS.length; i++) {
+      FLOAT_POWERS[i] = floatPower;
+      floatPower *= 10;
+    }
+  }
+
+  private long longValue;
+  private double doubleValue;
+  private boolean booleanValue;
+
+  /**
+   * Parser of the calling thread.
+   */
+  static SliceParser current() {
+    return PARSERS.get();
+  }
+
+  public long longValue() {
+    return longValue;
+  }
+
+  public int intValue() {
+    return (int) longValue;
+  }
+
+  public double doubleValue() {
+    return doubleValue;
+  }
+
+  public float floatValue() {
+    return (float) doubleValue;
+  }
+
+  public boolean booleanValue() {
+    return booleanValue;
+  }
+
+  /**
+   * @return true if {@link #parse(Converter.Type, CharSequence, int, int)} handles the type
+   */
+  static boolean supports(Converter.Type type) {
+    return type != Converter.Type.STRING && type != Converter.Type.DATETIME;
+  }
+
+  /**
+   * Parse according to a declared field type, the value is read with the accessor of the type.
+   *
+   * @return status code, {@link #MALFORMED} for types that are not numbers or booleans
+   */
+  public int parse(Converter.Type type, CharSequence text, int start, int end) {
+    switch (type) {
+      case BYTE:
+        return parseByte(text, start, end);
+      case SHORT:
+        return parseShort(text, start, end);
+      case INT:
+        return parseInt(text, start, end);
+      case LONG:
+        return parseLong(text, start, end);
+      case FLOAT:
+        return parseFloat(text, start, end);
+      case DOUBLE:
+        return parseDouble(text, start, end);
+      case BOOLEAN:
+        return parseBoolean(text, start, end);
+      default:
+        return MALFORMED;
+    }
+  }
+
+  /**
+   * Boxed value of the last successful {@link #parse(Converter.Type, CharSequence, int, int)},
+   * as the {@link Converter.Type} converter would return it.
+   */
+  Object value(Converter.Type type) {
+    switch (type) {
+      case BYTE:
+        return (byte) longValue;
+      case SHORT:
+        return (short) longValue;
+      case INT:
+        return (int) longValue;
+      case LONG:
+        return longValue;
+      case FLOAT:
+        return (float) doubleValue;
+      case DOUBLE:
+        return doubleValue;
+      case BOOLEAN:
+        return booleanValue;
+      default:
+        throw new IllegalArgumentException("Not a primitive type: " + type);
+    }
+  }
+
+  public int parseByte(CharSequence text, int start, int end) {
+    return parseBounded(text, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+  }
+
+  public int parseShort(CharSequence text, int start, int end) {
+    return parseBounded(text, start, end, Short.MIN_VALUE, Short.MAX_VALUE);
+  }
+
+  public int parseInt(CharSequence text, int start, int end) {
+    return parseBounded(text, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  private int parseBounded(CharSequence text, int start, int end, long min, long max) {
+    int status = parseLong(text, start, end);
+    if (status == OK && (longValue < min || longValue > max)) {
+      return OUT_OF_RANGE;
+    }
+    return status;
+  }
+
+  public int parseLong(CharSequence text, int start, int end) {
+    int i = start;
+    if (i >= end) {
+      return MALFORMED;
+    }
+    boolean negative = false;
+    char first = text.charAt(i);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      if (++i == end) {
+        return MALFORMED;
+      }
+    }
+    // accumulate negatively, Long.MIN_VALUE has no positive counterpart
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long multiplyLimit = limit / 10;
+    long result = 0;
+    boolean overflow = false;
+    for (; i < end; i++) {
+      int digit = text.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return text.charAt(i) >= 0x80 ? parseLongSlow(text, start, end) : MALFORMED;
+      }
+      if (result < multiplyLimit || result * 10 < limit + digit) {
+        overflow = true;
+      } else {
+        result = result * 10 - digit;
+      }
+    }
+    if (overflow) {
+      return OUT_OF_RANGE;
+    }
+    longValue = negative ? result : -result;
+    return OK;
+  }
+
+  private int parseLongSlow(CharSequence text, int start, int end) {
+    try {
+      longValue = Long.parseLong(text.subSequence(start, end).toString());
+      return OK;
+    } catch (NumberFormatException e) {
+      return MALFORMED;
+    }
+  }
+
+  public int parseDouble(CharSequence text, int start, int end) {
+    return parseDecimal(text, start, end, false);
+  }
+
+  public int parseFloat(CharSequence text, int start, int end) {
+    return parseDecimal(text, start, end, true);
+  }
+
+  /**
+   * Fast path for {@code [+-]?digits[.digits][(e|E)[+-]?digits]} whose significant digits
+   * and exponent are small enough for a single exactly rounded multiplication or division.
+   */
+  private int parseDecimal(CharSequence text, int start, int end, boolean toFloat) {
+    // parseDouble and parseFloat ignore surrounding whitespace
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int i = start;
+    boolean negative = false;
+    if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+      negative = text.charAt(i) == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significant = 0;
+    int exponent = 0;
+    int digits = 0;
+    boolean dot = false;
+    for (; i < end; i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits++;
+        if (mantissa != 0 || c != '0') {
+          if (++significant > 15) {
+            return parseDecimalSlow(text, start, end, toFloat);
+          }
+          mantissa = mantissa * 10 + (c - '0');
+        }
+        if (dot) {
+          exponent--;
+        }
+      } else if (c == '.' && !dot) {
+        dot = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0) {
+      return parseDecimalSlow(text, start, end, toFloat);
+    }
+    if (i < end) {
+      char c = text.charAt(i);
+      if (c != 'e' && c != 'E' || ++i == end) {
+        return parseDecimalSlow(text, start, end, toFloat);
+      }
+      boolean negativeExponent = false;
+      if (text.charAt(i) == '-' || text.charAt(i) == '+') {
+        negativeExponent = text.charAt(i) == '-';
+        i++;
+      }
+      int value = 0;
+      int exponentDigits = 0;
+      for (; i < end; i++) {
+        int digit = text.charAt(i) - '0';
+        if (digit < 0 || digit > 9 || value > 100_000) {
+          return parseDecimalSlow(text, start, end, toFloat);
+        }
+        value = value * 10 + digit;
+        exponentDigits++;
+      }
+      if (exponentDigits == 0) {
+        return parseDecimalSlow(text, start, end, toFloat);
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+    if (mantissa == 0) {
+      doubleValue = negative ? -0.0 : 0.0;
+      return OK;
+    }
+    if (toFloat) {
+      if (mantissa > FLOAT_EXACT_MANTISSA || exponent < -10 || exponent > 10) {
+        return parseDecimalSlow(text, start, end, true);
+      }
+      float value = exponent < 0 ? mantissa / FLOAT_POWERS[-exponent] : mantissa * FLOAT_POWERS[exponent];
+      doubleValue = negative ? -value : value;
+    } else {
+      if (mantissa > DOUBLE_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+        return parseDecimalSlow(text, start, end, false);
+      }
+      double value = exponent < 0 ? mantissa / DOUBLE_POWERS[-exponent] : mantissa * DOUBLE_POWERS[exponent];
+      doubleValue = negative ? -value : value;
+    }
+    return OK;
+  }
+
+  private int parseDecimalSlow(CharSequence text, int start, int end, boolean toFloat) {
+    try {
+      String value = text.subSequence(start, end).toString();
+      doubleValue = toFloat ? Float.parseFloat(value) : Double.parseDouble(value);
+      return OK;
+    } catch (NumberFormatException e) {
+      return MALFORMED;
+    }
+  }
+
+  /**
+   * {@code true} for "true" in any case, {@code false} for anything else; never fails.
+   */
+  public int parseBoolean(CharSequence text, int start, int end) {
+    booleanValue = end - start == 4
+        && (text.charAt(start) | 0x20) == 't'
+        && (text.charAt(start + 1) | 0x20) == 'r'
+        && (text.charAt(start + 2) | 0x20) == 'u'
+        && (text.charAt(start + 3) | 0x20) == 'e';
+    return OK;
+  }
+}
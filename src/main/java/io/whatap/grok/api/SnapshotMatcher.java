@@ -0,0 +1,143 @@
+package io.whatap.grok.api;
+
+import io.whatap.grok.api.engine.CompiledPattern;
+import io.whatap.grok.api.engine.EngineMatcher;
+
+/**
+ * {@link EngineMatcher} view over the group offsets copied into a {@link Match}.
+ * It does not depend on the pooled matcher, so it stays valid after the next match on the
+ * same thread.
+ *
+ * <p>The group accessors read the snapshot. The first call to {@link #find()},
+ * {@link #reset(CharSequence)}, {@link #matches()} or {@link #lookingAt()} switches the view to
+ * a matcher of its own over the subject, positioned on the snapshot match, so that
+ * {@code find()} goes on with the next match as it did on the matcher returned before; the
+ * accessors then read that matcher. For a byte match, that matcher runs over the decoded
+ * subject and reports char offsets.
+ */
+final class SnapshotMatcher implements EngineMatcher {
+
+  private final Match match;
+  private final int[] offsets;
+  private final GrokField[] fields;
+  private final CompiledPattern pattern;
+  /** Matcher of this view once {@code find}, {@code reset}... was called. */
+  private EngineMatcher live;
+
+  SnapshotMatcher(Match match, int[] offsets, GrokField[] fields, CompiledPattern pattern) {
+    this.match = match;
+    this.offsets = offsets;
+    this.fields = fields;
+    this.pattern = pattern;
+  }
+
+  /**
+   * @return the matcher of this view, positioned on the snapshot match when created
+   */
+  private EngineMatcher live() {
+    if (live == null) {
+      live = pattern.matcher(match.getSubject());
+      if (offsets.length > 0) {
+        // the leftmost match, which the snapshot recorded
+        live.find();
+      }
+    }
+    return live;
+  }
+
+  @Override
+  public void reset(CharSequence input) {
+    if (live == null) {
+      live = pattern.matcher(input);
+    } else {
+      live.reset(input);
+    }
+  }
+
+  @Override
+  public boolean find() {
+    return live().find();
+  }
+
+  @Override
+  public boolean matches() {
+    return live().matches();
+  }
+
+  @Override
+  public boolean lookingAt() {
+    return live().lookingAt();
+  }
+
+  @Override
+  public int start() {
+    return start(0);
+  }
+
+  @Override
+  public int end() {
+    return end(0);
+  }
+
+  @Override
+  public int start(int group) {
+    if (live != null) {
+      return live.start(group);
+    }
+    checkGroup(group);
+    return offsets[group * 2];
+  }
+
+  @Override
+  public int end(int group) {
+    if (live != null) {
+      return live.end(group);
+    }
+    checkGroup(group);
+    return offsets[group * 2 + 1];
+  }
+
+  @Override
+  public String group() {
+    return group(0);
+  }
+
+  @Override
+  public String group(int group) {
+    if (live != null) {
+      return live.group(group);
+    }
+    int start = start(group);
+    return start < 0 ? null : match.text(start, end(group));
+  }
+
+  @Override
+  public String group(String name) {
+    if (live != null) {
+      return live.group(name);
+    }
+    GrokField field = fieldOf(name);
+    // a field without group number was read by name at match time
+    return field.getGroup() < 0 ? match.rawValue(field.getIndex()) : group(field.getGroup());
+  }
+
+  @Override
+  public int groupCount() {
+    return offsets.length / 2 - 1;
+  }
+
+  private void checkGroup(int group) {
+    if (group < 0 || group > groupCount()) {
+      throw new IndexOutOfBoundsException("No group " + group);
+    }
+  }
+
+  private GrokField fieldOf(String name) {
+    for (GrokField field : fields) {
+      if (field.getGroupName().equals(name)) {
+        return field;
+      }
+    }
+    throw new IllegalArgumentException("No group with name <" + name + ">");
+  }
+}
@@ -0,0 +1,236 @@
+package io.whatap.grok.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded dictionary of canonical strings for a low cardinality field (HTTP verb, status,
+ * log level, program name...), see {@link GrokCompiler#setInterning(String, int)}.
+ *
+ * <p>A value is looked up by hashing the matched slice of the subject, so a value already in
+ * the dictionary costs no allocation. Up to {@link #getMaxSize() max size} distinct values are
+ * kept; once full, unknown values are returned as new strings. An adaptive interner
+ * ({@link GrokCompiler#setAutoInterning(boolean)}) also estimates how many distinct values did not fit,
+ * by setting one bit per value hash in a small bitmap, and disables itself, dropping its entries,
+ * when the field turns out to have a larger cardinality. A few unknown values repeated on every
+ * line keep it enabled.
+ *
+ * <p>Interners are thread safe and lock free: slots of the open addressing table are filled
+ * with compare and set, and only cleared when an adaptive interner disables itself.
+ *
+ * @since 1.0.2
+ */
+public final class StringInterner {
+
+  public static final int DEFAULT_MAX_SIZE = 256;
+
+  private final int maxSize;
+  private final boolean adaptive;
+  private final AtomicReferenceArray<String> table;
+  private final int mask;
+  private final AtomicInteger size = new AtomicInteger();
+  /** Hashes of the values not interned because the dictionary was full, adaptive interner only. */
+  private final AtomicLongArray overflow;
+  private final int overflowShift;
+  private final AtomicInteger overflowBits = new AtomicInteger();
+  /** Bits expected in {@link #overflow} once {@code maxSize} distinct values did not fit. */
+  private final int overflowLimit;
+  private volatile boolean enabled = true;
+
+  /**
+   * @param maxSize : maximum number of distinct values kept
+   */
+  public StringInterner(int maxSize) {
+    this(maxSize, false);
+  }
+
+  private StringInterner(int maxSize, boolean adaptive) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("max size must be positive: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.adaptive = adaptive;
+    // at most half full, probe sequences stay short
+    int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+    this.table = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+    // four bits per slot, few distinct values share a bit
+    int bits = Math.max(64, capacity * 4);
+    this.overflow = adaptive ? new AtomicLongArray(bits >>> 6) : null;
+    this.overflowShift = 32 - Integer.numberOfTrailingZeros(bits);
+    this.overflowLimit = (int) Math.ceil(bits * (1 - Math.exp(-(double) maxSize / bits)));
+  }
+
+  /**
+   * Interner that disables itself once about {@code maxSize} distinct values did not fit.
+   */
+  static StringInterner adaptive(int maxSize) {
+    return new StringInterner(maxSize, true);
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return true for an interner created by {@link GrokCompiler#setAutoInterning(boolean)}
+   */
+  boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * @return number of values in the dictionary
+   */
+  public int size() {
+    return Math.min(size.get(), maxSize);
+  }
+
+  /**
+   * @return false once an adaptive interner gave up on a high cardinality field
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the canonical string equal to {@code text[start, end)}, or a new one if the
+   *     dictionary is full or disabled
+   */
+  public String intern(CharSequence text, int start, int end) {
+    if (!enabled) {
+      return text.subSequence(start, end).toString();
+    }
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    int length = end - start;
+    for (int probe = 0, index = spread(hash) & mask; probe <= mask; probe++, index = (index + 1) & mask) {
+      String candidate = table.get(index);
+      if (candidate == null) {
+        String value = text.subSequence(start, end).toString();
+        String added = add(index, value, hash);
+        if (added != null) {
+          return added;
+        }
+        candidate = table.get(index);
+        if (candidate == null) {
+          return value;
+        }
+      }
+      if (candidate.hashCode() == hash && candidate.length() == length && regionMatches(candidate, text, start)) {
+        return candidate;
+      }
+    }
+    return text.subSequence(start, end).toString();
+  }
+
+  /**
+   * @return the canonical string equal to the UTF-8 {@code bytes[offset, offset + length)}
+   */
+  public String intern(byte[] bytes, int offset, int length) {
+    if (!enabled) {
+      return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+    int end = offset + length;
+    int hash = 0;
+    for (int i = offset; i < end; i++) {
+      if (bytes[i] < 0) {
+        // multi byte sequence, the chars differ from the bytes
+        String decoded = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        return intern(decoded, 0, decoded.length());
+      }
+      hash = 31 * hash + bytes[i];
+    }
+    for (int probe = 0, index = spread(hash) & mask; probe <= mask; probe++, index = (index + 1) & mask) {
+      String candidate = table.get(index);
+      if (candidate == null) {
+        String value = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        String added = add(index, value, hash);
+        if (added != null) {
+          return added;
+        }
+        candidate = table.get(index);
+        if (candidate == null) {
+          return value;
+        }
+      }
+      if (candidate.hashCode() == hash && candidate.length() == length && regionMatches(candidate, bytes, offset)) {
+        return candidate;
+      }
+    }
+    return new String(bytes, offset, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Claim the empty slot at {@code index} for {@code value}.
+   *
+   * @return {@code value} if added, the string another thread put there first if it is equal,
+   *     {@code null} if the slot was taken by another value (probe on) or the dictionary is full
+   */
+  private String add(int index, String value, int hash) {
+    if (size.get() >= maxSize) {
+      if (adaptive && overflowed(hash)) {
+        disable();
+      }
+      return null;
+    }
+    if (table.compareAndSet(index, null, value)) {
+      size.incrementAndGet();
+      return value;
+    }
+    String winner = table.get(index);
+    return value.equals(winner) ? winner : null;
+  }
+
+  /**
+   * Record a value that did not fit, by its hash.
+   *
+   * @return true once the bits set estimate more than {@code maxSize} distinct values
+   */
+  private boolean overflowed(int hash) {
+    int bit = (hash * 0x9e3779b9) >>> overflowShift;
+    int word = bit >>> 6;
+    long mask = 1L << bit;
+    long bits;
+    do {
+      bits = overflow.get(word);
+      if ((bits & mask) != 0) {
+        return false;
+      }
+    } while (!overflow.compareAndSet(word, bits, bits | mask));
+    return overflowBits.incrementAndGet() > overflowLimit;
+  }
+
+  private void disable() {
+    enabled = false;
+    for (int i = 0; i < table.length(); i++) {
+      table.set(i, null);
+    }
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean regionMatches(String candidate, CharSequence text, int start) {
+    for (int i = 0; i < candidate.length(); i++) {
+      if (candidate.charAt(i) != text.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean regionMatches(String candidate, byte[] bytes, int offset) {
+    for (int i = 0; i < candidate.length(); i++) {
+      if (candidate.charAt(i) != bytes[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
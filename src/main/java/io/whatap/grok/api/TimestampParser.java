@@ -0,0 +1,500 @@
+package io.whatap.grok.api;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.TextStyle;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Hand written parser for the common timestamp shapes of log lines, used by
+ * {@link Converter.DateConverter} ahead of its {@link java.time.format.DateTimeFormatter}.
+ *
+ * <p>A parser only accepts values it reads exactly like the formatter would and returns
+ * {@code null} for anything else (other shape, out of range field, lower case designator...),
+ * the caller then falls back to the formatter, which produces the same result or error as before.
+ *
+ * <p>Consecutive log lines mostly share the same minute: the epoch second of the last
+ * minute parsed is kept in an immutable holder, so the calendar and time zone arithmetic only
+ * runs when the minute changes. Parsers are thread safe and lock free.
+ *
+ * @since 1.0.2
+ */
+abstract class TimestampParser {
+
+  /** Offset of a value that has none, the converter time zone applies. */
+  private static final int NO_OFFSET = Integer.MIN_VALUE;
+  private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+  private static final long DAYS_0000_TO_1970 = 719528L;
+
+  private final ZoneId timeZone;
+  private final int fixedOffset;
+  private volatile Minute lastMinute;
+
+  TimestampParser(ZoneId timeZone) {
+    this.timeZone = timeZone;
+    this.fixedOffset = timeZone instanceof ZoneOffset ? ((ZoneOffset) timeZone).getTotalSeconds() : NO_OFFSET;
+  }
+
+  /**
+   * Parser of {@link java.time.format.DateTimeFormatter#ISO_DATE_TIME} values without zone
+   * id: {@code yyyy-MM-ddTHH:mm[:ss[.fraction]][Z|+HH:MM]}.
+   */
+  static TimestampParser iso(ZoneId timeZone) {
+    return new IsoParser(timeZone);
+  }
+
+  /**
+   * Parser of a {@link java.time.format.DateTimeFormatter#ofPattern(String) formatter pattern}
+   * made of fixed width fields, such as the {@code HTTPDATE} one {@code dd/MMM/yyyy:HH:mm:ss Z}.
+   *
+   * @param pattern : formatter pattern
+   * @param locale : locale of the formatter, for month names
+   * @param timeZone : zone of values without offset
+   * @return {@code null} if the pattern uses anything but {@code yyyy MM MMM dd HH mm ss S..S
+   *     Z XXX}, literals and quoted text
+   */
+  static TimestampParser ofPattern(String pattern, Locale locale, ZoneId timeZone) {
+    return PatternParser.compile(pattern, locale, timeZone);
+  }
+
+  /**
+   * @param value : trimmed value
+   * @return the instant, {@code null} if the value does not have the shape of this parser
+   */
+  abstract Instant parse(String value);
+
+  /**
+   * Validate the fields and build the instant.
+   *
+   * @param offset : offset in seconds, {@link #NO_OFFSET} for the time zone of the parser
+   * @return {@code null} if a field is out of range
+   */
+  final Instant instant(int year, int month, int day, int hour, int minute, int second, int nanos,
+      int offset) {
+    if (second > 59) {
+      return null;
+    }
+    Minute last = lastMinute;
+    if (last == null || !last.is(year, month, day, hour, minute, offset)) {
+      if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+          || hour > 23 || minute > 59) {
+        return null;
+      }
+      last = new Minute(year, month, day, hour, minute, offset, epochSecond(year, month, day, hour, minute, offset));
+      lastMinute = last;
+    }
+    return Instant.ofEpochSecond(last.epochSecond + second, nanos);
+  }
+
+  private long epochSecond(int year, int month, int day, int hour, int minute, int offset) {
+    if (offset == NO_OFFSET) {
+      if (fixedOffset == NO_OFFSET) {
+        // gaps and overlaps resolved as LocalDateTime.atZone does, the whole minute is shifted alike
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(timeZone).toEpochSecond();
+      }
+      offset = fixedOffset;
+    }
+    return epochDay(year, month, day) * 86400 + hour * 3600 + minute * 60 - offset;
+  }
+
+  /**
+   * Same computation as {@link java.time.LocalDate#toEpochDay()}, for years 0 to 9999.
+   */
+  private static long epochDay(int year, int month, int day) {
+    long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      if (!isLeap(year)) {
+        total--;
+      }
+    }
+    return total - DAYS_0000_TO_1970;
+  }
+
+  private static boolean isLeap(int year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeap(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * @return value of the {@code count} ASCII digits at {@code from}, -1 if one is not a digit
+   */
+  static int digits(String value, int from, int count) {
+    if (from + count > value.length()) {
+      return -1;
+    }
+    int result = 0;
+    for (int i = from; i < from + count; i++) {
+      int digit = value.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+
+  /**
+   * @return seconds of {@code +HH:MM} / {@code +HHMM} at {@code from}, {@link #NO_OFFSET} if
+   *     malformed, out of range or negative zero
+   */
+  static int offset(String value, int from, boolean colon) {
+    if (from >= value.length()) {
+      return NO_OFFSET;
+    }
+    char sign = value.charAt(from);
+    if (sign != '+' && sign != '-') {
+      return NO_OFFSET;
+    }
+    int hours = digits(value, from + 1, 2);
+    int minutesAt = from + 3;
+    if (colon) {
+      if (minutesAt >= value.length() || value.charAt(minutesAt) != ':') {
+        return NO_OFFSET;
+      }
+      minutesAt++;
+    }
+    int minutes = digits(value, minutesAt, 2);
+    if (hours < 0 || minutes < 0 || minutes > 59) {
+      return NO_OFFSET;
+    }
+    int seconds = hours * 3600 + minutes * 60;
+    if (seconds > MAX_OFFSET_SECONDS || seconds == 0 && sign == '-') {
+      return NO_OFFSET;
+    }
+    return sign == '-' ? -seconds : seconds;
+  }
+
+  /**
+   * Immutable, published as a whole through the volatile {@link #lastMinute}.
+   */
+  private static final class Minute {
+    final int year;
+    final int month;
+    final int day;
+    final int hour;
+    final int minute;
+    final int offset;
+    final long epochSecond;
+
+    Minute(int year, int month, int day, int hour, int minute, int offset, long epochSecond) {
+      this.year = year;
+      this.month = month;
+      this.day = day;
+      this.hour = hour;
+      this.minute = minute;
+      this.offset = offset;
+      this.epochSecond = epochSecond;
+    }
+
+    boolean is(int year, int month, int day, int hour, int minute, int offset) {
+      return this.minute == minute && this.hour == hour && this.day == day && this.month == month
+          && this.year == year && this.offset == offset;
+    }
+  }
+
+  private static final class IsoParser extends TimestampParser {
+
+    IsoParser(ZoneId timeZone) {
+      super(timeZone);
+    }
+
+    @Override
+    Instant parse(String value) {
+      int length = value.length();
+      if (length < 16 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+          || value.charAt(13) != ':') {
+        return null;
+      }
+      int year = digits(value, 0, 4);
+      int month = digits(value, 5, 2);
+      int day = digits(value, 8, 2);
+      int hour = digits(value, 11, 2);
+      int minute = digits(value, 14, 2);
+      if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0) {
+        return null;
+      }
+      int i = 16;
+      int second = 0;
+      int nanos = 0;
+      if (i < length && value.charAt(i) == ':') {
+        second = digits(value, i + 1, 2);
+        if (second < 0) {
+          return null;
+        }
+        i += 3;
+        if (i < length && value.charAt(i) == '.') {
+          int start = ++i;
+          while (i < length && i - start < 9 && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            nanos = nanos * 10 + value.charAt(i) - '0';
+            i++;
+          }
+          if (i == start) {
+            return null;
+          }
+          for (int scale = i - start; scale < 9; scale++) {
+            nanos *= 10;
+          }
+        }
+      }
+      int offset = NO_OFFSET;
+      if (i < length) {
+        if (value.charAt(i) == 'Z') {
+          offset = 0;
+          i++;
+        } else {
+          offset = offset(value, i, true);
+          if (offset == NO_OFFSET) {
+            return null;
+          }
+          i += 6;
+        }
+      }
+      if (i != length) {
+        return null;
+      }
+      return instant(year, month, day, hour, minute, second, nanos, offset);
+    }
+  }
+
+  private static final class PatternParser extends TimestampParser {
+
+    private static final int YEAR = 0;
+    private static final int MONTH = 1;
+    private static final int MONTH_NAME = 2;
+    private static final int DAY = 3;
+    private static final int HOUR = 4;
+    private static final int MINUTE = 5;
+    private static final int SECOND = 6;
+    /** Argument: number of digits. */
+    private static final int FRACTION = 7;
+    /** {@code Z}: {@code +HHMM}. */
+    private static final int OFFSET = 8;
+    /** {@code XXX}: {@code Z} or {@code +HH:MM}. */
+    private static final int OFFSET_ID = 9;
+    /** Argument: the character. */
+    private static final int LITERAL = 10;
+
+    private final int[] kinds;
+    private final int[] arguments;
+    private final String[] monthNames;
+
+    private PatternParser(int[] kinds, int[] arguments, String[] monthNames, ZoneId timeZone) {
+      super(timeZone);
+      this.kinds = kinds;
+      this.arguments = arguments;
+      this.monthNames = monthNames;
+    }
+
+    static PatternParser compile(String pattern, Locale locale, ZoneId timeZone) {
+      int[] kinds = new int[pattern.length()];
+      int[] arguments = new int[pattern.length()];
+      int size = 0;
+      int seen = 0;
+      boolean monthName = false;
+      for (int i = 0; i < pattern.length(); ) {
+        char c = pattern.charAt(i);
+        if (c == '\'') {
+          int close = pattern.indexOf('\'', i + 1);
+          if (close < 0) {
+            return null;
+          }
+          if (close == i + 1) {
+            kinds[size] = LITERAL;
+            arguments[size++] = '\'';
+          }
+          for (int j = i + 1; j < close; j++) {
+            kinds[size] = LITERAL;
+            arguments[size++] = pattern.charAt(j);
+          }
+          i = close + 1;
+          continue;
+        }
+        if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+          if (c == '[' || c == ']' || c == '{' || c == '}' || c == '#') {
+            return null;
+          }
+          kinds[size] = LITERAL;
+          arguments[size++] = c;
+          i++;
+          continue;
+        }
+        int count = 1;
+        while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+          count++;
+        }
+        int kind;
+        if (c == 'y' && count == 4) {
+          kind = YEAR;
+        } else if (c == 'M' && (count == 2 || count == 3)) {
+          kind = count == 2 ? MONTH : MONTH_NAME;
+          monthName = count == 3;
+        } else if (c == 'd' && count == 2) {
+          kind = DAY;
+        } else if (c == 'H' && count == 2) {
+          kind = HOUR;
+        } else if (c == 'm' && count == 2) {
+          kind = MINUTE;
+        } else if (c == 's' && count == 2) {
+          kind = SECOND;
+        } else if (c == 'S' && count <= 9) {
+          kind = FRACTION;
+        } else if (c == 'Z' && count <= 3) {
+          kind = OFFSET;
+        } else if (c == 'X' && count == 3) {
+          kind = OFFSET_ID;
+        } else {
+          return null;
+        }
+        int bit = 1 << (kind == MONTH_NAME ? MONTH : kind == OFFSET_ID ? OFFSET : kind);
+        if ((seen & bit) != 0) {
+          return null;
+        }
+        seen |= bit;
+        kinds[size] = kind;
+        arguments[size++] = count;
+        i += count;
+      }
+      int required = 1 << YEAR | 1 << MONTH | 1 << DAY | 1 << HOUR | 1 << MINUTE;
+      if ((seen & required) != required || (seen & 1 << FRACTION) != 0 && (seen & 1 << SECOND) == 0) {
+        return null;
+      }
+      String[] names = null;
+      if (monthName) {
+        names = new String[12];
+        for (int m = 0; m < 12; m++) {
+          names[m] = Month.of(m + 1).getDisplayName(TextStyle.SHORT, locale);
+          if (names[m].length() != 3) {
+            return null;
+          }
+        }
+      }
+      return new PatternParser(Arrays.copyOf(kinds, size), Arrays.copyOf(arguments, size),
+          names, timeZone);
+    }
+
+    @Override
+    Instant parse(String value) {
+      int year = 0;
+      int month = 0;
+      int day = 0;
+      int hour = 0;
+      int minute = 0;
+      int second = 0;
+      int nanos = 0;
+      int offset = NO_OFFSET;
+      int i = 0;
+      for (int k = 0; k < kinds.length; k++) {
+        int field;
+        switch (kinds[k]) {
+          case LITERAL:
+            if (i >= value.length() || value.charAt(i) != arguments[k]) {
+              return null;
+            }
+            i++;
+            continue;
+          case MONTH_NAME:
+            month = monthOf(value, i);
+            if (month < 0) {
+              return null;
+            }
+            i += 3;
+            continue;
+          case OFFSET:
+            offset = offset(value, i, false);
+            if (offset == NO_OFFSET) {
+              return null;
+            }
+            i += 5;
+            continue;
+          case OFFSET_ID:
+            if (i < value.length() && value.charAt(i) == 'Z') {
+              offset = 0;
+              i++;
+              continue;
+            }
+            offset = offset(value, i, true);
+            if (offset == NO_OFFSET) {
+              return null;
+            }
+            i += 6;
+            continue;
+          case YEAR:
+            field = digits(value, i, 4);
+            i += 4;
+            // year of era, there is no year 0
+            year = field == 0 ? -1 : field;
+            field = year;
+            break;
+          case FRACTION:
+            field = digits(value, i, arguments[k]);
+            i += arguments[k];
+            nanos = field;
+            for (int scale = arguments[k]; scale < 9; scale++) {
+              nanos *= 10;
+            }
+            break;
+          default:
+            field = digits(value, i, 2);
+            i += 2;
+            switch (kinds[k]) {
+              case MONTH:
+                month = field;
+                break;
+              case DAY:
+                day = field;
+                break;
+              case HOUR:
+                hour = field;
+                break;
+              case MINUTE:
+                minute = field;
+                break;
+              default:
+                second = field;
+                break;
+            }
+            break;
+        }
+        if (field < 0) {
+          return null;
+        }
+      }
+      if (i != value.length()) {
+        return null;
+      }
+      return instant(year, month, day, hour, minute, second, nanos, offset);
+    }
+
+    private int monthOf(String value, int from) {
+      if (from + 3 > value.length()) {
+        return -1;
+      }
+      for (int m = 0; m < 12; m++) {
+        if (value.startsWith(monthNames[m], from)) {
+          return m + 1;
+        }
+      }
+      return -1;
+    }
+  }
+}
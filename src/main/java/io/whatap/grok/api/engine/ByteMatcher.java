@@ -0,0 +1,47 @@
+package io.whatap.grok.api.engine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte-oriented counterpart of {@link EngineMatcher} over UTF-8 encoded input.
+ * Offsets are byte offsets relative to the start of the matched range.
+ * Created by {@link CompiledPattern#byteMatcher()}.
+ */
+public interface ByteMatcher {
+
+  /**
+   * Match against {@code length} bytes of {@code input} starting at {@code offset}.
+   * The array is read during the match calls and must not change in between.
+   */
+  void reset(byte[] input, int offset, int length);
+
+  /**
+   * Match against the remaining bytes of {@code input}; its position is not changed.
+   */
+  void reset(ByteBuffer input);
+
+  boolean find();
+
+  boolean matches();
+
+  boolean lookingAt();
+
+  int start();
+
+  int end();
+
+  int start(int group);
+
+  int end(int group);
+
+  /**
+   * Text of a named group, decoded from UTF-8.
+   *
+   * @since 1.0.2
+   */
+  default String group(String name) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support group(String)");
+  }
+
+  int groupCount();
+}
@@ -1,5 +1,7 @@
 package io.whatap.grok.api.engine;
 
+import java.util.Map;
+
 /**
  * Compiled regex pattern abstraction. Created by {@link RegexEngine#compile(String)}.
  */
@@ -10,4 +12,36 @@ public interface CompiledPattern {
   String getEngineName();
 
   String getPattern();
+
+  /**
+   * Variant of this pattern with every capturing group turned into a non-capturing one,
+   * for callers that only need to know whether the input matches. Created lazily on first
+   * use and then reused.
+   *
+   * @return the capture-free variant, or this pattern if it cannot be stripped
+   *     (backreferences) or the engine does not provide one
+   */
+  default CompiledPattern withoutCaptures() {
+    return this;
+  }
+
+  /**
+   * Group number of every named group, as the engine resolved them. Engines whose syntax
+   * differs from java.util.regex (character class nesting...) should provide it.
+   *
+   * @return map of group name to group number, or {@code null} to let the caller resolve the
+   *     names from the java.util.regex syntax of {@link #getPattern()}
+   * @since 1.0.2
+   */
+  default Map<String, Integer> namedGroups() {
+    return null;
+  }
+
+  /**
+   * Create a matcher over UTF-8 encoded bytes. Engines without native byte matching decode
+   * the input on demand and map the offsets back to bytes.
+   */
+  default ByteMatcher byteMatcher() {
+    return new DecodingByteMatcher(this);
+  }
 }
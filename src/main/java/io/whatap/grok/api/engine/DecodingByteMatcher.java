@@ -0,0 +1,154 @@
+package io.whatap.grok.api.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * {@link ByteMatcher} for engines that only match characters (java.util.regex).
+ * The input is decoded from UTF-8 into a reusable buffer, matched as a {@link CharSequence},
+ * and character offsets are mapped back to byte offsets. Invalid bytes decode to U+FFFD one
+ * byte at a time, like re2j does, so offsets stay exact on malformed input.
+ */
+final class DecodingByteMatcher implements ByteMatcher {
+
+  private static final char REPLACEMENT = '\uFFFD';
+
+  private final CompiledPattern pattern;
+  private EngineMatcher matcher;
+  private char[] chars = new char[0];
+  /** Byte offset of every char, plus the total length at index {@code length}. */
+  private int[] charToByte = new int[1];
+  private int length;
+
+  DecodingByteMatcher(CompiledPattern pattern) {
+    this.pattern = pattern;
+  }
+
+  @Override
+  public void reset(byte[] input, int offset, int length) {
+    decode(input, offset, length);
+    CharSequence text = CharBuffer.wrap(chars, 0, this.length);
+    if (matcher == null) {
+      matcher = pattern.matcher(text);
+    } else {
+      matcher.reset(text);
+    }
+  }
+
+  @Override
+  public void reset(ByteBuffer input) {
+    if (input.hasArray()) {
+      reset(input.array(), input.arrayOffset() + input.position(), input.remaining());
+    } else {
+      byte[] copy = new byte[input.remaining()];
+      input.duplicate().get(copy);
+      reset(copy, 0, copy.length);
+    }
+  }
+
+  private void decode(byte[] input, int offset, int byteLength) {
+    if (chars.length < byteLength) {
+      chars = new char[byteLength];
+      charToByte = new int[byteLength + 1];
+    }
+    int n = 0;
+    int i = 0;
+    while (i < byteLength) {
+      int b0 = input[offset + i] & 0xFF;
+      int width = 1;
+      int codePoint = REPLACEMENT;
+      if (b0 < 0x80) {
+        codePoint = b0;
+      } else if (b0 >= 0xC2 && b0 <= 0xDF && continuation(input, offset, byteLength, i, 1)) {
+        codePoint = (b0 & 0x1F) << 6 | input[offset + i + 1] & 0x3F;
+        width = 2;
+      } else if (b0 >= 0xE0 && b0 <= 0xEF && continuation(input, offset, byteLength, i, 2)) {
+        int cp = (b0 & 0x0F) << 12 | (input[offset + i + 1] & 0x3F) << 6 | input[offset + i + 2] & 0x3F;
+        if (cp >= 0x800 && (cp < 0xD800 || cp > 0xDFFF)) {
+          codePoint = cp;
+          width = 3;
+        }
+      } else if (b0 >= 0xF0 && b0 <= 0xF4 && continuation(input, offset, byteLength, i, 3)) {
+        int cp = (b0 & 0x07) << 18 | (input[offset + i + 1] & 0x3F) << 12
+            | (input[offset + i + 2] & 0x3F) << 6 | input[offset + i + 3] & 0x3F;
+        if (cp >= 0x10000 && cp <= 0x10FFFF) {
+          codePoint = cp;
+          width = 4;
+        }
+      }
+      if (codePoint >= 0x10000) {
+        charToByte[n] = i;
+        chars[n++] = Character.highSurrogate(codePoint);
+        charToByte[n] = i;
+        chars[n++] = Character.lowSurrogate(codePoint);
+      } else {
+        charToByte[n] = i;
+        chars[n++] = (char) codePoint;
+      }
+      i += width;
+    }
+    charToByte[n] = byteLength;
+    length = n;
+  }
+
+  private static boolean continuation(byte[] input, int offset, int byteLength, int i, int count) {
+    if (i + count >= byteLength) {
+      return false;
+    }
+    for (int k = 1; k <= count; k++) {
+      if ((input[offset + i + k] & 0xC0) != 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int toByte(int charOffset) {
+    return charOffset < 0 ? -1 : charToByte[charOffset];
+  }
+
+  @Override
+  public boolean find() {
+    return matcher.find();
+  }
+
+  @Override
+  public boolean matches() {
+    return matcher.matches();
+  }
+
+  @Override
+  public boolean lookingAt() {
+    return matcher.lookingAt();
+  }
+
+  @Override
+  public int start() {
+    return toByte(matcher.start());
+  }
+
+  @Override
+  public int end() {
+    return toByte(matcher.end());
+  }
+
+  @Override
+  public int start(int group) {
+    return toByte(matcher.start(group));
+  }
+
+  @Override
+  public int end(int group) {
+    return toByte(matcher.end(group));
+  }
+
+  @Override
+  public String group(String name) {
+    return matcher.group(name);
+  }
+
+  @Override
+  public int groupCount() {
+    return matcher.groupCount();
+  }
+}
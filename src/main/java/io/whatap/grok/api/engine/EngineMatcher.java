@@ -10,6 +10,28 @@ public interface EngineMatcher {
 
   boolean find();
 
+  /**
+   * Match the entire input against the pattern. The bundled engines implement it; the
+   * default throws, and {@code Grok} only calls it for {@link io.whatap.grok.api.Grok#matchFull}.
+   *
+   * @throws UnsupportedOperationException if the implementation does not support it
+   */
+  default boolean matches() {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support matches()");
+  }
+
+  /**
+   * Match the pattern anchored at the beginning of the input, without requiring
+   * it to consume the whole input. The bundled engines implement it; the default throws,
+   * and {@code Grok} only calls it for {@link io.whatap.grok.api.Grok#matchPrefix} and
+   * anchored patterns.
+   *
+   * @throws UnsupportedOperationException if the implementation does not support it
+   */
+  default boolean lookingAt() {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support lookingAt()");
+  }
+
   int start();
 
   int end();
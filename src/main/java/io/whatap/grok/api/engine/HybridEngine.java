@@ -1,5 +1,7 @@
 package io.whatap.grok.api.engine;
 
+import java.util.Map;
+
 /**
  * Tries to compile with re2j first; falls back to {@link JavaRegexEngine} when re2j
  * cannot handle the pattern (lookahead/lookbehind/backreference/atomic group).
@@ -42,6 +44,7 @@ public final class HybridEngine implements RegexEngine {
 
     private final CompiledPattern delegate;
     private final String re2jFailureReason;
+    private volatile CompiledPattern withoutCaptures;
 
     HybridFallbackPattern(CompiledPattern delegate, String re2jFailureReason) {
       this.delegate = delegate;
@@ -63,6 +66,28 @@ public final class HybridEngine implements RegexEngine {
       return delegate.getPattern();
     }
 
+    @Override
+    public Map<String, Integer> namedGroups() {
+      return delegate.namedGroups();
+    }
+
+    @Override
+    public ByteMatcher byteMatcher() {
+      return delegate.byteMatcher();
+    }
+
+    @Override
+    public CompiledPattern withoutCaptures() {
+      CompiledPattern stripped = withoutCaptures;
+      if (stripped == null) {
+        CompiledPattern delegateStripped = delegate.withoutCaptures();
+        stripped = delegateStripped == delegate
+            ? this : new HybridFallbackPattern(delegateStripped, re2jFailureReason);
+        withoutCaptures = stripped;
+      }
+      return stripped;
+    }
+
     public String getRe2jFailureReason() {
       return re2jFailureReason;
     }
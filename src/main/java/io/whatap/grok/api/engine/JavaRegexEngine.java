@@ -49,6 +49,7 @@ public final class JavaRegexEngine implements RegexEngine {
     private final String regex;
     private final long timeoutMs;
     private final int checkInterval;
+    private volatile CompiledPattern withoutCaptures;
 
     JavaCompiledPattern(Pattern pattern, String regex, long timeoutMs, int checkInterval) {
       this.pattern = pattern;
@@ -75,6 +76,20 @@ public final class JavaRegexEngine implements RegexEngine {
       return regex;
     }
 
+    @Override
+    public CompiledPattern withoutCaptures() {
+      CompiledPattern stripped = withoutCaptures;
+      if (stripped == null) {
+        String regexWithoutCaptures = RegexCaptures.strip(regex);
+        stripped = regexWithoutCaptures == null || regexWithoutCaptures.equals(regex)
+            ? this
+            : new JavaCompiledPattern(Pattern.compile(regexWithoutCaptures), regexWithoutCaptures,
+                timeoutMs, checkInterval);
+        withoutCaptures = stripped;
+      }
+      return stripped;
+    }
+
     public Pattern getRawPattern() {
       return pattern;
     }
@@ -98,6 +113,16 @@ public final class JavaRegexEngine implements RegexEngine {
       return matcher.find();
     }
 
+    @Override
+    public boolean matches() {
+      return matcher.matches();
+    }
+
+    @Override
+    public boolean lookingAt() {
+      return matcher.lookingAt();
+    }
+
     @Override
     public int start() {
       return matcher.start();
@@ -1,5 +1,8 @@
 package io.whatap.grok.api.engine;
 
+import java.nio.ByteBuffer;
+import java.util.Map;
+
 import com.google.re2j.Matcher;
 import com.google.re2j.Pattern;
 import com.google.re2j.PatternSyntaxException;
@@ -41,6 +44,8 @@ public final class Re2jEngine implements RegexEngine {
     return result;
   }
 
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
   @Override
   public CompiledPattern compile(String regex) {
     String rewritten = rewriteForRe2j(regex);
@@ -63,6 +68,7 @@ public final class Re2jEngine implements RegexEngine {
 
     private final Pattern pattern;
     private final String regex;
+    private volatile CompiledPattern withoutCaptures;
 
     Re2jCompiledPattern(Pattern pattern, String regex) {
       this.pattern = pattern;
@@ -71,7 +77,7 @@ public final class Re2jEngine implements RegexEngine {
 
     @Override
     public EngineMatcher matcher(CharSequence input) {
-      return new Re2jEngineMatcher(pattern.matcher(input));
+      return new Re2jEngineMatcher(this, pattern.matcher(input), input);
     }
 
     @Override
@@ -84,6 +90,34 @@ public final class Re2jEngine implements RegexEngine {
       return regex;
     }
 
+    /**
+     * re2j reads a '[' inside a character class as a literal, where java.util.regex opens a
+     * nested class, so the group numbers come from re2j itself.
+     */
+    @Override
+    public Map<String, Integer> namedGroups() {
+      return pattern.namedGroups();
+    }
+
+    @Override
+    public ByteMatcher byteMatcher() {
+      return new Re2jByteMatcher(pattern.matcher(EMPTY_BYTES));
+    }
+
+    @Override
+    public CompiledPattern withoutCaptures() {
+      CompiledPattern stripped = withoutCaptures;
+      if (stripped == null) {
+        String regexWithoutCaptures = RegexCaptures.strip(regex);
+        stripped = regexWithoutCaptures == null || regexWithoutCaptures.equals(regex)
+            ? this
+            : new Re2jCompiledPattern(Pattern.compile(rewriteForRe2j(regexWithoutCaptures)),
+                regexWithoutCaptures);
+        withoutCaptures = stripped;
+      }
+      return stripped;
+    }
+
     public Pattern getRawPattern() {
       return pattern;
     }
@@ -91,20 +125,69 @@ public final class Re2jEngine implements RegexEngine {
 
   static final class Re2jEngineMatcher implements EngineMatcher {
 
+    private final Re2jCompiledPattern owner;
     private Matcher matcher;
+    private CharSequence input;
+    /** Matcher of the capture-free variant, created on the first long input. */
+    private Matcher spanMatcher;
+    private boolean spanReset;
 
-    Re2jEngineMatcher(Matcher matcher) {
+    Re2jEngineMatcher(Re2jCompiledPattern owner, Matcher matcher, CharSequence input) {
+      this.owner = owner;
       this.matcher = matcher;
+      this.input = input;
     }
 
     @Override
     public void reset(CharSequence input) {
       matcher.reset(input);
+      this.input = input;
+      this.spanReset = false;
     }
 
+    /**
+     * On long inputs, locate the match with the capture-free program first and only then
+     * run the full program from the start of that span. re2j extracts the groups over
+     * the span on first access.
+     */
     @Override
     public boolean find() {
-      return matcher.find();
+      if (input.length() < RegexCaptures.SPAN_NARROWING_MIN_LENGTH) {
+        return matcher.find();
+      }
+      Matcher span = spanMatcher();
+      if (span == null) {
+        return matcher.find();
+      }
+      if (!span.find()) {
+        return false;
+      }
+      return matcher.find(span.start());
+    }
+
+    private Matcher spanMatcher() {
+      if (spanMatcher == null) {
+        CompiledPattern stripped = owner.withoutCaptures();
+        if (stripped == owner) {
+          return null;
+        }
+        spanMatcher = ((Re2jCompiledPattern) stripped).getRawPattern().matcher(input);
+        spanReset = true;
+      } else if (!spanReset) {
+        spanMatcher.reset(input);
+        spanReset = true;
+      }
+      return spanMatcher;
+    }
+
+    @Override
+    public boolean matches() {
+      return matcher.matches();
+    }
+
+    @Override
+    public boolean lookingAt() {
+      return matcher.lookingAt();
     }
 
     @Override
@@ -147,4 +230,90 @@ public final class Re2jEngine implements RegexEngine {
       return matcher.groupCount();
     }
   }
+
+  /**
+   * Native UTF-8 matcher. re2j matches whole arrays only, so a range that is not the whole
+   * array is copied into an array of exactly its length: the copy is only reused by consecutive
+   * ranges of the same length, in practice it is a new array for most lines.
+   */
+  static final class Re2jByteMatcher implements ByteMatcher {
+
+    private final Matcher matcher;
+    private byte[] copy = EMPTY_BYTES;
+
+    Re2jByteMatcher(Matcher matcher) {
+      this.matcher = matcher;
+    }
+
+    @Override
+    public void reset(byte[] input, int offset, int length) {
+      if (offset == 0 && length == input.length) {
+        matcher.reset(input);
+        return;
+      }
+      if (copy.length != length) {
+        copy = new byte[length];
+      }
+      System.arraycopy(input, offset, copy, 0, length);
+      matcher.reset(copy);
+    }
+
+    @Override
+    public void reset(ByteBuffer input) {
+      if (input.hasArray()) {
+        reset(input.array(), input.arrayOffset() + input.position(), input.remaining());
+        return;
+      }
+      if (copy.length != input.remaining()) {
+        copy = new byte[input.remaining()];
+      }
+      input.duplicate().get(copy);
+      matcher.reset(copy);
+    }
+
+    @Override
+    public boolean find() {
+      return matcher.find();
+    }
+
+    @Override
+    public boolean matches() {
+      return matcher.matches();
+    }
+
+    @Override
+    public boolean lookingAt() {
+      return matcher.lookingAt();
+    }
+
+    @Override
+    public int start() {
+      return matcher.start();
+    }
+
+    @Override
+    public int end() {
+      return matcher.end();
+    }
+
+    @Override
+    public int start(int group) {
+      return matcher.start(group);
+    }
+
+    @Override
+    public int end(int group) {
+      return matcher.end(group);
+    }
+
+    @Override
+    public String group(String name) {
+      return matcher.group(name);
+    }
+
+    @Override
+    public int groupCount() {
+      return matcher.groupCount();
+    }
+  }
 }
@@ -0,0 +1,105 @@
+package io.whatap.grok.api.engine;
+
+/**
+ * Rewrites a regex into an equivalent one without capturing groups.
+ * Works on both java.util.regex ({@code (?<name>...)}) and re2j ({@code (?P<name>...)}) syntax.
+ */
+final class RegexCaptures {
+
+  /**
+   * Inputs from this length on are matched in two passes by re2j (also when picked by the
+   * hybrid engine): the capture-free variant of the pattern first locates the match span, then
+   * the full pattern only extracts the groups inside that span.
+   */
+  static final int SPAN_NARROWING_MIN_LENGTH = 1024;
+
+  private RegexCaptures() {
+  }
+
+  /**
+   * Turn every capturing group of {@code regex} into a non-capturing group.
+   *
+   * @param regex : regex to rewrite
+   * @return the rewritten regex, or {@code null} if it uses backreferences
+   *     and therefore needs its groups
+   */
+  static String strip(String regex) {
+    StringBuilder sb = new StringBuilder(regex.length());
+    int classDepth = 0;
+    int length = regex.length();
+    for (int i = 0; i < length; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (i + 1 >= length) {
+          sb.append(c);
+          continue;
+        }
+        char next = regex.charAt(i + 1);
+        if (next == 'Q') {
+          int quoteEnd = regex.indexOf("\\E", i + 2);
+          int end = quoteEnd < 0 ? length : quoteEnd + 2;
+          sb.append(regex, i, end);
+          i = end - 1;
+          continue;
+        }
+        if (classDepth == 0 && (next == 'k' || (next >= '1' && next <= '9'))) {
+          return null;
+        }
+        sb.append(c).append(next);
+        i++;
+      } else if (classDepth > 0) {
+        if (c == '[') {
+          classDepth++;
+          i = appendClassStart(regex, i, sb);
+          continue;
+        } else if (c == ']') {
+          classDepth--;
+        }
+        sb.append(c);
+      } else if (c == '[') {
+        classDepth++;
+        i = appendClassStart(regex, i, sb);
+      } else if (c == '(') {
+        if (i + 1 >= length || regex.charAt(i + 1) != '?') {
+          sb.append("(?:");
+          continue;
+        }
+        int nameStart = -1;
+        if (regex.startsWith("?<", i + 1) && i + 3 < length && Character.isLetter(regex.charAt(i + 3))) {
+          nameStart = i + 3;
+        } else if (regex.startsWith("?P<", i + 1)) {
+          nameStart = i + 4;
+        }
+        int nameEnd = nameStart < 0 ? -1 : regex.indexOf('>', nameStart);
+        if (nameEnd > nameStart) {
+          sb.append("(?:");
+          i = nameEnd;
+        } else {
+          sb.append(c);
+        }
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * A ']' right after '[' or '[^' is a literal, not the end of the class.
+   *
+   * @return index of the last character appended
+   */
+  private static int appendClassStart(String regex, int open, StringBuilder sb) {
+    int i = open;
+    sb.append('[');
+    if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+      sb.append('^');
+      i++;
+    }
+    if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+      sb.append(']');
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,36 @@
+package io.whatap.grok.api.pipeline;
+
+/**
+ * Counters of one byte range parsed by {@link ParallelFileScanner}.
+ */
+public final class ChunkStats {
+  public final int index;
+  public final long offset;
+  public final long length;
+  public final long lines;
+  public final long matched;
+  public final long nanos;
+
+  public ChunkStats(int index, long offset, long length, long lines, long matched, long nanos) {
+    this.index = index;
+    this.offset = offset;
+    this.length = length;
+    this.lines = lines;
+    this.matched = matched;
+    this.nanos = nanos;
+  }
+
+  public double bytesPerSecond() {
+    return length * 1e9 / Math.max(1, nanos);
+  }
+
+  public double linesPerSecond() {
+    return lines * 1e9 / Math.max(1, nanos);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ChunkStats{#%d @%d+%d, lines=%d, matched=%d, %.1f MB/s, %.0f lines/s}",
+        index, offset, length, lines, matched, bytesPerSecond() / 1e6, linesPerSecond());
+  }
+}
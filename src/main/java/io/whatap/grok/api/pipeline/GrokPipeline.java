@@ -0,0 +1,345 @@
+package io.whatap.grok.api.pipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.whatap.grok.api.Grok;
+import io.whatap.grok.api.Match;
+import io.whatap.grok.api.exception.GrokException;
+
+/**
+ * Multi-stage ingest pipeline: decode (line splitting) → match ({@link Grok#match}) →
+ * convert ({@link Match#capture()}) → encode (user function) → emit (user sink).
+ *
+ * <p>Each of the match, convert and encode stages runs on a configurable number of lanes
+ * (threads). Line {@code n} is handled by lane {@code n % parallelism} of every stage, and
+ * every pair of lanes of two consecutive stages is connected by its own bounded
+ * {@link SpscRingBuffer}. Because each lane processes its sequence numbers in increasing order,
+ * the emit stage receives the results in input order without any reordering buffer. A full
+ * ring blocks its producer, so a slow stage pushes back all the way to the reader.
+ *
+ * <p>Decode runs on the thread calling {@link #process(Reader, Consumer)}, emit on a
+ * dedicated thread; the sink therefore always sees results from a single thread.
+ *
+ * @param <T> encoded output type
+ * @since 1.0.2
+ */
+public final class GrokPipeline<T> {
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private static final Object END = new Object();
+  private static final Object NULL = new Object();
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 200;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final Grok grok;
+  private final Function<? super Map<String, Object>, ? extends T> encoder;
+  private int matchParallelism = 1;
+  private int convertParallelism = 1;
+  private int encodeParallelism = 1;
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+  private volatile Run run;
+
+  /**
+   * @param grok : pattern used by the match stage
+   * @param encoder : encode stage, turns the captured fields of a line into the output
+   */
+  public GrokPipeline(Grok grok, Function<? super Map<String, Object>, ? extends T> encoder) {
+    this.grok = grok;
+    this.encoder = encoder;
+  }
+
+  public void setMatchParallelism(int parallelism) {
+    this.matchParallelism = requirePositive(parallelism);
+  }
+
+  public void setConvertParallelism(int parallelism) {
+    this.convertParallelism = requirePositive(parallelism);
+  }
+
+  public void setEncodeParallelism(int parallelism) {
+    this.encodeParallelism = requirePositive(parallelism);
+  }
+
+  /**
+   * Capacity of every ring buffer between two lanes.
+   */
+  public void setQueueCapacity(int capacity) {
+    this.queueCapacity = requirePositive(capacity);
+  }
+
+  private static int requirePositive(int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("value must be positive: " + value);
+    }
+    return value;
+  }
+
+  /**
+   * Run every line of {@code input} through the pipeline and hand the encoded results to
+   * {@code sink}, in input order. Blocks until the last result has been emitted.
+   *
+   * @param input : source of lines, not closed by the pipeline
+   * @param sink : receives the encoded results on the emit thread
+   * @return number of lines processed
+   * @throws IOException if reading {@code input} fails
+   * @throws GrokException if a stage fails; the pipeline is aborted
+   */
+  public long process(Reader input, Consumer<? super T> sink) throws IOException {
+    Run current = new Run(sink);
+    this.run = current;
+    return current.execute(input);
+  }
+
+  /**
+   * Counters of the running pipeline, or of the last run once it has finished.
+   *
+   * @return one entry per stage, in pipeline order
+   */
+  public List<StageStats> getStats() {
+    Run current = run;
+    if (current == null) {
+      return Collections.emptyList();
+    }
+    return current.stats();
+  }
+
+  private static final class Stage {
+    final String name;
+    final int lanes;
+    final Function<Object, Object> function;
+    final AtomicLong[] processed;
+    /** Input rings indexed by [upstream lane][lane], {@code null} for the source stage. */
+    SpscRingBuffer<Object>[][] input;
+
+    Stage(String name, int lanes, Function<Object, Object> function) {
+      this.name = name;
+      this.lanes = lanes;
+      this.function = function;
+      this.processed = new AtomicLong[lanes];
+      for (int i = 0; i < lanes; i++) {
+        processed[i] = new AtomicLong();
+      }
+    }
+
+    long processed() {
+      long total = 0;
+      for (AtomicLong counter : processed) {
+        total += counter.get();
+      }
+      return total;
+    }
+  }
+
+  private final class Run {
+    private final Stage[] stages;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    @SuppressWarnings("unchecked")
+    Run(Consumer<? super T> sink) {
+      this.stages = new Stage[] {
+          new Stage("decode", 1, line -> line),
+          new Stage("match", matchParallelism, line -> grok.match((String) line)),
+          new Stage("convert", convertParallelism, match -> ((Match) match).capture()),
+          new Stage("encode", encodeParallelism, fields -> encoder.apply((Map<String, Object>) fields)),
+          new Stage("emit", 1, value -> {
+            sink.accept((T) value);
+            return null;
+          })
+      };
+      for (int s = 1; s < stages.length; s++) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SpscRingBuffer<Object>[][] rings = new SpscRingBuffer[stages[s - 1].lanes][stages[s].lanes];
+        for (int i = 0; i < rings.length; i++) {
+          for (int k = 0; k < rings[i].length; k++) {
+            rings[i][k] = new SpscRingBuffer<>(queueCapacity);
+          }
+        }
+        stages[s].input = rings;
+      }
+    }
+
+    long execute(Reader input) throws IOException {
+      List<Thread> threads = new ArrayList<>();
+      for (int s = 1; s < stages.length; s++) {
+        for (int lane = 0; lane < stages[s].lanes; lane++) {
+          final int stage = s;
+          final int index = lane;
+          Thread thread = new Thread(() -> runLane(stage, index),
+              "GrokPipeline-" + stages[s].name + "-" + lane);
+          thread.setDaemon(true);
+          threads.add(thread);
+          thread.start();
+        }
+      }
+
+      long lines = 0;
+      try {
+        lines = decode(input);
+      } finally {
+        for (Thread thread : threads) {
+          joinUninterruptibly(thread);
+        }
+        endNanos = System.nanoTime();
+      }
+
+      Throwable error = failure.get();
+      if (error instanceof IOException) {
+        throw (IOException) error;
+      }
+      if (error instanceof GrokException) {
+        throw (GrokException) error;
+      }
+      return lines;
+    }
+
+    private long decode(Reader input) {
+      Stage source = stages[0];
+      Stage next = stages[1];
+      BufferedReader reader = input instanceof BufferedReader
+          ? (BufferedReader) input : new BufferedReader(input);
+      long seq = 0;
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!put(next.input[0][(int) (seq % next.lanes)], line)) {
+            return seq;
+          }
+          source.processed[0].lazySet(++seq);
+        }
+      } catch (IOException e) {
+        failure.compareAndSet(null, e);
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, new GrokException(
+            "GrokPipeline stage 'decode' failed: " + e.getMessage(), e));
+      }
+      for (int k = 0; k < next.lanes; k++) {
+        put(next.input[0][k], END);
+      }
+      return seq;
+    }
+
+    private void runLane(int stageIndex, int lane) {
+      Stage upstream = stages[stageIndex - 1];
+      Stage stage = stages[stageIndex];
+      Stage downstream = stageIndex + 1 < stages.length ? stages[stageIndex + 1] : null;
+      AtomicLong processed = stage.processed[lane];
+      long seq = lane;
+      try {
+        while (true) {
+          Object item = take(stage.input[(int) (seq % upstream.lanes)][lane]);
+          if (item == null) {
+            return;
+          }
+          if (item == END) {
+            if (downstream != null) {
+              for (int k = 0; k < downstream.lanes; k++) {
+                put(downstream.input[lane][k], END);
+              }
+            }
+            return;
+          }
+          Object out = stage.function.apply(item == NULL ? null : item);
+          processed.lazySet(processed.get() + 1);
+          if (downstream != null
+              && !put(downstream.input[lane][(int) (seq % downstream.lanes)], out == null ? NULL : out)) {
+            return;
+          }
+          seq += stage.lanes;
+        }
+      } catch (Throwable e) {
+        failure.compareAndSet(null, new GrokException(
+            "GrokPipeline stage '" + stage.name + "' failed: " + e.getMessage(), e));
+      }
+    }
+
+    /**
+     * @return the next element, or {@code null} if the pipeline was aborted
+     */
+    private Object take(SpscRingBuffer<Object> ring) {
+      int idle = 0;
+      while (true) {
+        Object item = ring.poll();
+        if (item != null) {
+          return item;
+        }
+        if (failure.get() != null) {
+          return null;
+        }
+        idle = backOff(idle);
+      }
+    }
+
+    /**
+     * @return false if the pipeline was aborted
+     */
+    private boolean put(SpscRingBuffer<Object> ring, Object item) {
+      int idle = 0;
+      while (!ring.offer(item)) {
+        if (failure.get() != null) {
+          return false;
+        }
+        idle = backOff(idle);
+      }
+      return true;
+    }
+
+    private int backOff(int idle) {
+      if (idle < SPIN_TRIES) {
+        return idle + 1;
+      }
+      if (idle < YIELD_TRIES) {
+        Thread.yield();
+        return idle + 1;
+      }
+      LockSupport.parkNanos(PARK_NANOS);
+      return idle;
+    }
+
+    List<StageStats> stats() {
+      long end = endNanos != 0 ? endNanos : System.nanoTime();
+      double seconds = Math.max(1, end - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+      List<StageStats> result = new ArrayList<>(stages.length);
+      long upstream = 0;
+      for (int s = 0; s < stages.length; s++) {
+        Stage stage = stages[s];
+        long processed = stage.processed();
+        // Items handed over by the upstream stage but not processed yet.
+        int queueDepth = s == 0 ? 0 : (int) Math.max(0, upstream - processed);
+        result.add(new StageStats(stage.name, stage.lanes, processed, queueDepth, processed / seconds));
+        upstream = processed;
+      }
+      return result;
+    }
+  }
+
+  private static void joinUninterruptibly(Thread thread) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        thread.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
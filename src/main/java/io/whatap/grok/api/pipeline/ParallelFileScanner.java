@@ -0,0 +1,304 @@
+package io.whatap.grok.api.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import io.whatap.grok.api.GrokFileScanner;
+import io.whatap.grok.api.GrokSet;
+import io.whatap.grok.api.exception.GrokException;
+
+/**
+ * Parses a single large file on several threads: the file is cut into byte ranges (chunks)
+ * aligned to line starts, and every chunk is scanned by a worker with
+ * {@link GrokFileScanner#scan(FileChannel, long, long, GrokFileScanner.Handler)}. Workers
+ * match with their own thread-local matchers, so they share nothing but the file channel.
+ *
+ * <p>Every line is turned into a value by the {@link LineMapper} on the worker, then handed
+ * to the sink:
+ * <ul>
+ *   <li>ordered (default): on the calling thread, in file order. Values of a chunk are
+ *   buffered until every previous chunk was emitted, and at most {@code 2 * parallelism}
+ *   chunks are in flight, which bounds the memory to a few chunks of values;</li>
+ *   <li>unordered: straight from the workers as lines are parsed, so the sink must be thread
+ *   safe. Nothing is buffered.</li>
+ * </ul>
+ *
+ * @param <T> value produced for every line
+ * @since 1.0.2
+ */
+public final class ParallelFileScanner<T> {
+
+  public static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+
+  /**
+   * Turns a parsed line into the value handed to the sink. Called on the worker threads.
+   *
+   * @param <T> value type
+   */
+  @FunctionalInterface
+  public interface LineMapper<T> {
+    /**
+     * @param line : the line, only valid during the call
+     * @param result : match of the line, only valid during the call
+     * @return value for the sink, {@code null} to drop the line
+     */
+    T map(CharSequence line, GrokSet.Result result);
+  }
+
+  private final GrokFileScanner scanner;
+  private final LineMapper<? extends T> mapper;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private long chunkSize = DEFAULT_CHUNK_SIZE;
+  private boolean ordered = true;
+  private ExecutorService executor;
+
+  /**
+   * @param scanner : parses the lines of every chunk
+   * @param mapper : turns every line into a value
+   */
+  public ParallelFileScanner(GrokFileScanner scanner, LineMapper<? extends T> mapper) {
+    this.scanner = scanner;
+    this.mapper = mapper;
+  }
+
+  /**
+   * Number of chunks parsed at the same time, the number of processors by default.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("value must be positive: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Target size of a chunk in bytes; chunks end at the first line end after it.
+   */
+  public void setChunkSize(long bytes) {
+    if (bytes <= 0) {
+      throw new IllegalArgumentException("value must be positive: " + bytes);
+    }
+    this.chunkSize = bytes;
+  }
+
+  /**
+   * Whether the sink receives the values in file order (default) or as soon as they are parsed.
+   */
+  public void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  /**
+   * Executor running the chunks. By default every scan starts {@code parallelism} daemon
+   * threads and stops them when it returns.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Parse every line of {@code file} and hand the mapped values to {@code sink}.
+   * Blocks until the last chunk is done.
+   *
+   * @param file : UTF-8 log file
+   * @param sink : receives the non null values
+   * @return counters of every chunk, in file order
+   * @throws IOException if the file cannot be read
+   * @throws GrokException if a worker fails; the remaining chunks are cancelled
+   */
+  public List<ChunkStats> scan(Path file, Consumer<? super T> sink) throws IOException {
+    ExecutorService workers = executor;
+    boolean ownExecutor = workers == null;
+    if (ownExecutor) {
+      AtomicInteger threads = new AtomicInteger();
+      workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+        Thread thread = new Thread(runnable, "ParallelFileScanner-" + threads.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = split(channel, chunkSize);
+      return ordered
+          ? scanOrdered(workers, channel, bounds, sink)
+          : scanUnordered(workers, channel, bounds, sink);
+    } finally {
+      if (ownExecutor) {
+        workers.shutdownNow();
+      }
+    }
+  }
+
+  private List<ChunkStats> scanOrdered(ExecutorService workers, FileChannel channel, long[] bounds,
+      Consumer<? super T> sink) throws IOException {
+    int chunks = bounds.length - 1;
+    List<ChunkStats> stats = new ArrayList<>(chunks);
+    ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+    int submitted = 0;
+    try {
+      while (stats.size() < chunks) {
+        while (submitted < chunks && inFlight.size() < 2 * parallelism) {
+          Chunk chunk = new Chunk(submitted, bounds[submitted], bounds[submitted + 1]);
+          List<T> values = new ArrayList<>();
+          inFlight.add(workers.submit(task(channel, chunk, values::add, values)));
+          submitted++;
+        }
+        Chunk chunk = await(inFlight.poll());
+        for (T value : chunk.values) {
+          sink.accept(value);
+        }
+        stats.add(chunk.stats());
+      }
+    } finally {
+      cancel(inFlight);
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  private List<ChunkStats> scanUnordered(ExecutorService workers, FileChannel channel, long[] bounds,
+      Consumer<? super T> sink) throws IOException {
+    int chunks = bounds.length - 1;
+    ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+    List<ChunkStats> stats = new ArrayList<>(chunks);
+    try {
+      for (int i = 0; i < chunks; i++) {
+        pending.add(workers.submit(task(channel, new Chunk(i, bounds[i], bounds[i + 1]), sink, null)));
+      }
+      while (!pending.isEmpty()) {
+        stats.add(await(pending.poll()).stats());
+      }
+    } finally {
+      cancel(pending);
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  private Callable<Chunk> task(FileChannel channel, Chunk chunk, Consumer<? super T> out, List<T> values) {
+    return () -> {
+      long start = System.nanoTime();
+      long[] matched = new long[1];
+      chunk.lines = scanner.scan(channel, chunk.offset, chunk.end, (number, line, result) -> {
+        if (result.isMatched()) {
+          matched[0]++;
+        }
+        T value = mapper.map(line, result);
+        if (value != null) {
+          out.accept(value);
+        }
+      });
+      chunk.matched = matched[0];
+      chunk.nanos = System.nanoTime() - start;
+      chunk.values = values;
+      return chunk;
+    };
+  }
+
+  private Chunk await(Future<Chunk> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GrokException("ParallelFileScanner interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof GrokException) {
+        throw (GrokException) cause;
+      }
+      throw new GrokException("ParallelFileScanner chunk failed: " + cause.getMessage(), cause);
+    }
+  }
+
+  private void cancel(ArrayDeque<Future<Chunk>> futures) {
+    for (Future<Chunk> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Cut the file into ranges of about {@code chunkSize} bytes, every range starting at a
+   * line start.
+   *
+   * @return the range bounds: range {@code i} is {@code [bounds[i], bounds[i + 1])}
+   */
+  static long[] split(FileChannel channel, long chunkSize) throws IOException {
+    long size = channel.size();
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    long position = 0;
+    while (size - position > chunkSize) {
+      long next = lineStartAfter(channel, position + chunkSize, size, buffer);
+      if (next >= size) {
+        break;
+      }
+      bounds.add(next);
+      position = next;
+    }
+    bounds.add(size);
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return result;
+  }
+
+  /**
+   * @return the first line start at or after {@code position}, {@code size} if there is none
+   */
+  private static long lineStartAfter(FileChannel channel, long position, long size, ByteBuffer buffer)
+      throws IOException {
+    // position is a line start when the byte before it ends a line
+    long read = position - 1;
+    while (read < size) {
+      buffer.clear();
+      int count = channel.read(buffer, read);
+      if (count <= 0) {
+        break;
+      }
+      for (int i = 0; i < count; i++) {
+        if (buffer.get(i) == '\n') {
+          return read + i + 1;
+        }
+      }
+      read += count;
+    }
+    return size;
+  }
+
+  private final class Chunk {
+    final int index;
+    final long offset;
+    final long end;
+    long lines;
+    long matched;
+    long nanos;
+    List<T> values;
+
+    Chunk(int index, long offset, long end) {
+      this.index = index;
+      this.offset = offset;
+      this.end = end;
+    }
+
+    ChunkStats stats() {
+      return new ChunkStats(index, offset, end - offset, lines, matched, nanos);
+    }
+  }
+}
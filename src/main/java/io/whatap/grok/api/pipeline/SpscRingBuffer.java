@@ -0,0 +1,86 @@
+package io.whatap.grok.api.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded single-producer/single-consumer ring buffer.
+ *
+ * Exactly one thread may call {@link #offer(Object)} and exactly one (possibly other) thread
+ * may call {@link #poll()}. Both operations are wait-free; a full or empty buffer is reported
+ * to the caller, which decides how to back off.
+ *
+ * @param <E> element type
+ */
+public final class SpscRingBuffer<E> {
+
+  private final AtomicReferenceArray<E> buffer;
+  private final int mask;
+  /** Next slot to read, written by the consumer only. */
+  private final AtomicLong head = new AtomicLong();
+  /** Next slot to write, written by the producer only. */
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * @param capacity minimum capacity, rounded up to a power of two
+   */
+  public SpscRingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.buffer = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Producer side: append an element.
+   *
+   * @return false if the buffer is full
+   */
+  public boolean offer(E element) {
+    if (element == null) {
+      throw new NullPointerException();
+    }
+    long t = tail.get();
+    if (t - head.get() > mask) {
+      return false;
+    }
+    buffer.lazySet((int) t & mask, element);
+    tail.lazySet(t + 1);
+    return true;
+  }
+
+  /**
+   * Consumer side: remove the oldest element.
+   *
+   * @return the element, or {@code null} if the buffer is empty
+   */
+  public E poll() {
+    long h = head.get();
+    if (h >= tail.get()) {
+      return null;
+    }
+    int index = (int) h & mask;
+    E element = buffer.get(index);
+    buffer.lazySet(index, null);
+    head.lazySet(h + 1);
+    return element;
+  }
+
+  /**
+   * Approximate number of elements, safe to call from any thread.
+   */
+  public int size() {
+    long h = head.get();
+    long t = tail.get();
+    return (int) Math.max(0, Math.min(t - h, capacity()));
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+}
@@ -0,0 +1,27 @@
+package io.whatap.grok.api.pipeline;
+
+/**
+ * Point in time counters of one {@link GrokPipeline} stage.
+ */
+public final class StageStats {
+  public final String name;
+  public final int parallelism;
+  public final long processed;
+  public final int queueDepth;
+  public final double throughputPerSecond;
+
+  public StageStats(String name, int parallelism, long processed, int queueDepth,
+      double throughputPerSecond) {
+    this.name = name;
+    this.parallelism = parallelism;
+    this.processed = processed;
+    this.queueDepth = queueDepth;
+    this.throughputPerSecond = throughputPerSecond;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("StageStats{%s x%d, processed=%d, queue=%d, %.0f/s}",
+        name, parallelism, processed, queueDepth, throughputPerSecond);
+  }
+}
@@ -0,0 +1,127 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.whatap.grok.api.engine.JavaRegexEngine;
+import io.whatap.grok.api.engine.RegexEngine;
+import io.whatap.grok.api.engine.Re2jEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnchoredMatchTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  @Test
+  public void fullAndPrefixModes() {
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new JavaRegexEngine()}) {
+      Grok grok = compiler.compile("%{WORD:verb} %{INT:status}", engine);
+
+      Match match = grok.matchFull("GET 200");
+      assertEquals("GET", match.capture().get("verb"));
+      assertTrue(grok.matchFull("GET 200 trailing").isNull());
+      assertTrue(grok.matchFull("> GET 200").isNull());
+
+      match = grok.matchPrefix("GET 200 trailing");
+      assertEquals("200", match.capture().get("status"));
+      assertEquals(0, match.getStart());
+      assertTrue(grok.matchPrefix("> GET 200").isNull());
+
+      assertFalse(grok.match("> GET 200").isNull());
+      assertFalse(grok.isAnchored());
+    }
+  }
+
+  @Test
+  public void implicitAnchoring() {
+    compiler.setImplicitAnchoring(true);
+    Grok anchored = compiler.compile("%{WORD:verb} %{INT:status}");
+    assertTrue(anchored.isAnchored());
+    assertTrue(anchored.match("> GET 200").isNull());
+    assertEquals("200", anchored.capture("GET 200 trailing").get("status"));
+    assertFalse(anchored.matchInto("> GET 200", (index, name, source, start, end) -> { }));
+    assertFalse(anchored.captureColumnar(Collections.singletonList("> GET 200")).isMatched(0));
+
+    compiler.setImplicitAnchoring(false);
+    Grok unanchored = compiler.compile("%{WORD:verb} %{INT:status}");
+    assertFalse(unanchored.isAnchored());
+    assertFalse(unanchored.match("> GET 200").isNull());
+  }
+
+  /**
+   * Miss latency of find against anchored matching on the sample corpora, for both engines.
+   * Every pattern is run over ~2 KB lines built from the samples of other patterns.
+   */
+  @Test
+  public void missLatencyBenchmark() throws Exception {
+    PatternRepository repo = PatternRepository.getInstance();
+    List<String> names = new ArrayList<>();
+    List<String> lines = new ArrayList<>();
+    for (PatternType type : PatternType.values()) {
+      for (Map.Entry<String, String> sample : repo.getSampleLogs(type).entrySet()) {
+        names.add(sample.getKey());
+        StringBuilder line = new StringBuilder(sample.getValue());
+        while (line.length() < 2048) {
+          line.append(' ').append(sample.getValue());
+        }
+        lines.add(line.toString());
+      }
+    }
+
+    compiler.setPrefilterEnabled(false);
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new JavaRegexEngine()}) {
+      long[] nanos = new long[3];
+      long misses = 0;
+      for (int i = 0; i < names.size() && i < 120; i++) {
+        Grok grok;
+        try {
+          grok = compiler.compile("%{" + names.get(i) + "}", engine);
+        } catch (Exception e) {
+          continue;
+        }
+        String line = lines.get((i + names.size() / 2) % lines.size());
+        if (!grok.match(line).isNull()) {
+          continue;
+        }
+        misses++;
+        // first pass warms up
+        for (int round = 0; round < 2; round++) {
+          long start = System.nanoTime();
+          grok.match(line);
+          long find = System.nanoTime();
+          grok.matchPrefix(line);
+          long prefix = System.nanoTime();
+          grok.matchFull(line);
+          long full = System.nanoTime();
+          if (round == 1) {
+            nanos[0] += find - start;
+            nanos[1] += prefix - find;
+            nanos[2] += full - prefix;
+          }
+        }
+      }
+      assertTrue(misses > 0);
+      System.out.printf("%s miss latency over %d patterns: find %.1f us, lookingAt %.1f us, matches %.1f us%n",
+          engine.getName(), misses, micros(nanos[0], misses), micros(nanos[1], misses),
+          micros(nanos[2], misses));
+    }
+  }
+
+  private static double micros(long nanos, long count) {
+    return nanos / (double) count / TimeUnit.MICROSECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,193 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.whatap.grok.api.engine.ByteMatcher;
+import io.whatap.grok.api.engine.HybridEngine;
+import io.whatap.grok.api.engine.JavaRegexEngine;
+import io.whatap.grok.api.engine.Re2jEngine;
+import io.whatap.grok.api.engine.RegexEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteMatchTest {
+
+  private static final String PATTERN = "%{WORD:verb} %{NOTSPACE:path} user=%{DATA:user} took=%{INT:took}ms";
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  private static byte[] utf8(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void byteMatchCapturesLikeTextMatch() {
+    String[] lines = {
+        "GET /index.html user=alice took=12ms",
+        "POST /검색?q=로그 user=김철수 took=7ms",
+        "> PUT /😀/emoji user=ü took=3ms trailing",
+        "no match here"
+    };
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new JavaRegexEngine(), new HybridEngine(0L, 1024)}) {
+      Grok grok = compiler.compile(PATTERN, engine);
+      for (String line : lines) {
+        Map<String, Object> expected = grok.match(line).capture();
+        Match match = grok.match(utf8(line), 0, utf8(line).length);
+        assertEquals(engine.getName() + " on " + line, expected, match.capture());
+        assertEquals(!expected.isEmpty(), match.isByteMatch());
+      }
+    }
+  }
+
+  @Test
+  public void offsetsAreBytesRelativeToTheRange() {
+    Grok grok = compiler.compile(PATTERN, new Re2jEngine());
+    String line = "DELETE /é user=ß took=1ms";
+    byte[] buffer = utf8("xxx\n" + line + "\nyyy");
+    Match match = grok.match(buffer, 4, utf8(line).length);
+
+    assertEquals(0, match.getStart());
+    assertEquals(utf8(line).length, match.getEnd());
+    assertEquals(line, match.getSubject().toString());
+    GrokField path = field(grok, "path");
+    assertEquals(utf8("DELETE ").length, match.getStart(path.getIndex()));
+    assertEquals(utf8("DELETE /é").length, match.getEnd(path.getIndex()));
+    assertEquals("/é", match.getString(path.getIndex()));
+    assertEquals("/é", match.getMatch().group(path.getGroup()));
+  }
+
+  private static GrokField field(Grok grok, String name) {
+    for (GrokField field : grok.getFields()) {
+      if (field.getName().equals(name)) {
+        return field;
+      }
+    }
+    throw new AssertionError(name);
+  }
+
+  @Test
+  public void lookaroundFallsBackToDecodingMatcher() {
+    Grok grok = compiler.compile("(?<=id=)%{INT:id}(?!\\d)", new HybridEngine(0L, 1024));
+    assertEquals("java_fallback", grok.getEngineName());
+    String line = "réq id=42 done";
+    Match match = grok.match(utf8(line), 0, utf8(line).length);
+    assertEquals("42", match.capture().get("id"));
+    assertEquals(utf8("réq id=").length, match.getStart());
+  }
+
+  @Test
+  public void byteBuffers() {
+    Grok grok = compiler.compile(PATTERN, new Re2jEngine());
+    String line = "GET /a user=한 took=5ms";
+    byte[] bytes = utf8("##" + line);
+
+    ByteBuffer heap = ByteBuffer.wrap(bytes);
+    heap.position(2);
+    assertEquals("한", grok.match(heap).capture().get("user"));
+    assertEquals(2, heap.position());
+
+    ByteBuffer sliced = ByteBuffer.wrap(bytes, 2, bytes.length - 2).slice();
+    assertEquals("5", grok.match(sliced).capture().get("took").toString());
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    direct.position(2);
+    assertEquals("/a", grok.match(direct).capture().get("path"));
+    assertEquals(2, direct.position());
+  }
+
+  @Test
+  public void invalidUtf8IsMatchedAsReplacementCharacters() {
+    byte[] line = {'a', 'b', (byte) 0xC3, ' ', 'i', 'd', '=', '9', (byte) 0xFF};
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new JavaRegexEngine()}) {
+      Grok grok = compiler.compile("id=%{INT:id}", engine);
+      Match match = grok.match(line, 0, line.length);
+      assertEquals(engine.getName(), "9", match.capture().get("id"));
+      assertEquals(engine.getName(), 4, match.getStart());
+      assertEquals(engine.getName(), 8, match.getEnd());
+    }
+  }
+
+  @Test
+  public void decodingMatcherHandlesSupplementaryCharacters() {
+    ByteMatcher matcher = new JavaRegexEngine().compile("(b+)").byteMatcher();
+    byte[] input = utf8("😀😀bb😀");
+    matcher.reset(input, 0, input.length);
+    assertTrue(matcher.find());
+    assertEquals(8, matcher.start(1));
+    assertEquals(10, matcher.end(1));
+    assertFalse(matcher.find());
+  }
+
+  @Test
+  public void prefilterAndAnchoringApplyToBytes() {
+    Grok grok = compiler.compile(PATTERN, new Re2jEngine());
+    byte[] line = utf8("GET /a user=b took=5s");
+    assertTrue(grok.match(line, 0, line.length).isNull());
+    assertEquals(1, grok.getPrefilterRejects());
+
+    compiler.setImplicitAnchoring(true);
+    Grok anchored = compiler.compile(PATTERN, new Re2jEngine());
+    byte[] prefixed = utf8("> GET /a user=b took=5ms");
+    assertTrue(anchored.match(prefixed, 0, prefixed.length).isNull());
+    assertFalse(anchored.match(prefixed, 2, prefixed.length - 2).isNull());
+  }
+
+  @Test
+  public void nullAndEmptyInputs() {
+    Grok grok = compiler.compile(PATTERN);
+    assertTrue(grok.match((byte[]) null, 0, 0).isNull());
+    assertTrue(grok.match((ByteBuffer) null).isNull());
+    assertTrue(grok.match(new byte[0], 0, 0).isNull());
+    assertFalse(Match.EMPTY.isByteMatch());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void rangeOutsideTheArrayIsRejected() {
+    compiler.compile(PATTERN).match(new byte[4], 2, 3);
+  }
+
+  @Test
+  public void byteMatchAvoidsDecodingTheLine() {
+    Grok grok = compiler.compile(PATTERN, new Re2jEngine());
+    List<byte[]> lines = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      lines.add(utf8("GET /item/" + i + " user=사용자" + i + " took=" + (i % 97) + "ms"));
+    }
+    int verb = field(grok, "verb").getIndex();
+    long decodeNanos = 0;
+    long byteNanos = 0;
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      for (byte[] line : lines) {
+        grok.match(new String(line, StandardCharsets.UTF_8)).getString(verb);
+      }
+      long middle = System.nanoTime();
+      for (byte[] line : lines) {
+        grok.match(line, 0, line.length).getString(verb);
+      }
+      if (round > 1) {
+        decodeNanos += middle - start;
+        byteNanos += System.nanoTime() - middle;
+      }
+    }
+    System.out.printf("byte match: decode+match %.1f ms, byte match %.1f ms over %d lines%n",
+        decodeNanos / (double) TimeUnit.MILLISECONDS.toNanos(1),
+        byteNanos / (double) TimeUnit.MILLISECONDS.toNanos(1), lines.size() * 3);
+  }
+}
@@ -0,0 +1,124 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CaptureSinkTest {
+
+  private static final String APACHE_LOG = "112.169.19.192 - - [06/Mar/2013:01:36:30 +0900] "
+      + "\"GET / HTTP/1.1\" 200 44346 \"-\" \"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_8_2) "
+      + "AppleWebKit/537.22 (KHTML, like Gecko) Chrome/25.0.1364.152 Safari/537.22\"";
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+  }
+
+  @Test
+  public void matchIntoReportsSameFieldsAsCapture() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    Map<String, Object> expected = grok.capture(APACHE_LOG);
+
+    Map<String, Object> actual = new LinkedHashMap<>();
+    boolean matched = grok.matchInto(APACHE_LOG, (index, name, source, start, end) -> {
+      if (!actual.containsKey(name)) {
+        actual.put(name, start < 0 ? null : source.subSequence(start, end).toString());
+      }
+    });
+
+    assertTrue(matched);
+    assertEquals(expected.keySet(), actual.keySet());
+    for (String key : new String[] {"clientip", "log_timestamp", "verb", "request", "response", "bytes"}) {
+      assertEquals(key, expected.get(key), actual.get(key));
+    }
+    assertEquals("200", actual.get("response"));
+    assertEquals("GET", actual.get("verb"));
+  }
+
+  @Test
+  public void matchIntoSkipsUnwantedAndStripsTypeSuffix() {
+    compiler.register("foo", "\\w+");
+    Grok grok = compiler.compile("%{foo:UNWANTED} %{NUMBER:bytes:int}");
+
+    List<String> names = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    assertTrue(grok.matchInto("hello 42", (index, name, source, start, end) -> {
+      names.add(name);
+      values.add(source.subSequence(start, end).toString());
+    }));
+
+    assertEquals("bytes", names.get(0));
+    assertEquals("42", values.get(0));
+    assertFalse(names.contains("UNWANTED"));
+  }
+
+  @Test
+  public void matchIntoReportsMissingGroupsWithNegativeOffsets() {
+    Grok grok = compiler.compile("%{WORD:word}(?: %{NUMBER:num})?");
+
+    List<Integer> starts = new ArrayList<>();
+    assertTrue(grok.matchInto("hello", (index, name, source, start, end) -> starts.add(start)));
+    assertEquals(-1, (int) starts.get(starts.size() - 1));
+  }
+
+  @Test
+  public void matchIntoReturnsFalseOnMiss() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    assertFalse(grok.matchInto("not an access log", (index, name, source, start, end) -> {
+      throw new AssertionError("sink must not be called on a miss");
+    }));
+    assertFalse(grok.matchInto(null, (index, name, source, start, end) -> { }));
+  }
+
+  @Test
+  public void matchIntoAllocatesLessThanCapture() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    final int[] sum = new int[1];
+    CaptureSink sink = (index, name, source, start, end) -> sum[0] += end - start;
+    int iterations = 20000;
+
+    for (int i = 0; i < iterations; i++) {
+      grok.matchInto(APACHE_LOG, sink);
+      grok.capture(APACHE_LOG);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long before = mx.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      grok.matchInto(APACHE_LOG, sink);
+    }
+    long sinkBytes = mx.getThreadAllocatedBytes(threadId) - before;
+
+    before = mx.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      grok.capture(APACHE_LOG);
+    }
+    long captureBytes = mx.getThreadAllocatedBytes(threadId) - before;
+
+    System.out.println("matchInto: " + sinkBytes / iterations + " B/op, capture: "
+        + captureBytes / iterations + " B/op");
+    assertTrue(sum[0] > 0);
+    assertTrue("matchInto should allocate less than capture", sinkBytes < captureBytes);
+    // a pooled matcher and a reused sink leave nothing per match but measurement noise
+    assertTrue("matchInto allocated " + sinkBytes / iterations + " B/op", sinkBytes / iterations < 16);
+  }
+}
@@ -0,0 +1,123 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnarBatchTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+  }
+
+  @Test
+  public void typedFieldsAreStoredInPrimitiveColumns() {
+    Grok grok = compiler.compile(
+        "%{WORD:verb} %{INT:status:int} %{NUMBER:bytes:long} %{NUMBER:took:double} %{WORD:ok:boolean}",
+        true);
+    ColumnarBatch batch = grok.captureColumnar(Arrays.asList(
+        "GET 200 1024 0.25 true",
+        "not a match",
+        "POST 500 99999999999 1.5 false"));
+
+    assertEquals(3, batch.size());
+    assertTrue(batch.isMatched(0));
+    assertFalse(batch.isMatched(1));
+    assertTrue(batch.isMatched(2));
+    assertEquals(Arrays.asList("verb", "status", "bytes", "took", "ok"), batch.getColumnNames());
+
+    ColumnarBatch.Column status = batch.getColumn("status");
+    assertEquals(ColumnarBatch.Storage.INT, status.getStorage());
+    assertEquals(200, status.getInts()[0]);
+    assertEquals(500, status.getInts()[2]);
+    assertFalse(status.isValid(1));
+
+    assertEquals(99999999999L, batch.getColumn("bytes").getLongs()[2]);
+    assertEquals(0.25, batch.getColumn("took").getDoubles()[0], 0.0);
+    assertTrue(batch.getColumn("ok").getBooleans()[0]);
+    assertFalse(batch.getColumn("ok").getBooleans()[2]);
+    assertArrayEquals(new String[] {"GET", null, "POST"}, batch.getColumn("verb").getStrings());
+  }
+
+  @Test
+  public void conversionFailureClearsValidity() {
+    Grok grok = compiler.compile("%{WORD:status:int}", true);
+    ColumnarBatch batch = grok.captureColumnar(Arrays.asList("12", "abc"));
+
+    ColumnarBatch.Column status = batch.getColumn("status");
+    assertTrue(status.isValid(0));
+    assertTrue(batch.isMatched(1));
+    assertFalse(status.isValid(1));
+  }
+
+  @Test
+  public void datetimeIsStoredAsEpochMillis() {
+    Grok grok = compiler.compile("%{DATA:ts;date;yyyy-MM-dd HH:mm:ss}$", ZoneOffset.UTC, true);
+    ColumnarBatch batch = grok.captureColumnar(Arrays.asList("2015-07-31 01:02:03"));
+
+    ColumnarBatch.Column ts = batch.getColumn("ts");
+    assertEquals(ColumnarBatch.Storage.EPOCH_MILLIS, ts.getStorage());
+    assertEquals(Instant.parse("2015-07-31T01:02:03Z").toEpochMilli(), ts.getLongs()[0]);
+  }
+
+  @Test
+  public void sameNameFieldsOfDifferentTypesAreStoredAsText() {
+    Grok grok = compiler.compile("^(%{INT:value:int}|%{WORD:value})$", true);
+    ColumnarBatch batch = grok.captureColumnar(Arrays.asList("42", "abc"));
+
+    ColumnarBatch.Column value = batch.getColumn("value");
+    assertEquals(Converter.Type.STRING, value.getType());
+    assertEquals(ColumnarBatch.Storage.STRING, value.getStorage());
+    assertArrayEquals(new String[] {"42", "abc"}, value.getStrings());
+  }
+
+  @Test
+  public void columnsAgreeWithMapCapture() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    List<String> logs = new ArrayList<>();
+    for (int i = 0; i < 130; i++) {
+      logs.add("10.0.0." + i + " - - [06/Mar/2013:01:36:30 +0900] \"GET /" + i
+          + " HTTP/1.1\" 200 " + (i * 10) + " \"-\" \"curl\"");
+    }
+    ColumnarBatch batch = grok.captureColumnar(logs);
+
+    for (int row = 0; row < logs.size(); row++) {
+      Map<String, Object> expected = grok.capture(logs.get(row));
+      assertTrue(batch.isMatched(row));
+      assertEquals(expected.get("clientip"), batch.getColumn("clientip").getStrings()[row]);
+      assertEquals(expected.get("request"), batch.getColumn("request").getStrings()[row]);
+      assertEquals(expected.get("agent"), batch.getColumn("agent").getStrings()[row]);
+    }
+    assertFalse(batch.getColumn("rawrequest").isValid(0));
+    assertNull(batch.getColumn("rawrequest").getStrings()[0]);
+  }
+
+  @Test
+  public void wrongStorageAccessIsRejected() {
+    Grok grok = compiler.compile("%{INT:status:int}", true);
+    ColumnarBatch.Column status = grok.captureColumnar(Arrays.asList("1")).getColumn("status");
+    try {
+      status.getStrings();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class DateConverterTest {
+
+  private static final ZoneId SEOUL = ZoneId.of("Asia/Seoul");
+  private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+  /**
+   * Conversion as done before the hand written parsers, or the exception class name.
+   */
+  private static Object reference(DateTimeFormatter formatter, ZoneId zone, String value) {
+    try {
+      TemporalAccessor dt = formatter.parseBest(value.trim(), ZonedDateTime::from, LocalDateTime::from,
+          OffsetDateTime::from, Instant::from, LocalDate::from);
+      if (dt instanceof ZonedDateTime) {
+        return ((ZonedDateTime) dt).toInstant();
+      } else if (dt instanceof LocalDateTime) {
+        return ((LocalDateTime) dt).atZone(zone).toInstant();
+      } else if (dt instanceof LocalDate) {
+        return ((LocalDate) dt).atStartOfDay(zone).toInstant();
+      }
+      return dt;
+    } catch (RuntimeException e) {
+      return e.getClass().getName();
+    }
+  }
+
+  private static Object convert(Converter.IConverter<Instant> converter, String value) {
+    try {
+      return converter.convert(value);
+    } catch (RuntimeException e) {
+      return e.getClass().getName();
+    }
+  }
+
+  private static Converter.IConverter<Instant> converter(String pattern, ZoneId zone) {
+    return new Converter.DateConverter().newConverter(pattern, zone);
+  }
+
+  @Test
+  public void isoValuesAgreeWithTheFormatter() {
+    Converter.IConverter<Instant> converter = new Converter.DateConverter();
+    String[] values = {
+        "2024-01-02T10:00:00Z", "2024-01-02T10:00:00.123Z", "2024-01-02T10:00:00.123456789+09:00",
+        "2024-01-02T10:00:00.1-05:30", "2024-01-02T10:00", "2024-01-02T10:00:59", " 2024-01-02T10:00:00Z ",
+        "2024-02-29T23:59:59Z", "2023-02-29T10:00:00Z", "2024-04-31T10:00:00Z", "2024-13-01T10:00:00Z",
+        "2024-01-02T24:00:00Z", "2024-01-02T10:60:00Z", "2024-01-02T10:00:60Z", "2024-01-02t10:00:00z",
+        "2024-01-02T10:00:00+09:00[Asia/Seoul]", "2024-01-02T10:00:00.Z", "2024-01-02T10:00:00.1234567891Z",
+        "2024-01-02T10:00:00-00:00", "2024-01-02T10:00:00+18:00", "2024-01-02T10:00:00+18:01",
+        "2024-01-02T10:00:00+0900", "2024-01-02 10:00:00", "0000-01-01T00:00:00Z", "+12024-01-02T10:00:00Z",
+        "1969-12-31T23:59:59.999Z", "2024-01-02", "", "garbage"};
+    for (String value : values) {
+      assertEquals(value, reference(DateTimeFormatter.ISO_DATE_TIME, ZoneOffset.UTC, value),
+          convert(converter, value));
+    }
+  }
+
+  @Test
+  public void patternValuesAgreeWithTheFormatter() {
+    String[][] cases = {
+        {"dd/MMM/yyyy:HH:mm:ss Z", "10/Oct/2000:13:55:36 -0700", "10/Oct/2000:13:55:36 +0000",
+            "29/Feb/2023:13:55:36 -0700", "10/oct/2000:13:55:36 -0700", "10/Oct/2000:13:55:36 -0000",
+            "10/Oct/2000:13:55:36 +1900", "10/Oct/2000:13:55:36", "1/Oct/2000:13:55:36 -0700",
+            "31/Apr/2000:13:55:36 +0100", "10/Oct/0000:13:55:36 +0100"},
+        {"yyyy-MM-dd HH:mm:ss,SSS", "2024-01-02 10:00:00,123", "2024-01-02 10:00:00,12",
+            "2024-03-31 02:30:00,000", "2024-10-27 02:30:00,000"},
+        {"yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "2024-01-02T10:00:00.123Z", "2024-01-02T10:00:00.123+09:00",
+            "2024-01-02T10:00:00.123+0900"},
+        {"MMM dd yyyy HH:mm:ss", "Jan 02 2024 10:00:00", "Sep 30 2024 23:59:59", "Foo 02 2024 10:00:00"},
+        {"yyyyMMddHHmm", "202401021000", "2024010210001"},
+        {"MMM dd HH:mm:ss", "Jan 02 10:00:00"},
+        {"dd.MM.yy HH:mm", "02.01.24 10:00"},
+    };
+    for (ZoneId zone : new ZoneId[] {ZoneOffset.UTC, ZoneOffset.ofHours(-3), SEOUL, PARIS}) {
+      for (String[] test : cases) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(test[0]);
+        Converter.IConverter<Instant> converter = converter(test[0], zone);
+        for (int i = 1; i < test.length; i++) {
+          assertEquals(test[0] + " " + test[i] + " " + zone, reference(formatter, zone, test[i]),
+              convert(converter, test[i]));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void supportedPatterns() {
+    assertNotNull(TimestampParser.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH, ZoneOffset.UTC));
+    assertNotNull(TimestampParser.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", Locale.ENGLISH, ZoneOffset.UTC));
+    // no year, two digits year, optional section, variable width day
+    assertNull(TimestampParser.ofPattern("MMM dd HH:mm:ss", Locale.ENGLISH, ZoneOffset.UTC));
+    assertNull(TimestampParser.ofPattern("dd.MM.yy HH:mm", Locale.ENGLISH, ZoneOffset.UTC));
+    assertNull(TimestampParser.ofPattern("yyyy-MM-dd HH:mm[:ss]", Locale.ENGLISH, ZoneOffset.UTC));
+    assertNull(TimestampParser.ofPattern("MMM d yyyy HH:mm:ss", Locale.ENGLISH, ZoneOffset.UTC));
+    // fraction without seconds, repeated field
+    assertNull(TimestampParser.ofPattern("yyyy-MM-dd HH:mm.SSS", Locale.ENGLISH, ZoneOffset.UTC));
+    assertNull(TimestampParser.ofPattern("yyyy-MM-dd HH:mm HH", Locale.ENGLISH, ZoneOffset.UTC));
+  }
+
+  @Test
+  public void randomTimestampsAgreeWithTheFormatter() {
+    Random random = new Random(3);
+    String httpPattern = "dd/MMM/yyyy:HH:mm:ss Z";
+    DateTimeFormatter http = DateTimeFormatter.ofPattern(httpPattern);
+    for (ZoneId zone : new ZoneId[] {ZoneOffset.UTC, PARIS}) {
+      Converter.IConverter<Instant> iso = new Converter.DateConverter();
+      Converter.IConverter<Instant> httpConverter = converter(httpPattern, zone);
+      Converter.IConverter<Instant> local = converter("yyyy-MM-dd HH:mm:ss", zone);
+      DateTimeFormatter localFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+      for (int i = 0; i < 50_000; i++) {
+        LocalDateTime time = LocalDateTime.of(1900 + random.nextInt(250), 1 + random.nextInt(12),
+            1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60),
+            random.nextInt(1000) * 1_000_000);
+        ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(37) - 18) * 1800);
+        String isoValue = time.atOffset(offset).toString();
+        assertEquals(isoValue, reference(DateTimeFormatter.ISO_DATE_TIME, ZoneOffset.UTC, isoValue),
+            convert(iso, isoValue));
+        String httpValue = http.format(time.atOffset(offset));
+        assertEquals(httpValue, reference(http, zone, httpValue), convert(httpConverter, httpValue));
+        String localValue = localFormatter.format(time);
+        assertEquals(localValue, reference(localFormatter, zone, localValue), convert(local, localValue));
+      }
+    }
+  }
+
+  @Test(expected = DateTimeParseException.class)
+  public void malformedValuesStillFail() {
+    new Converter.DateConverter().convert("2024-01-02 10:00:00");
+  }
+
+  @Test
+  public void convertersAreThreadSafe() throws Exception {
+    Converter.IConverter<Instant> converter = converter("dd/MMM/yyyy:HH:mm:ss Z", PARIS);
+    List<Thread> threads = new ArrayList<>();
+    List<Throwable> errors = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int minute = t;
+      Thread thread = new Thread(() -> {
+        String value = String.format("10/Oct/2000:13:%02d:36 -0700", minute);
+        Instant expected = OffsetDateTime.of(2000, 10, 10, 13, minute, 36, 0, ZoneOffset.ofHours(-7)).toInstant();
+        for (int i = 0; i < 100_000; i++) {
+          if (!expected.equals(converter.convert(value))) {
+            synchronized (errors) {
+              errors.add(new AssertionError(value));
+            }
+            return;
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(new ArrayList<Throwable>(), errors);
+  }
+
+  @Test
+  public void handParsersVersusFormatter() {
+    String pattern = "dd/MMM/yyyy:HH:mm:ss Z";
+    DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+    Converter.IConverter<Instant> converter = converter(pattern, ZoneOffset.UTC);
+    List<String> values = new ArrayList<>();
+    LocalDateTime time = LocalDateTime.of(2024, 1, 2, 10, 0);
+    for (int i = 0; i < 100_000; i++) {
+      // a few lines per second, as in an access log
+      values.add(formatter.format(time.plusSeconds(i / 4).atOffset(ZoneOffset.ofHours(9))));
+    }
+    long formatterNanos = 0;
+    long converterNanos = 0;
+    long sink = 0;
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      for (String value : values) {
+        sink += ((Instant) reference(formatter, ZoneOffset.UTC, value)).getEpochSecond();
+      }
+      long middle = System.nanoTime();
+      for (String value : values) {
+        sink -= converter.convert(value).getEpochSecond();
+      }
+      if (round > 1) {
+        formatterNanos += middle - start;
+        converterNanos += System.nanoTime() - middle;
+      }
+    }
+    assertEquals(0, sink);
+    System.out.printf("HTTPDATE: formatter %d ms, date converter %d ms%n",
+        TimeUnit.NANOSECONDS.toMillis(formatterNanos), TimeUnit.NANOSECONDS.toMillis(converterNanos));
+  }
+}
@@ -0,0 +1,307 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.whatap.grok.api.engine.JavaRegexEngine;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the admission policy, weight bound, maintenance and statistics of {@link GrokCache}.
+ *
+ * @since 1.0.2
+ */
+public class GrokCacheTest {
+
+    private GrokCompiler compiler;
+    private Grok grok;
+
+    @Before
+    public void setUp() throws Exception {
+        compiler = GrokCompiler.newInstance();
+        compiler.registerDefaultPatterns();
+        grok = compiler.compile("%{IP:client} %{WORD:verb}");
+    }
+
+    @Test
+    public void oneOffPatternsDoNotFlushFrequentOnes() {
+        GrokCache cache = new GrokCache(100);
+        for (int i = 0; i < 50; i++) {
+            cache.putGrok("hot" + i, grok);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.getGrok("hot" + i));
+            }
+        }
+        for (int i = 0; i < 10_000; i++) {
+            // the hot patterns stay in use while one-off patterns stream through
+            assertNotNull(cache.getGrok("hot" + (i % 50)));
+            String pattern = "once" + i;
+            assertNull(cache.getGrok(pattern));
+            cache.putGrok(pattern, grok);
+        }
+        assertTrue(cache.getStats().grokCacheSize <= 100);
+        for (int i = 0; i < 50; i++) {
+            assertSame("hot" + i, grok, cache.getGrok("hot" + i));
+        }
+        cache.shutdown();
+    }
+
+    @Test
+    public void patternRequestedAgainIsAdmitted() {
+        GrokCache cache = new GrokCache(10);
+        for (int i = 0; i < 20; i++) {
+            cache.getGrok("p" + i);
+            cache.putGrok("p" + i, grok);
+        }
+        // requested a few more times, it wins over the entries requested once
+        for (int i = 0; i < 3; i++) {
+            cache.getGrok("late");
+        }
+        cache.putGrok("late", grok);
+        cache.putGrok("next", grok);
+        assertSame(grok, cache.getGrok("late"));
+        assertEquals(10, cache.getStats().grokCacheSize);
+        cache.shutdown();
+    }
+
+    @Test
+    public void boundedByEstimatedWeight() {
+        long weight = GrokCache.weigh(grok);
+        GrokCache cache = new GrokCache(Integer.MAX_VALUE, 10 * weight);
+        for (int i = 0; i < 100; i++) {
+            cache.putGrok("p" + i, grok);
+        }
+        assertEquals(10, cache.getStats().grokCacheSize);
+        assertEquals(10 * weight, cache.getWeightedSize());
+
+        // replacing an entry does not count it twice
+        cache.putGrok("p99", grok);
+        assertEquals(10 * weight, cache.getWeightedSize());
+
+        Grok large = compiler.compile("%{COMBINEDAPACHELOG}");
+        assertTrue(GrokCache.weigh(large) > GrokCache.weigh(grok));
+        GrokCache small = new GrokCache(Integer.MAX_VALUE, GrokCache.weigh(large) - 1);
+        small.putGrok("large", large);
+        assertNull(small.getGrok("large"));
+        assertEquals(0, small.getWeightedSize());
+
+        cache.clear();
+        assertEquals(0, cache.getWeightedSize());
+        cache.shutdown();
+        small.shutdown();
+    }
+
+    @Test
+    public void idleEntriesExpire() {
+        GrokCache cache = new GrokCache(10);
+        long now = System.currentTimeMillis();
+        cache.putGrok("idle", grok);
+        cache.putGrok("used", grok);
+        cache.performCleanup(now + TimeUnit.MINUTES.toMillis(20));
+        assertSame(grok, cache.getGrok("used"));
+        cache.performCleanup(now + TimeUnit.MINUTES.toMillis(40));
+        assertNull(cache.getGrok("idle"));
+        assertSame(grok, cache.getGrok("used"));
+        assertEquals(1, cache.getStats().grokCacheSize);
+        cache.shutdown();
+    }
+
+    @Test
+    public void cacheKeysCompareEveryOption() {
+        GrokCache.CacheKey key = new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1);
+        assertEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1));
+        assertEquals(key.hashCode(),
+            new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1).hashCode());
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, true, true, false, "java", 1));
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "re2j", 1));
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 2));
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", null, false, true, false, "java", 1));
+        for (MatcherPool.Strategy strategy : MatcherPool.Strategy.values()) {
+            assertEquals(strategy == MatcherPool.getDefaultStrategy(), key.equals(
+                new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1, strategy,
+                    Collections.emptyMap(), false, true)));
+        }
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1,
+            MatcherPool.getDefaultStrategy(), Collections.singletonMap("ip", 16), false, true));
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1,
+            MatcherPool.getDefaultStrategy(), Collections.emptyMap(), true, true));
+        assertNotEquals(key, new GrokCache.CacheKey("%{IP}", ZoneOffset.UTC, false, true, false, "java", 1,
+            MatcherPool.getDefaultStrategy(), Collections.emptyMap(), false, false));
+
+        // options that the former concatenated key could not tell apart from the pattern
+        assertEquals(legacyKey("p:Z:true:true", ZoneOffset.UTC, false, true, "java"),
+            legacyKey("p", ZoneOffset.UTC, true, true, "Z:false:true:java"));
+        assertNotEquals(new GrokCache.CacheKey("p:Z:true:true", ZoneOffset.UTC, false, true, false, "java", 1),
+            new GrokCache.CacheKey("p", ZoneOffset.UTC, true, true, false, "Z:false:true:java", 1));
+    }
+
+    /**
+     * Cache key of {@code GrokCompiler} before {@link GrokCache.CacheKey}.
+     */
+    private static String legacyKey(String pattern, ZoneOffset timeZone, boolean namedOnly,
+                                    boolean reservedKeywordRenaming, String engineName) {
+        return pattern + ":" + timeZone + ":" + namedOnly + ":" + reservedKeywordRenaming + ":" + engineName;
+    }
+
+    @Test
+    public void statsCountLookupsEvictionsAndExpiries() {
+        GrokCache cache = new GrokCache(10);
+        GrokCache.CacheKey key = new GrokCache.CacheKey("p", null, false, true, false, "java", 0);
+        assertNull(cache.getGrok(key));
+        cache.putGrok(key, grok, TimeUnit.MILLISECONDS.toNanos(3));
+        assertSame(grok, cache.getGrok(key));
+        assertSame(grok, cache.getGrok(key));
+        for (int i = 0; i < 20; i++) {
+            cache.putGrok("other" + i, grok);
+        }
+        cache.performCleanup(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(20));
+        cache.performCleanup(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(40));
+
+        GrokCache.CacheStats stats = cache.getStats();
+        assertEquals(2, stats.hitCount);
+        assertEquals(1, stats.missCount);
+        assertEquals(2.0 / 3, stats.hitRate(), 1e-9);
+        // the requested entry outlives the others: kept over the unused ones, then refreshed by the first cleanup
+        assertSame(grok, cache.getGrok(key));
+        assertEquals(11, stats.evictionCount);
+        assertEquals(9, stats.expiryCount);
+        assertEquals(1, stats.grokCacheSize);
+        assertEquals(1, stats.loads.loadCount);
+        assertEquals(1, stats.engines.size());
+        GrokCache.EngineStats java = stats.engines.get("java");
+        assertEquals(2, java.hitCount);
+        assertEquals(1, java.missCount);
+        assertEquals(1, java.loads.loadCount);
+        cache.shutdown();
+    }
+
+    @Test
+    public void loadTimePercentiles() {
+        GrokCache.LoadTimes loadTimes = new GrokCache.LoadTimes();
+        for (int i = 1; i <= 1000; i++) {
+            loadTimes.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        GrokCache.LoadStats stats = loadTimes.snapshot();
+        assertEquals(1000, stats.loadCount);
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), stats.maxLoadTimeNanos);
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500), stats.loadTimeP50Nanos, 0.25 * TimeUnit.MICROSECONDS.toNanos(500));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(900), stats.loadTimeP90Nanos, 0.25 * TimeUnit.MICROSECONDS.toNanos(900));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(990), stats.loadTimeP99Nanos, 0.25 * TimeUnit.MICROSECONDS.toNanos(990));
+        assertEquals(500_500.0, stats.averageLoadTimeNanos(), 1e-6);
+
+        for (long nanos = 0; nanos < 100_000; nanos += 7) {
+            int bucket = GrokCache.LoadTimes.bucket(nanos);
+            assertTrue(nanos + " in " + bucket, nanos <= GrokCache.LoadTimes.upperBound(bucket));
+            assertTrue(nanos + " in " + bucket, bucket == 0 || nanos > GrokCache.LoadTimes.upperBound(bucket - 1));
+        }
+        assertEquals(GrokCache.LoadStats.EMPTY.loadTimeP99Nanos, new GrokCache.LoadTimes().snapshot().loadTimeP99Nanos);
+    }
+
+    @Test
+    public void compilerReportsItsCache() {
+        GrokCompiler compiler = GrokCompiler.newInstance();
+        compiler.registerDefaultPatterns();
+        compiler.compile("%{IP:client}");
+        compiler.compile("%{IP:client}");
+        compiler.compile("%{IP:client}", new JavaRegexEngine());
+        GrokCache.CacheStats stats = compiler.getCacheStats();
+        assertEquals(1, stats.hitCount);
+        assertEquals(2, stats.missCount);
+        assertEquals(2, stats.loads.loadCount);
+        assertTrue(stats.loads.maxLoadTimeNanos > 0);
+        assertEquals(2, stats.engines.size());
+        assertEquals(1, stats.engines.get(new JavaRegexEngine().getName()).missCount);
+        System.out.println(stats);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxWeightMustBePositive() {
+        new GrokCache(10, 0);
+    }
+
+    @Test
+    public void cachesShareOneMaintenanceThread() {
+        List<GrokCompiler> compilers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            compilers.add(GrokCompiler.newInstance());
+        }
+        int maintenance = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertTrue(thread.getName(), !thread.getName().equals("GrokCache-Cleanup"));
+            if (thread.getName().equals("GrokCache-Maintenance")) {
+                maintenance++;
+            }
+        }
+        assertTrue(maintenance <= 1);
+        assertEquals(20, compilers.size());
+    }
+
+    @Test
+    public void concurrentHitsVersusSynchronizedLru() throws Exception {
+        String[] keys = new String[64];
+        GrokCache cache = new GrokCache();
+        Map<String, Grok> lru = Collections.synchronizedMap(new LinkedHashMap<String, Grok>(16, 0.75f, true));
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "%{IP:client} %{WORD:verb} " + i;
+            cache.putGrok(keys[i], grok);
+            lru.put(keys[i], grok);
+        }
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        long lruNanos = 0;
+        long cacheNanos = 0;
+        for (int round = 0; round < 3; round++) {
+            long lruRun = hammer(threads, keys, lru::get);
+            long cacheRun = hammer(threads, keys, cache::getGrok);
+            if (round > 0) {
+                lruNanos += lruRun;
+                cacheNanos += cacheRun;
+            }
+        }
+        System.out.printf("%d threads, cache hits: synchronized LRU %d ms, GrokCache %d ms%n", threads,
+            TimeUnit.NANOSECONDS.toMillis(lruNanos), TimeUnit.NANOSECONDS.toMillis(cacheNanos));
+        cache.shutdown();
+    }
+
+    private long hammer(int threadCount, String[] keys, Function<String, Grok> get) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        List<AssertionError> errors = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < threadCount; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 500_000; i++) {
+                    if (get.apply(keys[(i + offset) % keys.length]) != grok) {
+                        errors.add(new AssertionError(keys[(i + offset) % keys.length]));
+                        return;
+                    }
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(Collections.emptyList(), errors);
+        return elapsed;
+    }
+}
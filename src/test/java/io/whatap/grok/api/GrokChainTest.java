@@ -0,0 +1,102 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GrokChainTest {
+
+  private static final String ALPHA = "host alpha 1234";
+  private static final String BETA = "host beta 1234";
+
+  private Grok alpha;
+  private Grok beta;
+  private Grok fallback;
+
+  @Before
+  public void setUp() throws Exception {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+    // similar cost, so the hit rate alone decides the order
+    compiler.setPrefilterEnabled(false);
+    alpha = compiler.compile("^%{WORD:host} alpha %{INT:pid}$");
+    beta = compiler.compile("^%{WORD:host} beta %{INT:pid}$");
+    compiler.setPrefilterEnabled(true);
+    fallback = compiler.compile("%{GREEDYDATA:rest}");
+  }
+
+  @Test
+  public void hotPatternMovesToTheFront() {
+    GrokChain chain = new GrokChain();
+    chain.add(alpha);
+    chain.add(beta);
+    chain.setAdaptive(false);
+    for (int i = 0; i < 4000; i++) {
+      GrokSet.Result result = chain.match(i % 20 == 0 ? ALPHA : BETA);
+      assertTrue(result.isMatched());
+    }
+    assertEquals(Arrays.asList(alpha, beta), chain.getOrder());
+
+    chain.reorder();
+    assertEquals(Arrays.asList(beta, alpha), chain.getOrder());
+    GrokSet.Result result = chain.match(ALPHA);
+    assertSame(alpha, result.getGrok());
+    assertEquals(0, result.getIndex());
+  }
+
+  @Test
+  public void reorderingStaysInsidePriorityBands() {
+    GrokChain chain = new GrokChain();
+    chain.add(fallback, 1);
+    chain.add(alpha);
+    chain.add(beta);
+    assertEquals(Arrays.asList(alpha, beta, fallback), chain.getOrder());
+
+    for (int i = 0; i < 2000; i++) {
+      assertSame(fallback, chain.match("unknown " + i).getGrok());
+      chain.match(BETA);
+    }
+    chain.reorder();
+    assertEquals(Arrays.asList(beta, alpha, fallback), chain.getOrder());
+  }
+
+  @Test
+  public void statsCountHitsAndMisses() {
+    GrokChain chain = new GrokChain();
+    chain.setAdaptive(false);
+    chain.add(alpha);
+    chain.add(beta);
+    chain.match(BETA);
+    chain.match(BETA);
+    chain.match(ALPHA);
+    assertFalse(chain.match("nothing").isMatched());
+
+    List<GrokChain.Stats> stats = chain.getStats();
+    assertEquals(0, stats.get(0).getIndex());
+    assertEquals(4, stats.get(0).getAttempts());
+    assertEquals(1, stats.get(0).getHits());
+    assertEquals(3, stats.get(0).getMisses());
+    assertEquals(3, stats.get(1).getAttempts());
+    assertEquals(2, stats.get(1).getHits());
+  }
+
+  @Test
+  public void adaptiveChainReordersOnItsOwn() {
+    GrokChain chain = new GrokChain();
+    chain.add(alpha);
+    chain.add(beta);
+    chain.setReorderInterval(16);
+    for (int i = 0; i < 4000; i++) {
+      chain.match(BETA);
+    }
+    assertEquals(Arrays.asList(beta, alpha), chain.getOrder());
+    assertEquals("1234", chain.capture(ALPHA).get("pid"));
+  }
+}
@@ -0,0 +1,195 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.whatap.grok.api.engine.CompiledPattern;
+import io.whatap.grok.api.engine.EngineMatcher;
+import io.whatap.grok.api.engine.HybridEngine;
+import io.whatap.grok.api.engine.JavaRegexEngine;
+import io.whatap.grok.api.engine.Re2jEngine;
+import io.whatap.grok.api.engine.RegexEngine;
+import org.junit.Test;
+
+public class GrokFieldTest {
+
+  @Test
+  public void namedGroupIndexesSkipEscapesClassesAndNonCapturingGroups() {
+    String regex = "\\((?<a>x)(?:y)(z)[(](?<b>\\Q(q)\\E)(?=w)(?<!v)(?P<c>[]a)])(?<d>\\[)";
+    Map<String, Integer> indexes = GrokUtils.getNamedGroupIndexes(regex);
+
+    assertEquals(4, indexes.size());
+    assertEquals(1, (int) indexes.get("a"));
+    assertEquals(3, (int) indexes.get("b"));
+    assertEquals(4, (int) indexes.get("c"));
+    assertEquals(5, (int) indexes.get("d"));
+  }
+
+  @Test
+  public void namedGroupIndexesAgreeWithJavaRegex() {
+    String regex = "(?<name0>(?<name1>\\d+)(\\.(?<name2>[0-9]+))?)-(?<name3>[^)]*)";
+    EngineMatcher matcher = new JavaRegexEngine().compile(regex).matcher("12.5-abc");
+    assertTrue(matcher.find());
+
+    for (Map.Entry<String, Integer> entry : GrokUtils.getNamedGroupIndexes(regex).entrySet()) {
+      assertEquals(entry.getKey(), matcher.group(entry.getKey()), matcher.group(entry.getValue()));
+    }
+  }
+
+  @Test
+  public void fieldTableResolvesNamesTypesAndUnwanted() {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    Grok grok = compiler.compile("%{WORD:UNWANTED} %{NUMBER:bytes:int} %{WORD:timestamp}", true);
+
+    List<GrokField> fields = grok.getFields();
+    GrokField unwanted = fields.get(0);
+    GrokField bytes = fields.get(1);
+    GrokField renamed = fields.get(fields.size() - 1);
+
+    assertTrue(unwanted.isUnwanted());
+    assertEquals("bytes:int", bytes.getKey());
+    assertEquals("bytes", bytes.getName());
+    assertEquals(Converter.Type.INT, bytes.getType());
+    assertFalse(bytes.isUnwanted());
+    assertEquals("log_timestamp", renamed.getName());
+    assertEquals(Converter.Type.STRING, renamed.getType());
+    assertNull(renamed.getConverter());
+    for (int i = 0; i < fields.size(); i++) {
+      assertEquals(i, fields.get(i).getIndex());
+      assertTrue(fields.get(i).getGroup() > 0);
+    }
+  }
+
+  @Test
+  public void fieldTableMatchesNameLookupsForAllSamples() {
+    PatternRepository repo = PatternRepository.getInstance();
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+
+    int checked = 0;
+    for (PatternType type : PatternType.values()) {
+      for (Map.Entry<String, String> sample : repo.getSampleLogs(type).entrySet()) {
+        Grok grok;
+        try {
+          grok = compiler.compile("%{" + sample.getKey() + "}");
+        } catch (Exception e) {
+          continue;
+        }
+        EngineMatcher matcher = grok.getCompiledPattern().matcher(sample.getValue());
+        if (!matcher.find()) {
+          continue;
+        }
+        for (GrokField field : grok.getFields()) {
+          assertEquals(sample.getKey() + "/" + field.getGroupName(),
+              matcher.group(field.getGroupName()), matcher.group(field.getGroup()));
+        }
+        checked++;
+      }
+    }
+    assertTrue(checked > 0);
+  }
+
+  private static Map<String, Object> expected(String... keyValues) {
+    Map<String, Object> map = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      map.put(keyValues[i], keyValues[i + 1]);
+    }
+    return map;
+  }
+
+  @Test
+  public void bracketInsideAClassFollowsTheEngineSyntax() {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    // re2j: '[' inside a class is a literal
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new HybridEngine(0L, 1024)}) {
+      Grok grok = compiler.compile("(?<a>[[x])(?<b>y)", engine);
+      assertEquals(engine.getName(), expected("a", "[", "b", "y"), grok.capture("[y"));
+      assertEquals(2, grok.getFields().get(1).getGroup());
+    }
+    // java.util.regex: '[' inside a class opens a nested one
+    Grok grok = compiler.compile("(?<a>[x[y]])(?<b>z)", new JavaRegexEngine());
+    assertEquals(expected("a", "y", "b", "z"), grok.capture("yz"));
+    assertEquals(2, grok.getFields().get(1).getGroup());
+  }
+
+  /**
+   * Engine that does not resolve group numbers and whose syntax the scanner cannot follow.
+   */
+  private static final class UnresolvedEngine implements RegexEngine {
+    private final RegexEngine delegate = new JavaRegexEngine();
+
+    @Override
+    public CompiledPattern compile(String regex) {
+      CompiledPattern pattern = delegate.compile(regex);
+      return new CompiledPattern() {
+        @Override
+        public EngineMatcher matcher(CharSequence input) {
+          return pattern.matcher(input);
+        }
+
+        @Override
+        public String getEngineName() {
+          return "unresolved";
+        }
+
+        @Override
+        public String getPattern() {
+          return pattern.getPattern();
+        }
+
+        @Override
+        public Map<String, Integer> namedGroups() {
+          return Collections.emptyMap();
+        }
+      };
+    }
+
+    @Override
+    public String getName() {
+      return "unresolved";
+    }
+  }
+
+  @Test
+  public void unresolvedGroupsAreReadByName() {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    Grok grok = compiler.compile("%{WORD:verb} %{INT:status:int}", new UnresolvedEngine());
+    for (GrokField field : grok.getFields()) {
+      assertEquals(-1, field.getGroup());
+    }
+    String line = "GET 200";
+    Map<String, Object> capture = grok.capture(line);
+    assertEquals("GET", capture.get("verb"));
+    assertEquals(200, capture.get("status"));
+
+    Match match = grok.match(line);
+    assertEquals("GET", match.getString("verb"));
+    assertEquals(200, match.getInt(1, -1));
+    assertEquals(-1, match.getStart(0));
+    assertEquals("GET", match.getMatch().group(grok.getFields().get(0).getGroupName()));
+
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    assertEquals(capture, grok.match(bytes, 0, bytes.length).capture());
+
+    ColumnarBatch batch = grok.captureColumnar(Arrays.asList(line, "PUT 404"));
+    assertEquals(404, batch.getColumn("status").getInts()[1]);
+    assertEquals("PUT", batch.getColumn("verb").getStrings()[1]);
+
+    Map<String, String> sunk = new HashMap<>();
+    assertTrue(grok.matchInto(line, (index, name, text, start, end) ->
+        sunk.put(name, text.subSequence(start, end).toString())));
+    assertEquals("GET", sunk.get("verb"));
+    assertEquals("200", sunk.get("status"));
+  }
+}
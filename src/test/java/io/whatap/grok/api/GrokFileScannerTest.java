@@ -0,0 +1,164 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GrokFileScannerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private GrokCompiler compiler;
+  private Grok grok;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+    grok = compiler.compile("%{WORD:verb} %{NOTSPACE:path} %{INT:status}");
+  }
+
+  private File write(String content) throws IOException {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static List<String> collect(GrokFileScanner scanner, File file) throws IOException {
+    List<String> out = new ArrayList<>();
+    long lines = scanner.scan(file.toPath(), (number, line, result) ->
+        out.add(number + ":" + line + "=" + result.getIndex() + result.getMatch().capture()));
+    assertEquals(out.size(), lines);
+    return out;
+  }
+
+  private List<String> expected(File file) throws IOException {
+    List<String> out = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        Match match = grok.match(line);
+        out.add((out.size() + 1) + ":" + line + "=" + (match.isNull() ? -1 : 0) + match.capture());
+      }
+    }
+    return out;
+  }
+
+  @Test
+  public void linesMatchBufferedReaderForEveryWindowSize() throws Exception {
+    File file = write("GET /a 200\r\n\nPOST /검색 404\nnot a line\r\n"
+        + "PUT /a/very/long/path/that/spans/windows 500\nDELETE /😀 204");
+    List<String> expected = expected(file);
+    assertEquals(6, expected.size());
+    for (int window : new int[] {1, 3, 8, 13, 64, GrokFileScanner.DEFAULT_WINDOW_SIZE}) {
+      GrokFileScanner scanner = new GrokFileScanner(grok);
+      scanner.setWindowSize(window);
+      assertEquals("window " + window, expected, collect(scanner, file));
+    }
+  }
+
+  @Test
+  public void trailingNewlineAndEmptyFile() throws Exception {
+    GrokFileScanner scanner = new GrokFileScanner(grok);
+    assertEquals(Arrays.asList("1:GET /a 200=0{verb=GET, path=/a, status=200}"),
+        collect(scanner, write("GET /a 200\r\n")));
+    assertEquals(0, collect(scanner, write("")).size());
+    assertEquals(Arrays.asList("1:=-1{}", "2:=-1{}"), collect(scanner, write("\n\r\n")));
+  }
+
+  @Test
+  public void invalidUtf8IsReplaced() throws Exception {
+    File file = tempFolder.newFile();
+    Files.write(file.toPath(), new byte[] {'G', 'E', 'T', ' ', '/', (byte) 0xFF, ' ', '1', '\n'});
+    List<String> lines = collect(new GrokFileScanner(grok), file);
+    assertEquals(Arrays.asList("1:GET /� 1=0{verb=GET, path=/�, status=1}"), lines);
+  }
+
+  @Test
+  public void groksetReportsTheMatchingMember() throws Exception {
+    Grok user = compiler.compile("user=%{WORD:user}");
+    GrokSet set = new GrokSet(Arrays.asList(user, grok));
+    File file = write("login user=bob\nGET /x 200\nnothing\n");
+    List<String> lines = collect(new GrokFileScanner(set), file);
+    assertEquals(Arrays.asList("1:login user=bob=0{user=bob}",
+        "2:GET /x 200=1{verb=GET, path=/x, status=200}", "3:nothing=-1{}"), lines);
+  }
+
+  @Test
+  public void newlineSearch() {
+    ByteBuffer bytes = ByteBuffer.wrap("abcdefghij\nklmnopqér\n".getBytes(StandardCharsets.UTF_8))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(10, GrokFileScanner.indexOfNewline(bytes, 0, bytes.capacity()));
+    assertEquals(21, GrokFileScanner.indexOfNewline(bytes, 11, bytes.capacity()));
+    assertEquals(-1, GrokFileScanner.indexOfNewline(bytes, 11, 21));
+    assertTrue(GrokFileScanner.isAscii(bytes, 0, 18));
+    assertFalse(GrokFileScanner.isAscii(bytes, 11, 22));
+  }
+
+  @Test
+  public void compareWithReadLine() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      content.append(i % 3 == 0 ? "POST" : "GET").append(" /item/").append(i).append(' ')
+          .append(200 + i % 5).append(i % 2 == 0 ? "\r\n" : "\n");
+    }
+    File file = write(content.toString());
+    GrokFileScanner scanner = new GrokFileScanner(grok);
+    int status = grok.getFields().stream()
+        .filter(field -> field.getName().equals("status")).findFirst().get().getIndex();
+
+    long readerNanos = 0;
+    long scannerNanos = 0;
+    for (int round = 0; round < 4; round++) {
+      long[] sums = new long[2];
+      long start = System.nanoTime();
+      try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          sums[0] += grok.match(line).getString(status).length();
+        }
+      }
+      long middle = System.nanoTime();
+      scanner.scan(file.toPath(), (number, line, result) ->
+          sums[1] += result.getMatch().getString(status).length());
+      long end = System.nanoTime();
+      assertEquals(sums[0], sums[1]);
+      if (round > 0) {
+        readerNanos += middle - start;
+        scannerNanos += end - middle;
+      }
+    }
+    System.out.printf("file scan: readLine %.1f ms, mapped scanner %.1f ms%n",
+        readerNanos / (double) TimeUnit.MILLISECONDS.toNanos(1),
+        scannerNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  @Test
+  public void matchesAreValidDuringTheCallback() throws Exception {
+    File file = write("GET /a 200\nPUT /b 201\n");
+    List<Map<String, Object>> captures = new ArrayList<>();
+    new GrokFileScanner(grok).scan(file.toPath(),
+        (number, line, result) -> captures.add(result.getMatch().capture()));
+    assertEquals("/a", captures.get(0).get("path"));
+    assertEquals("/b", captures.get(1).get("path"));
+  }
+}
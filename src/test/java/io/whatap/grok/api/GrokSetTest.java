@@ -0,0 +1,149 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GrokSetTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  @Test
+  public void firstMatchWins() {
+    Grok sshd = compiler.compile("%{SYSLOGTIMESTAMP:ts} %{SYSLOGHOST:host} sshd\\[%{POSINT:pid}\\]: %{GREEDYDATA:msg}");
+    Grok apache = compiler.compile("%{COMMONAPACHELOG}");
+    Grok fallback = compiler.compile("%{GREEDYDATA:rest}");
+    GrokSet set = new GrokSet(Arrays.asList(sshd, apache, fallback));
+
+    GrokSet.Result result = set.match("Mar  7 00:12:37 host sshd[1234]: Accepted publickey");
+    assertTrue(result.isMatched());
+    assertEquals(0, result.getIndex());
+    assertSame(sshd, result.getGrok());
+    assertEquals("1234", result.getMatch().capture().get("pid"));
+
+    result = set.match("127.0.0.1 - - [06/Mar/2013:01:36:30 +0900] \"GET / HTTP/1.1\" 200 10");
+    assertEquals(1, result.getIndex());
+
+    assertEquals(2, set.match("anything else").getIndex());
+    assertEquals("anything else", set.capture("anything else").get("rest"));
+  }
+
+  @Test
+  public void noMatchAndNonCandidates() {
+    Grok sshd = compiler.compile("%{SYSLOGTIMESTAMP:ts} %{SYSLOGHOST:host} sshd\\[%{POSINT:pid}\\]: %{GREEDYDATA:msg}");
+    GrokSet set = new GrokSet(Arrays.asList(sshd));
+    assertEquals(2, set.getLiteralCount());
+
+    GrokSet.Result result = set.match("no literal in sight");
+    assertFalse(result.isMatched());
+    assertEquals(-1, result.getIndex());
+    assertTrue(result.getMatch().isNull());
+    assertTrue(set.match(null).getMatch().isNull());
+    // the regex of a member lacking its literals is never run
+    assertEquals(0, sshd.getRegexRejects());
+
+    compiler.setPrefilterEnabled(false);
+    Grok sshdUnfiltered = compiler.compile(
+        "%{SYSLOGTIMESTAMP:ts} %{SYSLOGHOST:host} sshd\\[%{POSINT:pid}\\]: %{GREEDYDATA:msg}");
+    GrokSet unfiltered = new GrokSet(Arrays.asList(sshdUnfiltered));
+    assertEquals(0, unfiltered.getLiteralCount());
+    assertFalse(unfiltered.match("no literal in sight").isMatched());
+    assertEquals(1, sshdUnfiltered.getRegexRejects());
+    assertEquals(0, sshd.getRegexRejects());
+  }
+
+  private List<Grok> sampleGroks(List<String> lines) throws Exception {
+    PatternRepository repo = PatternRepository.getInstance();
+    List<Grok> groks = new ArrayList<>();
+    for (PatternType type : PatternType.values()) {
+      for (Map.Entry<String, String> sample : repo.getSampleLogs(type).entrySet()) {
+        try {
+          groks.add(compiler.compile("%{" + sample.getKey() + "}"));
+        } catch (Exception e) {
+          continue;
+        }
+        lines.add(sample.getValue());
+      }
+    }
+    return groks;
+  }
+
+  @Test
+  public void agreesWithSequentialMatching() throws Exception {
+    List<String> lines = new ArrayList<>();
+    List<Grok> groks = sampleGroks(lines);
+    GrokSet set = new GrokSet(groks);
+
+    for (String line : lines) {
+      int expected = -1;
+      for (int i = 0; i < groks.size() && expected < 0; i++) {
+        if (!groks.get(i).match(line).isNull()) {
+          expected = i;
+        }
+      }
+      GrokSet.Result result = set.match(line);
+      assertEquals(line, expected, result.getIndex());
+      if (expected >= 0) {
+        assertEquals(groks.get(expected).capture(line), result.getMatch().capture());
+      }
+    }
+  }
+
+  /**
+   * Lines per second of the set against sequential matching as the pattern count grows.
+   */
+  @Test
+  public void throughputAgainstPatternCount() throws Exception {
+    List<String> lines = new ArrayList<>();
+    List<Grok> all = sampleGroks(lines);
+    for (int count = 8; ; count = Math.min(count * 4, all.size())) {
+      List<Grok> groks = all.subList(0, count);
+      GrokSet set = new GrokSet(groks);
+      double setRate = 0;
+      double sequentialRate = 0;
+      // first round warms up both paths
+      for (int round = 0; round < 2; round++) {
+        long start = System.nanoTime();
+        for (String line : lines) {
+          set.match(line);
+        }
+        setRate = rate(lines.size(), System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (String line : lines) {
+          for (Grok grok : groks) {
+            if (!grok.match(line).isNull()) {
+              break;
+            }
+          }
+        }
+        sequentialRate = rate(lines.size(), System.nanoTime() - start);
+      }
+      System.out.printf("GrokSet: %3d patterns, %.0f lines/s (sequential %.0f lines/s)%n",
+          count, setRate, sequentialRate);
+      if (count == all.size()) {
+        break;
+      }
+    }
+  }
+
+  private static double rate(long lines, long nanos) {
+    return lines / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+}
@@ -0,0 +1,110 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LiteralPrefilterTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  private static List<String> literals(String regex) {
+    return LiteralPrefilter.forRegex(regex).getLiterals();
+  }
+
+  @Test
+  public void extractsMandatoryLiterals() {
+    assertEquals(Arrays.asList(" sshd[", "]: "), literals("\\w+ sshd\\[\\d+\\]: .*"));
+    assertEquals(Arrays.asList(" HTTP/"), literals("(?<verb>\\w+) \\S+ HTTP/[\\d.]+"));
+    assertEquals(Arrays.asList("abc"), literals("abcd?"));
+    assertEquals(Arrays.asList("abcd"), literals("abcd+e*"));
+    assertEquals(Arrays.asList("xxyy"), literals("(?:xx)+yy"));
+  }
+
+  @Test
+  public void literalsSpanGroupsAndAssertions() {
+    assertEquals(Arrays.asList("foobar"), literals("\\bfoo\\b(?:bar)"));
+    assertEquals(Arrays.asList("T HTTP"), literals("(?<name0>x(?:GET|PUT) )HTTP"));
+    assertEquals(Arrays.asList("ab[cd"), literals("(?<name0>ab)(?=x)\\[cd"));
+  }
+
+  @Test
+  public void optionalAndUnknownConstructsContributeNothing() {
+    assertEquals(Collections.emptyList(), literals("(?:foo)?x?"));
+    assertEquals(Collections.emptyList(), literals("foo|bar"));
+    assertEquals(Arrays.asList("ef"), literals("(?:ab|cd)ef"));
+    assertEquals(Collections.emptyList(), literals("(?=foo)\\d+"));
+    assertEquals(Collections.emptyList(), literals("(?i)HTTP/"));
+    assertEquals(Collections.emptyList(), literals("\\QHTTP/\\E"));
+    assertEquals(Arrays.asList("]ab"), literals("[ab]]ab{2,}"));
+  }
+
+  @Test
+  public void prefilterRejectsBeforeTheRegex() {
+    Grok grok = compiler.compile(
+        "%{SYSLOGTIMESTAMP:ts} %{SYSLOGHOST:host} sshd\\[%{POSINT:pid}\\]: %{GREEDYDATA:msg}");
+    String line = "Mar  7 00:12:37 host sshd[1234]: Accepted publickey";
+    assertEquals(Arrays.asList(" sshd[", "]: "), grok.getRequiredLiterals());
+
+    assertTrue(grok.match(line).capture().containsKey("msg"));
+    assertTrue(grok.match("no required literal here").isNull());
+    assertTrue(grok.match("has sshd[ and ]: but no timestamp").isNull());
+    assertEquals(1, grok.getPrefilterRejects());
+    assertEquals(1, grok.getRegexRejects());
+
+    compiler.setPrefilterEnabled(false);
+    Grok unfiltered = compiler.compile(
+        "%{SYSLOGTIMESTAMP:ts} %{SYSLOGHOST:host} sshd\\[%{POSINT:pid}\\]: %{GREEDYDATA:msg}");
+    assertTrue(grok.isPrefilterEnabled());
+    assertFalse(unfiltered.isPrefilterEnabled());
+    assertTrue(unfiltered.match("no required literal here").isNull());
+    assertEquals(0, unfiltered.getPrefilterRejects());
+    assertEquals(1, unfiltered.getRegexRejects());
+    assertEquals(1, grok.getPrefilterRejects());
+  }
+
+  /**
+   * The prefilter must never reject a line the regex would match.
+   */
+  @Test
+  public void noFalseRejectsOnSampleCorpora() throws Exception {
+    PatternRepository repo = PatternRepository.getInstance();
+    int withLiterals = 0;
+    for (PatternType type : PatternType.values()) {
+      Map<String, String> samples = repo.getSampleLogs(type);
+      for (Map.Entry<String, String> sample : samples.entrySet()) {
+        Grok grok;
+        Grok unfiltered;
+        try {
+          compiler.setPrefilterEnabled(true);
+          grok = compiler.compile("%{" + sample.getKey() + "}");
+          compiler.setPrefilterEnabled(false);
+          unfiltered = compiler.compile("%{" + sample.getKey() + "}");
+        } catch (Exception e) {
+          continue;
+        }
+        if (!grok.getRequiredLiterals().isEmpty()) {
+          withLiterals++;
+        }
+        for (String line : samples.values()) {
+          assertEquals(sample.getKey() + " on " + line, unfiltered.capture(line), grok.capture(line));
+        }
+      }
+    }
+    assertTrue(withLiterals > 0);
+  }
+}
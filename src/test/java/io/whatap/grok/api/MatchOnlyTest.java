@@ -0,0 +1,97 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.whatap.grok.api.engine.CompiledPattern;
+import io.whatap.grok.api.engine.JavaRegexEngine;
+import io.whatap.grok.api.engine.RegexEngine;
+import io.whatap.grok.api.engine.Re2jEngine;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchOnlyTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  @Test
+  public void captureFreeVariantIsCreatedOnce() {
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new JavaRegexEngine()}) {
+      CompiledPattern pattern = engine.compile("(?<verb>\\w+) ([a-z]+)[(\\]]\\(x\\)(?:y)");
+      CompiledPattern stripped = pattern.withoutCaptures();
+      assertEquals("(?:\\w+) (?:[a-z]+)[(\\]]\\(x\\)(?:y)", stripped.getPattern());
+      assertSame(stripped, pattern.withoutCaptures());
+      assertSame(stripped, stripped.withoutCaptures());
+    }
+  }
+
+  @Test
+  public void backreferencesKeepTheirGroups() {
+    CompiledPattern pattern = new JavaRegexEngine().compile("(?<q>['\"])\\w+\\k<q> (a)\\1");
+    assertSame(pattern, pattern.withoutCaptures());
+    assertNotSame(pattern, new JavaRegexEngine().compile("[k\\]](a)").withoutCaptures());
+  }
+
+  @Test
+  public void matchesAndCount() {
+    Grok grok = compiler.compile("%{WORD:verb} %{INT:status}");
+    assertTrue(grok.matches("GET 200"));
+    assertFalse(grok.matches("GET x"));
+    assertFalse(grok.matches(null));
+    assertEquals(2, grok.count(Arrays.asList("GET 200", "nope", null, "> POST 500")));
+
+    compiler.setImplicitAnchoring(true);
+    Grok anchored = compiler.compile("%{WORD:verb} %{INT:status}");
+    assertFalse(anchored.matches("> POST 500"));
+  }
+
+  @Test
+  public void matchesAgreesWithMatchOnSampleCorpora() throws Exception {
+    PatternRepository repo = PatternRepository.getInstance();
+    List<String> lines = new ArrayList<>();
+    List<Grok> groks = new ArrayList<>();
+    for (PatternType type : PatternType.values()) {
+      for (Map.Entry<String, String> sample : repo.getSampleLogs(type).entrySet()) {
+        try {
+          groks.add(compiler.compile("%{" + sample.getKey() + "}"));
+        } catch (Exception e) {
+          continue;
+        }
+        lines.add(sample.getValue());
+      }
+    }
+    long matchNanos = 0;
+    long matchesNanos = 0;
+    for (int i = 0; i < groks.size(); i++) {
+      Grok grok = groks.get(i);
+      for (String line : new String[] {lines.get(i), lines.get((i + 1) % lines.size())}) {
+        assertEquals(grok.getOriginalGrokPattern() + " on " + line,
+            !grok.match(line).isNull(), grok.matches(line));
+        long start = System.nanoTime();
+        grok.match(line);
+        long middle = System.nanoTime();
+        grok.matches(line);
+        matchNanos += middle - start;
+        matchesNanos += System.nanoTime() - middle;
+      }
+    }
+    System.out.printf("match-only: match %.0f us, matches %.0f us over %d patterns%n",
+        matchNanos / (double) TimeUnit.MICROSECONDS.toNanos(1),
+        matchesNanos / (double) TimeUnit.MICROSECONDS.toNanos(1), groks.size());
+  }
+}
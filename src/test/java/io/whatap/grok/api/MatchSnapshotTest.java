@@ -0,0 +1,119 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.whatap.grok.api.engine.EngineMatcher;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchSnapshotTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+  }
+
+  @Test
+  public void lazyCaptureSurvivesNextMatchOnSameThread() {
+    Grok grok = compiler.compile("%{WORD:verb} %{NUMBER:status}");
+
+    Match first = grok.match("GET 200");
+    Match second = grok.match("POST 404");
+
+    assertEquals("GET", first.capture().get("verb"));
+    assertEquals("200", first.capture().get("status"));
+    assertEquals("POST", second.capture().get("verb"));
+    assertEquals("404", second.capture().get("status"));
+  }
+
+  @Test
+  public void fieldAccessByIndexAndName() {
+    Grok grok = compiler.compile("%{WORD:verb} %{NUMBER:status:int} %{QS:agent}", true);
+    Match match = grok.match("GET 200 \"curl\"");
+
+    assertEquals(grok.getFields().size(), match.getFieldCount());
+    assertEquals("GET", match.getString(0));
+    assertEquals(0, match.getStart(0));
+    assertEquals(3, match.getEnd(0));
+    assertEquals(200, match.getValue("status"));
+    assertEquals("200", match.getString("status"));
+    assertEquals("curl", match.getString("agent"));
+    assertNull(match.getString("missing"));
+  }
+
+  @Test
+  public void typedValueFallsBackToNullOnConversionFailure() {
+    Grok grok = compiler.compile("%{WORD:when;date;yyyy-MM-dd}", true);
+    assertNull(grok.match("yesterday").getValue("when"));
+
+    Grok valid = compiler.compile("%{DATA:when;date;yyyy-MM-dd}$", java.time.ZoneOffset.UTC, true);
+    assertEquals(Instant.parse("2015-07-31T00:00:00Z"), valid.match("2015-07-31").getValue(0));
+  }
+
+  @Test
+  public void matcherViewReadsFromSnapshot() {
+    Grok grok = compiler.compile("%{WORD:verb} %{NUMBER:status}", true);
+    Match match = grok.match("GET 200");
+    grok.match("PUT 500");
+
+    EngineMatcher view = match.getMatch();
+    assertEquals("GET 200", view.group());
+    assertEquals("GET", view.group(1));
+    assertEquals(4, view.start(view.groupCount()));
+    assertNull(Match.EMPTY.getMatch());
+  }
+
+  @Test
+  public void matcherViewFindsTheFollowingMatches() {
+    Grok grok = compiler.compile("%{WORD:verb}=%{NUMBER:status}", true);
+    Match match = grok.match("GET=200 PUT=500 HEAD=404");
+    grok.match("DELETE=410");
+
+    EngineMatcher view = match.getMatch();
+    assertEquals("GET", view.group(1));
+    List<String> verbs = new ArrayList<>();
+    while (view.find()) {
+      verbs.add(view.group(1));
+    }
+    assertEquals(Arrays.asList("PUT", "HEAD"), verbs);
+
+    view.reset("POST=201");
+    assertTrue(view.matches());
+    assertEquals("201", view.group(2));
+  }
+
+  @Test
+  public void matchCanBeCapturedOnAnotherThread() throws Exception {
+    Grok grok = compiler.compile("%{WORD:verb} %{NUMBER:status}");
+    Match match = grok.match("GET 200");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Map<String, Object>> future = executor.submit(() -> {
+        grok.match("DELETE 410");
+        return match.capture();
+      });
+      grok.match("PATCH 204");
+      Map<String, Object> captured = future.get();
+      assertEquals("GET", captured.get("verb"));
+      assertEquals("200", captured.get("status"));
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(Match.EMPTY.isNull());
+  }
+}
@@ -0,0 +1,241 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatcherPoolTest {
+
+  private static final String LINE = "10.0.0.1 GET /index.html 200";
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+  }
+
+  private Grok grok(MatcherPool.Strategy strategy) {
+    compiler.setMatcherPoolStrategy(strategy);
+    return compiler.compile("%{IP:client} %{WORD:verb} %{NOTSPACE:path} %{INT:status:int}");
+  }
+
+  @Test
+  public void everyStrategyMatchesTheSame() {
+    Map<String, Object> expected = grok(MatcherPool.Strategy.THREAD_LOCAL).capture(LINE);
+    byte[] bytes = LINE.getBytes(StandardCharsets.UTF_8);
+    for (MatcherPool.Strategy strategy : MatcherPool.Strategy.values()) {
+      Grok grok = grok(strategy);
+      assertEquals(strategy, grok.getMatcherPoolStrategy());
+      for (int i = 0; i < 3; i++) {
+        assertEquals(strategy.name(), expected, grok.capture(LINE));
+        assertEquals(strategy.name(), expected, grok.match(bytes, 0, bytes.length).capture());
+        assertTrue(grok.matches(LINE));
+        assertFalse(grok.matches("no match"));
+        assertTrue(grok.match("no match").isNull());
+        assertTrue(grok.matchInto(LINE, (index, name, text, start, end) -> { }));
+        assertEquals(200, grok.captureColumnar(Arrays.asList(LINE, "x", LINE)).getColumn("status").getInts()[2]);
+      }
+    }
+  }
+
+  @Test
+  public void matchersAreReusedAccordingToTheStrategy() throws Exception {
+    for (MatcherPool.Strategy strategy : MatcherPool.Strategy.values()) {
+      Grok grok = grok(strategy);
+      // one short lived thread after the other, as in a pool that replaces its threads
+      for (int t = 0; t < 20; t++) {
+        Thread thread = new Thread(() -> {
+          for (int i = 0; i < 5; i++) {
+            grok.match(LINE);
+          }
+        });
+        thread.start();
+        thread.join();
+      }
+      long allocations = grok.matcherPool().allocations();
+      switch (strategy) {
+        case THREAD_LOCAL:
+          assertEquals(20, allocations);
+          break;
+        case STRIPED:
+          assertEquals(1, allocations);
+          break;
+        default:
+          assertEquals(100, allocations);
+          break;
+      }
+    }
+  }
+
+  @Test
+  public void stripedPoolStaysBounded() throws Exception {
+    Grok grok = grok(MatcherPool.Strategy.STRIPED);
+    ExecutorService executor = Executors.newFixedThreadPool(4 * MatcherPool.STRIPES);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4 * MatcherPool.STRIPES; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 1000; i++) {
+            assertEquals("GET", grok.match(LINE).capture().get("verb"));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    // only string matchers were used, one slot each at most, whatever the number of threads
+    int retained = grok.matcherPool().retained();
+    assertTrue(String.valueOf(retained), retained > 0 && retained <= MatcherPool.STRIPES);
+    grok.matcherPool().clearCache();
+    assertEquals(0, grok.matcherPool().retained());
+    assertEquals("GET", grok.match(LINE).capture().get("verb"));
+    assertEquals(1, grok.matcherPool().retained());
+  }
+
+  @Test
+  public void strategyIsPartOfTheCompiledPattern() {
+    Grok striped = grok(MatcherPool.Strategy.STRIPED);
+    Grok perCall = grok(MatcherPool.Strategy.PER_CALL);
+    assertNotSame(striped, perCall);
+    assertEquals(MatcherPool.Strategy.STRIPED, striped.getMatcherPoolStrategy());
+    assertEquals(MatcherPool.Strategy.PER_CALL, perCall.getMatcherPoolStrategy());
+    assertSame(striped, grok(MatcherPool.Strategy.STRIPED));
+  }
+
+  @Test
+  public void defaultStrategyAppliesToNewCompilations() {
+    String pattern = "%{WORD:verb} %{INT:status}";
+    Grok before = compiler.compile(pattern);
+    MatcherPool.Strategy previous = MatcherPool.getDefaultStrategy();
+    MatcherPool.Strategy other = previous == MatcherPool.Strategy.PER_CALL
+        ? MatcherPool.Strategy.STRIPED : MatcherPool.Strategy.PER_CALL;
+    try {
+      MatcherPool.setDefaultStrategy(other);
+      Grok after = compiler.compile(pattern);
+      assertNotSame(before, after);
+      assertEquals(other, after.getMatcherPoolStrategy());
+      assertEquals(previous, before.getMatcherPoolStrategy());
+    } finally {
+      MatcherPool.setDefaultStrategy(previous);
+    }
+    assertSame(before, compiler.compile(pattern));
+  }
+
+  /**
+   * Executor running every task on a new virtual thread, {@code null} before Java 21.
+   */
+  private static ExecutorService virtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Run {@code tasks} tasks of {@code lines} matches on every pattern.
+   *
+   * @return elapsed nanos
+   */
+  private static long run(ExecutorService executor, List<Grok> groks, int tasks, int lines) throws Exception {
+    long start = System.nanoTime();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < tasks; t++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < lines; i++) {
+          for (Grok grok : groks) {
+            if (grok.match(LINE).isNull()) {
+              throw new AssertionError(grok.getOriginalGrokPattern());
+            }
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * @return heap in use after a collection, a rough figure
+   */
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private void compare(String label, ExecutorService executor) throws Exception {
+    try {
+      for (MatcherPool.Strategy strategy : MatcherPool.Strategy.values()) {
+        List<Grok> groks = new ArrayList<>();
+        compiler.setMatcherPoolStrategy(strategy);
+        for (int i = 0; i < 50; i++) {
+          groks.add(compiler.compile("%{IP:client} %{WORD:verb} %{NOTSPACE:path} %{INT:status:int}|x" + i));
+        }
+        long heapBefore = usedHeap();
+        run(executor, groks, 50, 20);
+        long nanos = run(executor, groks, 400, 20);
+        long heapAfter = usedHeap();
+        long allocations = 0;
+        long retained = 0;
+        for (Grok grok : groks) {
+          allocations += grok.matcherPool().allocations();
+          retained += grok.matcherPool().retained();
+        }
+        System.out.printf("%s, %s: %d ms, %d matchers allocated for %d patterns, %s, heap %+d KB%n", label,
+            strategy, TimeUnit.NANOSECONDS.toMillis(nanos), allocations, groks.size(),
+            strategy == MatcherPool.Strategy.STRIPED ? retained + " retained in the pools"
+                : strategy == MatcherPool.Strategy.THREAD_LOCAL ? "retained by the live threads" : "none retained",
+            (heapAfter - heapBefore) / 1024);
+        if (strategy == MatcherPool.Strategy.STRIPED) {
+          assertTrue(retained <= (long) MatcherPool.STRIPES * groks.size());
+        }
+        if (strategy == MatcherPool.Strategy.PER_CALL) {
+          assertEquals(450 * 20 * groks.size(), allocations);
+        }
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  @Test
+  public void strategiesOnPlatformThreads() throws Exception {
+    compare("platform threads", Executors.newFixedThreadPool(8));
+  }
+
+  @Test
+  public void strategiesOnVirtualThreads() throws Exception {
+    ExecutorService executor = virtualThreadExecutor();
+    Assume.assumeTrue("virtual threads not available", executor != null);
+    compare("virtual threads", executor);
+  }
+}
@@ -0,0 +1,144 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultilineAssemblerTest {
+
+  private static final List<String> TRACE = Arrays.asList(
+      "2024-01-02 10:00:00 ERROR request failed",
+      "java.lang.IllegalStateException: boom",
+      "  at com.example.Service.handle(Service.java:42)",
+      "  at com.example.Controller.get(Controller.java:7)",
+      "2024-01-02 10:00:01 INFO next request",
+      "2024-01-02 10:00:02 WARN slow");
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  private static List<String> texts(List<MultilineAssembler.Event> events) {
+    List<String> texts = new ArrayList<>();
+    for (MultilineAssembler.Event event : events) {
+      texts.add(event.getText());
+    }
+    return texts;
+  }
+
+  @Test
+  public void startRuleJoinsFollowingLines() {
+    MultilineAssembler assembler = MultilineAssembler.startingWith(
+        compiler.compile("^%{TIMESTAMP_ISO8601:ts} %{LOGLEVEL:level}"));
+    List<MultilineAssembler.Event> events = assembler.assemble(TRACE);
+    assertEquals(Arrays.asList(String.join("\n", TRACE.subList(0, 4)), TRACE.get(4), TRACE.get(5)),
+        texts(events));
+    assertEquals(4, events.get(0).getLineCount());
+    assertFalse(events.get(0).isTruncated());
+    assertEquals(0, assembler.getPendingLines());
+  }
+
+  @Test
+  public void continuationRuleJoinsMatchingLines() {
+    MultilineAssembler grokRule = MultilineAssembler.continuedBy(compiler.compile("^%{JAVASTACKTRACEPART}"));
+    MultilineAssembler prefixRule = MultilineAssembler.continuedByPrefix("  at ");
+    for (MultilineAssembler assembler : new MultilineAssembler[] {grokRule, prefixRule}) {
+      assertEquals(Arrays.asList(TRACE.get(0), String.join("\n", TRACE.subList(1, 4)), TRACE.get(4), TRACE.get(5)),
+          texts(assembler.assemble(TRACE)));
+    }
+  }
+
+  @Test
+  public void leadingContinuationLinesMakeTheirOwnEvent() {
+    MultilineAssembler assembler = MultilineAssembler.startingWithPrefix("2024-");
+    List<MultilineAssembler.Event> events =
+        assembler.assemble(Arrays.asList("  at orphan", "  at orphan2", "2024- start", "more"));
+    assertEquals(Arrays.asList("  at orphan\n  at orphan2", "2024- start\nmore"), texts(events));
+  }
+
+  @Test
+  public void streamingReturnsEventsAsTheyComplete() {
+    MultilineAssembler assembler = MultilineAssembler.startingWithPrefix("2024-");
+    assertNull(assembler.offer(TRACE.get(0)));
+    assertNull(assembler.offer(TRACE.get(1)));
+    assertNull(assembler.offer(TRACE.get(2)));
+    assertNull(assembler.offer(TRACE.get(3)));
+    assertEquals(4, assembler.offer(TRACE.get(4)).getLineCount());
+    assertEquals(TRACE.get(4), assembler.offer(TRACE.get(5)).getText());
+    assertEquals(TRACE.get(5), assembler.flush().getText());
+    assertNull(assembler.flush());
+  }
+
+  @Test
+  public void idleTimeoutCompletesThePendingEvent() {
+    MultilineAssembler assembler = MultilineAssembler.startingWithPrefix("2024-");
+    long now = 0;
+    assembler.offer(TRACE.get(0), now);
+    assembler.offer(TRACE.get(1), now + 10);
+    assertNull(assembler.pollIdle(now + TimeUnit.SECONDS.toNanos(60)));
+
+    assembler.setIdleTimeout(2, TimeUnit.SECONDS);
+    assertNull(assembler.pollIdle(now + TimeUnit.SECONDS.toNanos(1)));
+    MultilineAssembler.Event event = assembler.pollIdle(now + TimeUnit.SECONDS.toNanos(3));
+    assertEquals(2, event.getLineCount());
+    assertNull(assembler.pollIdle(now + TimeUnit.SECONDS.toNanos(10)));
+  }
+
+  @Test
+  public void limitsCutPathologicalEvents() {
+    MultilineAssembler assembler = MultilineAssembler.continuedByPrefix(" ");
+    assembler.setMaxLines(3);
+    List<String> lines = new ArrayList<>();
+    lines.add("start");
+    for (int i = 0; i < 7; i++) {
+      lines.add(" " + i);
+    }
+    List<MultilineAssembler.Event> events = assembler.assemble(lines);
+    assertEquals(Arrays.asList("start\n 0\n 1", " 2\n 3\n 4", " 5\n 6"), texts(events));
+    assertTrue(events.get(0).isTruncated());
+    assertTrue(events.get(1).isTruncated());
+    assertFalse(events.get(2).isTruncated());
+
+    assembler = MultilineAssembler.continuedByPrefix(" ");
+    assembler.setMaxBytes(10);
+    // "é" is 2 bytes in UTF-8: "start\n é" is 9 bytes, adding "\n é" would make 13
+    events = assembler.assemble(Arrays.asList("start", " é", " é", "a very long single line"));
+    assertEquals(Arrays.asList("start\n é", " é", "a very long single line"), texts(events));
+    assertTrue(events.get(0).isTruncated());
+  }
+
+  @Test
+  public void endlessContinuationStaysBounded() {
+    MultilineAssembler assembler = MultilineAssembler.continuedByPrefix("\t");
+    assembler.setMaxBytes(64 * 1024);
+    String line = "\tat " + String.join("", Collections.nCopies(100, "x"));
+    assembler.offer("start");
+    long emitted = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < 1_000_000; i++) {
+      MultilineAssembler.Event event = assembler.offer(line);
+      if (event != null) {
+        emitted++;
+        assertTrue(event.getText().length() <= 64 * 1024);
+      }
+      assertTrue(assembler.getPendingLines() <= MultilineAssembler.DEFAULT_MAX_LINES);
+    }
+    System.out.printf("multiline: 1M continuation lines in %d ms, %d events%n",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), emitted);
+    assertTrue(emitted > 0);
+  }
+}
@@ -0,0 +1,130 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelCaptureTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+  }
+
+  private static List<String> accessLogs(int count) {
+    List<String> logs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      logs.add("10.0." + (i / 256 % 256) + "." + (i % 256)
+          + " - - [06/Mar/2013:01:36:30 +0900] \"GET /item/" + i + " HTTP/1.1\" 200 " + i
+          + " \"-\" \"curl\"");
+    }
+    return logs;
+  }
+
+  @Test
+  public void resultsComeBackInInputOrder() throws Exception {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    List<String> logs = accessLogs(5000);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Map<String, Object>> parallel = grok.capture(logs, executor, 100);
+      assertEquals(logs.size(), parallel.size());
+      for (int i = 0; i < logs.size(); i++) {
+        assertEquals("/item/" + i, parallel.get(i).get("request"));
+      }
+      assertEquals(grok.capture(logs), parallel);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void smallBatchesStayOnCallingThread() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    List<String> logs = accessLogs(10);
+    ExecutorService rejecting = Executors.newSingleThreadExecutor();
+    rejecting.shutdown();
+
+    List<Map<String, Object>> captured = grok.capture(logs, rejecting);
+    assertEquals("/item/9", captured.get(9).get("request"));
+  }
+
+  @Test
+  public void failingChunkIsIsolated() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    List<String> logs = accessLogs(400);
+    ExecutorService rejecting = Executors.newSingleThreadExecutor();
+    rejecting.shutdown();
+
+    List<Map<String, Object>> captured = grok.capture(logs, rejecting, 100);
+    assertEquals(400, captured.size());
+    for (Map<String, Object> map : captured) {
+      assertTrue(map.get(Grok.FAILURE_KEY).toString().contains("RejectedExecutionException"));
+    }
+  }
+
+  @Test
+  public void failingLineIsIsolated() {
+    Grok grok = compiler.compile("%{COMBINEDAPACHELOG}");
+    List<String> logs = accessLogs(300);
+    char[] huge = new char[Grok.getMaxInputLength() + 1];
+    logs.set(150, new String(huge));
+
+    List<Map<String, Object>> captured = grok.capture(logs, ForkJoinPool.commonPool(), 50);
+    assertEquals(Collections.singleton(Grok.FAILURE_KEY), captured.get(150).keySet());
+    assertEquals("/item/149", captured.get(149).get("request"));
+    assertEquals("/item/151", captured.get(151).get("request"));
+  }
+
+  /**
+   * Throughput of the sample corpora against the number of worker threads.
+   */
+  @Test
+  public void scalingBenchmarkOnSampleCorpora() throws Exception {
+    PatternRepository repo = PatternRepository.getInstance();
+    List<Grok> groks = new ArrayList<>();
+    List<List<String>> corpora = new ArrayList<>();
+    for (PatternType type : PatternType.values()) {
+      for (Map.Entry<String, String> sample : repo.getSampleLogs(type).entrySet()) {
+        try {
+          groks.add(compiler.compile("%{" + sample.getKey() + "}"));
+        } catch (Exception e) {
+          continue;
+        }
+        corpora.add(Collections.nCopies(200, sample.getValue()));
+      }
+    }
+
+    int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        long lines = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < groks.size(); i++) {
+          lines += groks.get(i).capture(corpora.get(i), executor, 32).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("parallel capture: %2d threads, %d lines, %.0f lines/s%n",
+            threads, lines, lines / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)));
+      } finally {
+        executor.shutdown();
+      }
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PatternExpanderTest {
+
+  private Map<String, String> definitions;
+
+  @Before
+  public void setUp() throws Exception {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerAllPatterns();
+    definitions = new HashMap<>(compiler.getPatternDefinitions());
+  }
+
+  /**
+   * Expansion by both implementations: regex, group names, definitions afterwards, or the error.
+   */
+  private List<Object> both(String pattern, boolean namedOnly, Map<String, String> renames) {
+    List<Object> graph = expand(pattern, namedOnly, renames, false);
+    List<Object> rescan = expand(pattern, namedOnly, renames, true);
+    assertEquals(pattern, rescan, graph);
+    return graph;
+  }
+
+  private List<Object> expand(String pattern, boolean namedOnly, Map<String, String> renames, boolean rescan) {
+    Map<String, String> copy = new HashMap<>(definitions);
+    Map<String, String> names = new HashMap<>();
+    List<Object> result = new ArrayList<>();
+    try {
+      result.add(rescan
+          ? GrokCompiler.expandByRescan(pattern, copy, namedOnly, renames, names)
+          : expandInto(pattern, copy, namedOnly, renames, names));
+      result.add(names);
+      result.add(copy);
+    } catch (IllegalArgumentException e) {
+      result.add(e.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * Graph expansion with the inline definitions added to {@code definitions}, as the rescan does.
+   */
+  private static String expandInto(String pattern, Map<String, String> definitions, boolean namedOnly,
+      Map<String, String> renames, Map<String, String> names) {
+    Map<String, String> inline = new HashMap<>();
+    String regex = PatternExpander.expand(pattern, definitions, inline, namedOnly, renames, names);
+    definitions.putAll(inline);
+    return regex;
+  }
+
+  @Test
+  public void everyRegisteredPatternExpandsAsBefore() {
+    for (String name : definitions.keySet()) {
+      for (boolean namedOnly : new boolean[] {false, true}) {
+        both("%{" + name + "}", namedOnly, Collections.emptyMap());
+        both("%{" + name + ":message} %{" + name + ":field} x %{" + name + "}", namedOnly,
+            GrokCompiler.getReservedKeywords());
+      }
+    }
+  }
+
+  @Test
+  public void repeatedAndNestedReferencesKeepTheirNumbering() {
+    definitions.put("AA", "%{CC}-%{BB:bb}");
+    definitions.put("BB", "b+");
+    definitions.put("CC", "%{BB} %{BB:bb}");
+    String[] patterns = {
+        "%{AA} %{BB} %{AA}",
+        "%{AA:aa} %{AA} %{CC} %{BB:bb} %{AA:aa}",
+        "%{FOO=\\d+} %{FOO} %{FOO:foo} %{FOO=\\d+}",
+        "%{BAR:x=[a-z]+} and %{BAR}",
+        "%{WORD:[log][level]} %{BB:[log][level]}",
+        "%{IP:client} %{WORD:timestamp} %{NUMBER:time:int} %{AA}",
+        "%{DATA:@metadata} %{A} %{BB}",
+        "no reference at all",
+    };
+    for (String pattern : patterns) {
+      for (boolean namedOnly : new boolean[] {false, true}) {
+        both(pattern, namedOnly, GrokCompiler.getReservedKeywords());
+        both(pattern, namedOnly, Collections.emptyMap());
+      }
+    }
+    Map<String, String> names = new HashMap<>();
+    String regex = PatternExpander.expand("%{AA} %{BB} %{AA}", definitions, new HashMap<>(), false,
+        Collections.emptyMap(), names);
+    // every occurrence of a reference text is numbered at once, leftmost text first
+    assertEquals("(?<name0>(?<name2>(?<name4>b+) (?<name7>b+))-(?<name8>b+)) (?<name5>b+) "
+        + "(?<name1>(?<name3>(?<name6>b+) (?<name9>b+))-(?<name10>b+))", regex);
+    assertEquals("bb", names.get("name10"));
+    assertEquals("BB", names.get("name6"));
+  }
+
+  @Test
+  public void errorsAreTheSame() {
+    definitions.put("LOOP", "x%{LOOP}");
+    definitions.put("PING", "%{PONG}");
+    definitions.put("PONG", "%{PING}");
+    assertEquals("Deep recursion pattern compilation of %{LOOP}",
+        both("%{LOOP}", false, Collections.emptyMap()).get(0));
+    both("%{PING} %{LOOP}", false, Collections.emptyMap());
+    assertEquals("No definition for key 'MISSING' found, aborting",
+        both("%{WORD} %{MISSING}", false, Collections.emptyMap()).get(0));
+
+    // a thousand distinct references need more steps than allowed
+    StringBuilder wide = new StringBuilder();
+    for (int i = 0; i < PatternExpander.MAX_ITERATIONS; i++) {
+      definitions.put("P" + i, "p");
+      wide.append("%{P").append(i).append("}");
+    }
+    assertEquals("Deep recursion pattern compilation of " + wide,
+        both(wide.toString(), false, Collections.emptyMap()).get(0));
+    wide.setLength(wide.length() - ("%{P" + (PatternExpander.MAX_ITERATIONS - 1) + "}").length());
+    both(wide.toString(), false, Collections.emptyMap());
+  }
+
+  @Test
+  public void unclosedReferenceFallsBackToRescan() {
+    // once expanded, "%{XX=a" and the text after it form an inline definition
+    definitions.put("OPEN", "%{XX=a");
+    assertNull(PatternExpander.expand("%{OPEN}b}", definitions, new HashMap<>(), false,
+        Collections.emptyMap(), new HashMap<>()));
+
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.register(definitions);
+    assertEquals("(?<name0>(?<name1>a)b)", compiler.compile("%{OPEN}b}").getNamedRegex());
+
+    assertNull(PatternExpander.expand("%{WORD} %{BB", definitions, new HashMap<>(), false,
+        Collections.emptyMap(), new HashMap<>()));
+    assertEquals("(?<name0>\\b\\w+\\b) %{BB", compiler.compile("%{WORD} %{BB").getNamedRegex());
+  }
+
+  @Test
+  public void expansionThroughput() {
+    List<String> patterns = new ArrayList<>();
+    for (String name : definitions.keySet()) {
+      patterns.add("%{" + name + ":field} %{" + name + "}");
+    }
+    long rescanNanos = 0;
+    long graphNanos = 0;
+    int sink = 0;
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (String pattern : patterns) {
+        try {
+          sink += GrokCompiler.expandByRescan(pattern, new HashMap<>(definitions), false,
+              Collections.emptyMap(), new HashMap<>()).length();
+        } catch (IllegalArgumentException e) {
+          sink++;
+        }
+      }
+      long middle = System.nanoTime();
+      for (String pattern : patterns) {
+        try {
+          sink -= PatternExpander.expand(pattern, definitions, new HashMap<>(), false,
+              Collections.emptyMap(), new HashMap<>()).length();
+        } catch (IllegalArgumentException e) {
+          sink--;
+        }
+      }
+      if (round > 0) {
+        rescanNanos += middle - start;
+        graphNanos += System.nanoTime() - middle;
+      }
+    }
+    assertEquals(0, sink);
+    System.out.printf("expansion of %d patterns: rescan %d ms, graph %d ms%n", patterns.size(),
+        TimeUnit.NANOSECONDS.toMillis(rescanNanos / 2), TimeUnit.NANOSECONDS.toMillis(graphNanos / 2));
+  }
+}
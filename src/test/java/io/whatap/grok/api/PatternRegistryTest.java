@@ -0,0 +1,105 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PatternRegistryTest {
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+  }
+
+  @Test
+  public void groksOfOneVersionShareTheDefinitions() {
+    Grok first = compiler.compile("%{WORD:verb} %{NOTSPACE:path}");
+    Grok second = compiler.compile("%{IP:client} %{INT:status}");
+    assertSame(compiler.getPatternDefinitions(), first.getPatterns());
+    assertSame(first.getPatterns(), second.getPatterns());
+  }
+
+  @Test
+  public void registrationPublishesANewVersion() throws Exception {
+    long version = compiler.getPatternVersion();
+    Map<String, String> before = compiler.getPatternDefinitions();
+    Grok old = compiler.compile("%{WORD:verb}");
+
+    compiler.register("VERB", "GET|POST");
+    assertEquals(version + 1, compiler.getPatternVersion());
+    assertFalse(before.containsKey("VERB"));
+    assertEquals("GET|POST", compiler.getPatternDefinitions().get("VERB"));
+    assertSame(before, old.getPatterns());
+
+    Grok recompiled = compiler.compile("%{WORD:verb}");
+    assertNotSame(old, recompiled);
+    assertSame(compiler.getPatternDefinitions(), recompiled.getPatterns());
+
+    // same definition again, or a batch: at most one new version
+    compiler.register("VERB", "GET|POST");
+    assertEquals(version + 1, compiler.getPatternVersion());
+    compiler.register(new StringReader("STATUS \\d{3}\nLEVEL (INFO|WARN)\n"));
+    assertEquals(version + 2, compiler.getPatternVersion());
+    Map<String, String> batch = new HashMap<>();
+    batch.put("AA", "a");
+    batch.put("BB", "b");
+    compiler.register(batch);
+    assertEquals(version + 3, compiler.getPatternVersion());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void definitionsAreReadOnly() {
+    compiler.getPatternDefinitions().put("VERB", "GET");
+  }
+
+  @Test
+  public void inlineDefinitionsGetTheirOwnCopy() {
+    Grok grok = compiler.compile("%{VERB:verb=GET|POST} %{VERB}");
+    assertEquals("GET|POST", grok.getPatterns().get("VERB"));
+    assertFalse(compiler.getPatternDefinitions().containsKey("VERB"));
+    assertEquals("POST", grok.match("GET POST").capture().get("VERB"));
+  }
+
+  @Test
+  public void retainedDefinitionMaps() {
+    String[] patterns = new String[200];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = "%{WORD:verb} %{NOTSPACE:path} " + i;
+    }
+    long start = System.nanoTime();
+    Map<Map<String, String>, Boolean> shared = new IdentityHashMap<>();
+    for (String pattern : patterns) {
+      shared.put(compiler.compile(pattern).getPatterns(), true);
+    }
+    long compileNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    Map<Map<String, String>, Boolean> copied = new IdentityHashMap<>();
+    for (int i = 0; i < patterns.length; i++) {
+      // what every compilation used to retain
+      copied.put(new HashMap<>(compiler.getPatternDefinitions()), true);
+    }
+    long copyNanos = System.nanoTime() - start;
+
+    assertEquals(Collections.singleton(compiler.getPatternDefinitions()), shared.keySet());
+    assertEquals(patterns.length, copied.size());
+    System.out.printf("%d compilations: %d shared definition map(s) in %d ms, copying alone took %d ms "
+            + "for %d maps of %d entries%n", patterns.length, shared.size(),
+        TimeUnit.NANOSECONDS.toMillis(compileNanos), TimeUnit.NANOSECONDS.toMillis(copyNanos),
+        copied.size(), compiler.getPatternDefinitions().size());
+  }
+}
@@ -0,0 +1,183 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SliceParserTest {
+
+  private static final String[] SAMPLES = {
+      "0", "-0", "+0", "7", "-7", "+7", "00012", "127", "128", "-128", "-129", "32767", "32768",
+      "2147483647", "2147483648", "-2147483648", "-2147483649", "9223372036854775807",
+      "9223372036854775808", "-9223372036854775808", "-9223372036854775809", "99999999999999999999",
+      "", "-", "+", "1-", "1 ", " 1", "12a", "a12", "١٢٣", "１２",
+      "1.5", "-0.0", ".5", "5.", ".", "1e5", "1E-5", "1e", "e5", "1.2.3", "3.4028235e38", "1e39",
+      "0.1", "0.30000000000000004", "123456789012345", "1234567890123456789", "2.2250738585072014E-308",
+      "4.9e-324", "1e-400", "1e400", "0x1p3", "NaN", "-Infinity", "1d", "2.5f", " 2.5 ", "1_000",
+      "true", "TRUE", "tRuE", "false", "yes", "truee", "tru"
+  };
+
+  private static Object jdk(Converter.Type type, String value) {
+    try {
+      return type.converter.convert(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static Object slice(Converter.Type type, String value) {
+    SliceParser parser = new SliceParser();
+    // parse from the middle of a larger sequence
+    String text = "<<" + value + ">>";
+    int status = parser.parse(type, text, 2, 2 + value.length());
+    return status == SliceParser.OK ? parser.value(type) : null;
+  }
+
+  @Test
+  public void agreesWithTheJdkParsers() {
+    Converter.Type[] types = {Converter.Type.BYTE, Converter.Type.SHORT, Converter.Type.INT,
+        Converter.Type.LONG, Converter.Type.FLOAT, Converter.Type.DOUBLE, Converter.Type.BOOLEAN};
+    for (Converter.Type type : types) {
+      for (String sample : SAMPLES) {
+        assertEquals(type + " '" + sample + "'", jdk(type, sample), slice(type, sample));
+      }
+    }
+  }
+
+  @Test
+  public void randomDecimalsAreCorrectlyRounded() {
+    Random random = new Random(42);
+    for (int i = 0; i < 200_000; i++) {
+      StringBuilder value = new StringBuilder();
+      if (random.nextBoolean()) {
+        value.append('-');
+      }
+      value.append(random.nextInt(100_000));
+      if (random.nextBoolean()) {
+        value.append('.');
+        int decimals = random.nextInt(12);
+        for (int d = 0; d < decimals; d++) {
+          value.append(random.nextInt(10));
+        }
+      }
+      if (random.nextInt(4) == 0) {
+        value.append('e').append(random.nextInt(50) - 25);
+      }
+      String text = value.toString();
+      assertEquals(text, jdk(Converter.Type.DOUBLE, text), slice(Converter.Type.DOUBLE, text));
+      assertEquals(text, jdk(Converter.Type.FLOAT, text), slice(Converter.Type.FLOAT, text));
+      String integer = Long.toString(random.nextLong() >> random.nextInt(64));
+      assertEquals(integer, jdk(Converter.Type.LONG, integer), slice(Converter.Type.LONG, integer));
+      assertEquals(integer, jdk(Converter.Type.INT, integer), slice(Converter.Type.INT, integer));
+    }
+  }
+
+  @Test
+  public void statusCodes() {
+    SliceParser parser = new SliceParser();
+    assertEquals(SliceParser.OK, parser.parseInt("x=-42;", 2, 5));
+    assertEquals(-42, parser.intValue());
+    assertEquals(SliceParser.MALFORMED, parser.parseInt("x=-4a;", 2, 5));
+    assertEquals(SliceParser.MALFORMED, parser.parseInt("", 0, 0));
+    assertEquals(SliceParser.OUT_OF_RANGE, parser.parseByte("300", 0, 3));
+    assertEquals(SliceParser.OUT_OF_RANGE, parser.parseLong("99999999999999999999", 0, 20));
+    assertEquals(SliceParser.OK, parser.parseDouble("v=1.25", 2, 6));
+    assertEquals(1.25, parser.doubleValue(), 0);
+    assertEquals(SliceParser.MALFORMED, parser.parseDouble("1.2.3", 0, 5));
+    assertEquals(SliceParser.OK, parser.parseBoolean("yes", 0, 3));
+    assertFalse(parser.booleanValue());
+  }
+
+  @Test
+  public void typedAccessorsReadTheSubject() {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    Grok grok = compiler.compile("%{WORD:verb} %{NUMBER:bytes:int} %{NUMBER:took:float} %{WORD:cached:boolean}");
+    Match match = grok.match("GET 1024 0.25 TRUE");
+    int bytes = indexOf(grok, "bytes");
+    int took = indexOf(grok, "took");
+    int cached = indexOf(grok, "cached");
+    assertEquals(1024, match.getInt(bytes, -1));
+    assertEquals(1024L, match.getLong(bytes, -1));
+    assertEquals(0.25, match.getDouble(took, -1), 0);
+    assertTrue(match.getBoolean(cached, false));
+    assertEquals(-1, match.getInt(took, -1));
+    assertEquals(-1, match.getInt(indexOf(grok, "verb"), -1));
+
+    Map<String, Object> capture = match.capture();
+    assertEquals(1024, capture.get("bytes"));
+    assertEquals(0.25f, capture.get("took"));
+    assertEquals(Boolean.TRUE, capture.get("cached"));
+
+    Match failed = grok.match("GET 10.5 0.25 no");
+    assertEquals(-1, failed.getInt(bytes, -1));
+    assertEquals("10.5", failed.capture().get("bytes"));
+    assertTrue(failed.capture().containsKey("bytes_grokfailure"));
+    assertEquals(null, failed.getValue(bytes));
+
+    byte[] utf8 = "GET 7 1.5 false".getBytes(StandardCharsets.UTF_8);
+    Match byteMatch = grok.match(utf8, 0, utf8.length);
+    assertEquals(7, byteMatch.getInt(bytes, -1));
+    assertEquals(7, byteMatch.getValue(bytes));
+  }
+
+  private static int indexOf(Grok grok, String name) {
+    for (GrokField field : grok.getFields()) {
+      if (field.getName().equals(name)) {
+        return field.getIndex();
+      }
+    }
+    throw new AssertionError(name);
+  }
+
+  @Test
+  public void sliceParsingVersusValueOf() {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    Grok grok = compiler.compile(
+        "%{NUMBER:status:int} %{NUMBER:bytes:int} %{NUMBER:upstream:long} %{NUMBER:took:double}");
+    List<Match> matches = new ArrayList<>();
+    Random random = new Random(7);
+    for (int i = 0; i < 20_000; i++) {
+      matches.add(grok.match((200 + random.nextInt(300)) + " " + random.nextInt(1 << 20) + " "
+          + random.nextLong() / 1000 + " " + random.nextInt(5000) / 1000.0));
+    }
+    int[] fields = {0, 1, 2, 3};
+    long valueOfNanos = 0;
+    long sliceNanos = 0;
+    double sink = 0;
+    for (int round = 0; round < 6; round++) {
+      long start = System.nanoTime();
+      for (Match match : matches) {
+        sink += Integer.valueOf(match.getString(fields[0]));
+        sink += Integer.valueOf(match.getString(fields[1]));
+        sink += Long.valueOf(match.getString(fields[2]));
+        sink += Double.valueOf(match.getString(fields[3]));
+      }
+      long middle = System.nanoTime();
+      for (Match match : matches) {
+        sink -= match.getInt(fields[0], 0);
+        sink -= match.getInt(fields[1], 0);
+        sink -= match.getLong(fields[2], 0);
+        sink -= match.getDouble(fields[3], 0);
+      }
+      if (round > 1) {
+        valueOfNanos += middle - start;
+        sliceNanos += System.nanoTime() - middle;
+      }
+    }
+    assertFalse(Double.isNaN(sink));
+    System.out.printf("numeric fields: substring+valueOf %.1f ms, slice parser %.1f ms%n",
+        valueOfNanos / (double) TimeUnit.MILLISECONDS.toNanos(1),
+        sliceNanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
@@ -0,0 +1,154 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamMatchTest {
+
+  private Grok grok;
+
+  @Before
+  public void setUp() throws Exception {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    grok = compiler.compile("%{WORD:verb} /item/%{INT:id}");
+  }
+
+  /**
+   * Returns at most one character per read, to cut lines and terminators at every position.
+   */
+  private static Reader trickle(String text) {
+    return new StringReader(text) {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        return super.read(buffer, offset, Math.min(1, length));
+      }
+    };
+  }
+
+  private static List<String> readLines(String text) throws IOException {
+    return new BufferedReader(new StringReader(text)).lines().collect(Collectors.toList());
+  }
+
+  private static List<String> split(Reader reader, int bufferSize) throws IOException {
+    LineSpliterator lines = new LineSpliterator(reader, bufferSize);
+    List<String> out = new ArrayList<>();
+    String line;
+    while ((line = lines.nextLine()) != null) {
+      out.add(line);
+    }
+    return out;
+  }
+
+  @Test
+  public void linesAreSplitLikeReadLine() throws Exception {
+    String longLine = String.join("", Collections.nCopies(300, "x"));
+    for (String text : new String[] {"", "\n", "a", "a\n", "a\r\nb\rc\n\rd", "\r\r\n\n",
+        "GET /item/1\r\n" + longLine + "\r\n\r\nlast", longLine}) {
+      for (int bufferSize : new int[] {1, 2, 7, LineSpliterator.BUFFER_SIZE}) {
+        assertEquals(text, readLines(text), split(new StringReader(text), bufferSize));
+        assertEquals(text, readLines(text), split(trickle(text), bufferSize));
+      }
+    }
+  }
+
+  @Test
+  public void streamHasOneMatchPerLine() {
+    List<Map<String, Object>> captures = grok.stream(new StringReader("GET /item/1\nnope\r\nPUT /item/2"))
+        .map(Match::capture)
+        .collect(Collectors.toList());
+    assertEquals(3, captures.size());
+    assertEquals("1", captures.get(0).get("id").toString());
+    assertTrue(captures.get(1).isEmpty());
+    assertEquals("PUT", captures.get(2).get("verb"));
+  }
+
+  @Test
+  public void inputStreamIsDecoded() {
+    byte[] bytes = "GET /item/7 é\n".getBytes(StandardCharsets.UTF_8);
+    try (Stream<Match> matches = grok.stream(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+      assertEquals("GET /item/7 é", matches.findFirst().get().getSubject());
+    }
+  }
+
+  @Test
+  public void streamIsLazyAndClosesTheReader() {
+    AtomicLong reads = new AtomicLong();
+    AtomicBoolean closed = new AtomicBoolean();
+    Reader endless = new Reader() {
+      private long line;
+
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        reads.incrementAndGet();
+        char[] next = ("GET /item/" + line++ + "\n").toCharArray();
+        int count = Math.min(length, next.length);
+        System.arraycopy(next, 0, buffer, offset, count);
+        return count;
+      }
+
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+    try (Stream<Match> matches = grok.stream(endless)) {
+      List<Object> ids = matches.limit(3).map(match -> match.capture().get("id"))
+          .collect(Collectors.toList());
+      assertEquals(3, ids.size());
+      assertTrue(reads.get() < 10);
+    }
+    assertTrue(closed.get());
+  }
+
+  @Test
+  public void parallelStreamKeepsOrder() throws Exception {
+    StringBuilder text = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      text.append(i % 9 == 0 ? "skip " + i : "GET /item/" + i).append(i % 2 == 0 ? "\n" : "\r\n");
+      expected.add(i % 9 == 0 ? "-" : String.valueOf(i));
+    }
+    List<String> ids = grok.stream(new StringReader(text.toString()))
+        .parallel()
+        .map(match -> match.isNull() ? "-" : match.capture().get("id").toString())
+        .collect(Collectors.toList());
+    assertEquals(expected, ids);
+    assertEquals(expected.stream().filter(id -> !id.equals("-")).count(),
+        grok.stream(new StringReader(text.toString())).parallel().filter(match -> !match.isNull()).count());
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void readErrorsAreUnchecked() {
+    Reader failing = new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        throw new IOException("disk");
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    grok.stream(failing).count();
+  }
+}
@@ -0,0 +1,257 @@
+package io.whatap.grok.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StringInternerTest {
+
+  private static final String[] VERBS = {"GET", "POST", "PUT", "DELETE", "HEAD"};
+
+  private static final String PATTERN = "%{WORD:verb} %{NOTSPACE:path} %{INT:status} %{INT:bytes:int}";
+
+  private GrokCompiler compiler;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+  }
+
+  private static int indexOf(Grok grok, String name) {
+    for (GrokField field : grok.getFields()) {
+      if (field.getName().equals(name)) {
+        return field.getIndex();
+      }
+    }
+    throw new AssertionError(name);
+  }
+
+  @Test
+  public void returnsCanonicalInstances() {
+    StringInterner interner = new StringInterner(4);
+    String first = interner.intern("x GET y", 2, 5);
+    assertEquals("GET", first);
+    assertSame(first, interner.intern("GET", 0, 3));
+    assertSame(first, interner.intern("GET".getBytes(StandardCharsets.UTF_8), 0, 3));
+    assertEquals("", interner.intern("abc", 1, 1));
+    assertEquals(2, interner.size());
+
+    String accented = interner.intern("é".getBytes(StandardCharsets.UTF_8), 0, 2);
+    assertEquals("é", accented);
+    assertSame(accented, interner.intern("é", 0, 1));
+  }
+
+  @Test
+  public void fullDictionaryStillReturnsEqualValues() {
+    StringInterner interner = new StringInterner(2);
+    String a = interner.intern("a", 0, 1);
+    interner.intern("b", 0, 1);
+    String c = interner.intern("xc", 1, 2);
+    assertEquals("c", c);
+    assertNotSame(c, interner.intern("xc", 1, 2));
+    assertSame(a, interner.intern("a", 0, 1));
+    assertEquals(2, interner.size());
+    assertTrue(interner.isEnabled());
+  }
+
+  @Test
+  public void adaptiveInternerGivesUpOnHighCardinality() {
+    StringInterner interner = StringInterner.adaptive(8);
+    for (int i = 0; i < 8; i++) {
+      interner.intern("v" + i, 0, 2);
+    }
+    assertTrue(interner.isEnabled());
+    for (int i = 0; i < 100; i++) {
+      String value = "w" + i;
+      assertEquals(value, interner.intern(value, 0, value.length()));
+    }
+    assertFalse(interner.isEnabled());
+    assertEquals("v1", interner.intern("v1", 0, 2));
+  }
+
+  @Test
+  public void adaptiveInternerCountsDistinctValues() {
+    StringInterner single = StringInterner.adaptive(1);
+    single.intern("a", 0, 1);
+    assertEquals("b", single.intern("b", 0, 1));
+    assertTrue(single.isEnabled());
+
+    StringInterner interner = StringInterner.adaptive(8);
+    for (int i = 0; i < 8; i++) {
+      interner.intern("v" + i, 0, 2);
+    }
+    // a few unknown values on every line are no sign of a high cardinality
+    for (int i = 0; i < 1000; i++) {
+      String value = "w" + (i % 3);
+      assertEquals(value, interner.intern(value, 0, value.length()));
+    }
+    assertTrue(interner.isEnabled());
+    assertEquals(8, interner.size());
+  }
+
+  @Test
+  public void matchesShareFieldValues() {
+    compiler.setInterning("verb", 16);
+    Grok grok = compiler.compile(PATTERN);
+    int verb = indexOf(grok, "verb");
+    int path = indexOf(grok, "path");
+    Match first = grok.match("GET /a 200 10");
+    Match second = grok.match("GET /b 404 20");
+    assertSame(first.getString(verb), second.getString(verb));
+    assertSame(first.capture().get("verb"), second.capture().get("verb"));
+    assertNotSame(grok.match("GET /a 200 1").getString(path), grok.match("GET /a 200 1").getString(path));
+
+    byte[] bytes = "GET /c 500 1".getBytes(StandardCharsets.UTF_8);
+    assertSame(first.getString(verb), grok.match(bytes, 0, bytes.length).getString(verb));
+
+    ColumnarBatch batch = grok.captureColumnar(Arrays.asList("GET /a 200 1", "GET /b 200 2"));
+    assertSame(first.getString(verb), batch.getColumn("verb").getStrings()[0]);
+    assertSame(first.getString(verb), batch.getColumn("verb").getStrings()[1]);
+
+    compiler.setInterning("verb", 0);
+    assertNull(compiler.compile(PATTERN).getInterner(verb));
+    assertNotNull(grok.getInterner(verb));
+  }
+
+  @Test
+  public void interningIsPartOfTheCompiledPattern() {
+    Grok plain = compiler.compile(PATTERN);
+    compiler.setInterning("verb", 16);
+    Grok interned = compiler.compile(PATTERN);
+    assertNotSame(plain, interned);
+    assertNull(plain.getInterner(indexOf(plain, "verb")));
+    assertNotNull(interned.getInterner(indexOf(interned, "verb")));
+    assertSame(interned, compiler.compile(PATTERN));
+
+    compiler.setAutoInterning(true);
+    Grok auto = compiler.compile(PATTERN);
+    assertNotSame(interned, auto);
+    assertNull(interned.getInterner(indexOf(interned, "path")));
+    assertNotNull(auto.getInterner(indexOf(auto, "path")));
+  }
+
+  @Test
+  public void autoInterningSkipsTypedAndHighCardinalityFields() {
+    compiler.setInterning("status", 4);
+    compiler.setAutoInterning(true);
+    Grok grok = compiler.compile(PATTERN);
+    assertEquals(4, grok.getInterner(indexOf(grok, "status")).getMaxSize());
+    assertNull(grok.getInterner(indexOf(grok, "bytes")));
+    for (int i = 0; i < 2 * StringInterner.DEFAULT_MAX_SIZE + 10; i++) {
+      grok.match(VERBS[i % VERBS.length] + " /item/" + i + " 200 1").capture();
+    }
+    assertTrue(grok.getInterner(indexOf(grok, "verb")).isEnabled());
+    assertEquals(VERBS.length, grok.getInterner(indexOf(grok, "verb")).size());
+    assertFalse(grok.getInterner(indexOf(grok, "path")).isEnabled());
+
+    compiler.setAutoInterning(false);
+    Grok manual = compiler.compile(PATTERN);
+    assertNull(manual.getInterner(indexOf(manual, "verb")));
+    assertEquals(4, manual.getInterner(indexOf(manual, "status")).getMaxSize());
+  }
+
+  @Test
+  public void typedFieldsAreNotInterned() {
+    compiler.setInterning("bytes", 16);
+    Grok grok = compiler.compile(PATTERN);
+    assertNull(grok.getInterner(indexOf(grok, "bytes")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeMaxSizeIsRejected() {
+    compiler.setInterning("verb", -1);
+  }
+
+  @Test
+  public void concurrentInterningAgreesOnOneInstance() throws Exception {
+    StringInterner interner = new StringInterner(64);
+    Set<String> seen = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    Map<String, String> canonical = new ConcurrentHashMap<>();
+    List<Thread> threads = new ArrayList<>();
+    List<AssertionError> errors = Collections.synchronizedList(new ArrayList<>());
+    for (int t = 0; t < 4; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 20_000; i++) {
+          String value = interner.intern("k" + (i % 32), 0, 1 + String.valueOf(i % 32).length());
+          seen.add(value);
+          String previous = canonical.putIfAbsent(value, value);
+          if (previous != null && previous != value) {
+            errors.add(new AssertionError(value));
+            return;
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(Collections.emptyList(), errors);
+    assertEquals(32, interner.size());
+  }
+
+  @Test
+  public void retainedValuesWithAndWithoutInterning() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      lines.add(VERBS[i % VERBS.length] + " /item/" + (i % 50) + " " + (200 + i % 3) + " " + i);
+    }
+    Grok grok = compiler.compile(PATTERN);
+    compiler.setInterning("verb", 16);
+    compiler.setInterning("status", 16);
+    Grok internedGrok = compiler.compile(PATTERN);
+    int verb = indexOf(grok, "verb");
+    int status = indexOf(grok, "status");
+    long plainNanos = 0;
+    long internedNanos = 0;
+    int plainDistinct = 0;
+    int internedDistinct = 0;
+    for (int round = 0; round < 4; round++) {
+      Map<String, Boolean> plain = new IdentityHashMap<>();
+      long start = System.nanoTime();
+      for (String line : lines) {
+        Match match = grok.match(line);
+        plain.put(match.getString(verb), true);
+        plain.put(match.getString(status), true);
+      }
+      long middle = System.nanoTime();
+      Map<String, Boolean> interned = new IdentityHashMap<>();
+      for (String line : lines) {
+        Match match = internedGrok.match(line);
+        interned.put(match.getString(verb), true);
+        interned.put(match.getString(status), true);
+      }
+      if (round > 0) {
+        plainNanos += middle - start;
+        internedNanos += System.nanoTime() - middle;
+      }
+      plainDistinct = plain.size();
+      internedDistinct = interned.size();
+    }
+    assertEquals(2 * lines.size(), plainDistinct);
+    assertEquals(VERBS.length + 3, internedDistinct);
+    System.out.printf("interning: %d vs %d retained string instances, %d ms vs %d ms%n",
+        plainDistinct, internedDistinct, TimeUnit.NANOSECONDS.toMillis(plainNanos),
+        TimeUnit.NANOSECONDS.toMillis(internedNanos));
+  }
+}
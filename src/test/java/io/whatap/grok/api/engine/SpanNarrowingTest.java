@@ -0,0 +1,99 @@
+package io.whatap.grok.api.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import io.whatap.grok.api.Grok;
+import io.whatap.grok.api.GrokCompiler;
+import org.junit.Test;
+
+public class SpanNarrowingTest {
+
+  private static final String HEADER = "Mar  7 00:12:37 host sshd[1234]: Accepted publickey";
+
+  private static String longLine(int length, String tail) {
+    StringBuilder sb = new StringBuilder(length + tail.length());
+    while (sb.length() < length) {
+      sb.append("lorem ipsum dolor sit amet, consectetur ");
+    }
+    return sb.append(tail).toString();
+  }
+
+  private static void assertSameGroups(java.util.regex.Matcher expected, EngineMatcher actual) {
+    assertEquals(expected.groupCount(), actual.groupCount());
+    for (int group = 0; group <= expected.groupCount(); group++) {
+      assertEquals(expected.start(group), actual.start(group));
+      assertEquals(expected.end(group), actual.end(group));
+    }
+  }
+
+  @Test
+  public void longInputsGiveTheSameGroups() {
+    String regex = "(?<mon>\\w+) +(\\d+) (?<time>[\\d:]+) (?<host>\\w+) (?<prog>\\w+)\\[(?<pid>\\d+)\\]:( x)?";
+    String line = longLine(4096, HEADER + " then " + HEADER.replace("1234", "99"));
+    for (RegexEngine engine : new RegexEngine[] {new Re2jEngine(), new JavaRegexEngine(), new HybridEngine(0L, 1024)}) {
+      EngineMatcher matcher = engine.compile(regex).matcher(line);
+      java.util.regex.Matcher expected = java.util.regex.Pattern.compile(regex).matcher(line);
+      while (expected.find()) {
+        assertTrue(engine.getName(), matcher.find());
+        assertSameGroups(expected, matcher);
+      }
+      assertFalse(matcher.find());
+
+      matcher.reset("short " + HEADER);
+      assertTrue(matcher.find());
+      assertEquals(6, matcher.start());
+      matcher.reset(line);
+      assertFalse(matcher.lookingAt());
+      assertTrue(matcher.find());
+      assertFalse(matcher.matches());
+    }
+  }
+
+  /**
+   * One-pass (raw re2j) against two-pass extraction on 4-64 KB lines with the match at the end.
+   */
+  @Test
+  public void longLineBenchmark() throws Exception {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    compiler.setPrefilterEnabled(false);
+    Grok grok = compiler.compile("%{WORD:mon} +%{INT:day} %{INT:hh}:%{INT:mm}:%{INT:ss} %{WORD:host} "
+        + "%{WORD:prog}\\[%{INT:pid}\\]: %{WORD:word}", new Re2jEngine());
+    CompiledPattern pattern = grok.getCompiledPattern();
+    for (int kb = 4; kb <= 64; kb *= 4) {
+      String line = longLine(kb * 1024, HEADER);
+      EngineMatcher twoPass = pattern.matcher(line);
+      long onePassNanos = 0;
+      long twoPassNanos = 0;
+      for (int round = 0; round < 4; round++) {
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+          onePass(pattern, line);
+        }
+        long middle = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+          twoPass.reset(line);
+          assertTrue(twoPass.find());
+          twoPass.end(twoPass.groupCount());
+        }
+        if (round > 0) {
+          onePassNanos += middle - start;
+          twoPassNanos += System.nanoTime() - middle;
+        }
+      }
+      System.out.printf("re2j %2d KB: one-pass %.0f us, two-pass %.0f us%n", kb,
+          onePassNanos / 60.0 / TimeUnit.MICROSECONDS.toNanos(1),
+          twoPassNanos / 60.0 / TimeUnit.MICROSECONDS.toNanos(1));
+    }
+  }
+
+  private static void onePass(CompiledPattern pattern, String line) {
+    com.google.re2j.Matcher matcher = ((Re2jEngine.Re2jCompiledPattern) pattern).getRawPattern().matcher(line);
+    assertTrue(matcher.find());
+    matcher.end(matcher.groupCount());
+  }
+}
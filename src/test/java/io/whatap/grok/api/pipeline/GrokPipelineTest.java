@@ -0,0 +1,113 @@
+package io.whatap.grok.api.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.whatap.grok.api.Grok;
+import io.whatap.grok.api.GrokCompiler;
+import io.whatap.grok.api.exception.GrokException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GrokPipelineTest {
+
+  private Grok grok;
+
+  @Before
+  public void setUp() throws Exception {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    grok = compiler.compile("%{WORD:verb} /item/%{INT:id}");
+  }
+
+  private static String lines(int count) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sb.append(i % 7 == 0 ? "garbage " + i : "GET /item/" + i).append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void ringBufferIsBoundedAndFifo() {
+    SpscRingBuffer<Integer> ring = new SpscRingBuffer<>(3);
+    assertEquals(4, ring.capacity());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(i));
+    }
+    assertFalse(ring.offer(4));
+    assertEquals(4, ring.size());
+    assertEquals(Integer.valueOf(0), ring.poll());
+    assertTrue(ring.offer(4));
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(Integer.valueOf(i), ring.poll());
+    }
+    assertNull(ring.poll());
+  }
+
+  @Test
+  public void outputKeepsInputOrderAcrossLanes() throws Exception {
+    GrokPipeline<String> pipeline = new GrokPipeline<>(grok,
+        fields -> fields.isEmpty() ? "-" : String.valueOf(fields.get("id")));
+    pipeline.setMatchParallelism(3);
+    pipeline.setConvertParallelism(2);
+    pipeline.setEncodeParallelism(4);
+    pipeline.setQueueCapacity(8);
+
+    List<String> out = new ArrayList<>();
+    long count = pipeline.process(new StringReader(lines(5000)), out::add);
+
+    assertEquals(5000, count);
+    assertEquals(5000, out.size());
+    for (int i = 0; i < out.size(); i++) {
+      assertEquals(i % 7 == 0 ? "-" : String.valueOf(i), out.get(i));
+    }
+  }
+
+  @Test
+  public void statsReportEveryStage() throws Exception {
+    GrokPipeline<Map<String, Object>> pipeline = new GrokPipeline<>(grok, fields -> fields);
+    pipeline.setMatchParallelism(2);
+    pipeline.process(new StringReader(lines(1000)), fields -> { });
+
+    List<StageStats> stats = pipeline.getStats();
+    assertEquals(5, stats.size());
+    assertEquals("decode", stats.get(0).name);
+    assertEquals("match", stats.get(1).name);
+    assertEquals(2, stats.get(1).parallelism);
+    assertEquals("emit", stats.get(4).name);
+    for (StageStats stage : stats) {
+      assertEquals(stage.toString(), 1000, stage.processed);
+      assertEquals(0, stage.queueDepth);
+      assertTrue(stage.throughputPerSecond > 0);
+    }
+  }
+
+  @Test
+  public void stageFailureAbortsThePipeline() throws Exception {
+    GrokPipeline<String> pipeline = new GrokPipeline<>(grok, fields -> {
+      if ("43".equals(fields.get("id"))) {
+        throw new IllegalStateException("boom");
+      }
+      return "ok";
+    });
+    pipeline.setEncodeParallelism(2);
+    pipeline.setQueueCapacity(4);
+
+    try {
+      pipeline.process(new StringReader(lines(100000)), value -> { });
+      fail("expected GrokException");
+    } catch (GrokException expected) {
+      assertTrue(expected.getMessage().contains("encode"));
+      assertEquals("boom", expected.getCause().getMessage());
+    }
+  }
+}
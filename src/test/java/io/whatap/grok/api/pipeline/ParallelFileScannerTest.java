@@ -0,0 +1,173 @@
+package io.whatap.grok.api.pipeline;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.whatap.grok.api.Grok;
+import io.whatap.grok.api.GrokCompiler;
+import io.whatap.grok.api.GrokFileScanner;
+import io.whatap.grok.api.exception.GrokException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelFileScannerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Grok grok;
+  private File file;
+  private List<String> expected;
+
+  @Before
+  public void setUp() throws Exception {
+    GrokCompiler compiler = GrokCompiler.newInstance();
+    compiler.registerDefaultPatterns();
+    grok = compiler.compile("%{WORD:verb} /item/%{INT:id}");
+
+    StringBuilder sb = new StringBuilder();
+    expected = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      String line = i % 7 == 0 ? "garbage " + i : (i % 5 == 0 ? "PÜT" : "GET") + " /item/" + i;
+      sb.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+      expected.add(i % 7 == 0 ? "-" : String.valueOf(i));
+    }
+    sb.append("GET /item/5000");
+    expected.add("5000");
+    file = tempFolder.newFile();
+    Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private ParallelFileScanner<String> scanner() {
+    return new ParallelFileScanner<>(new GrokFileScanner(grok),
+        (line, result) -> result.isMatched() ? result.getMatch().getString(1) : "-");
+  }
+
+  @Test
+  public void chunksStartAtLineStarts() throws Exception {
+    byte[] content = Files.readAllBytes(file.toPath());
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long[] bounds = ParallelFileScanner.split(channel, 1000);
+      assertEquals(0, bounds[0]);
+      assertEquals(content.length, bounds[bounds.length - 1]);
+      for (int i = 1; i < bounds.length - 1; i++) {
+        assertEquals('\n', content[(int) bounds[i] - 1]);
+        assertTrue(bounds[i] > bounds[i - 1]);
+      }
+      assertArrayEquals(new long[] {0, content.length},
+          ParallelFileScanner.split(channel, content.length));
+    }
+  }
+
+  @Test
+  public void orderedOutputMatchesFileOrder() throws Exception {
+    for (long chunkSize : new long[] {1, 100, 4096, ParallelFileScanner.DEFAULT_CHUNK_SIZE}) {
+      ParallelFileScanner<String> scanner = scanner();
+      scanner.setParallelism(3);
+      scanner.setChunkSize(chunkSize);
+      List<String> out = new ArrayList<>();
+      List<ChunkStats> stats = scanner.scan(file.toPath(), out::add);
+      assertEquals("chunk size " + chunkSize, expected, out);
+
+      long lines = 0;
+      long matched = 0;
+      long bytes = 0;
+      for (int i = 0; i < stats.size(); i++) {
+        assertEquals(i, stats.get(i).index);
+        assertEquals(bytes, stats.get(i).offset);
+        lines += stats.get(i).lines;
+        matched += stats.get(i).matched;
+        bytes += stats.get(i).length;
+      }
+      assertEquals(expected.size(), lines);
+      assertEquals(expected.stream().filter(id -> !id.equals("-")).count(), matched);
+      assertEquals(file.length(), bytes);
+    }
+  }
+
+  @Test
+  public void unorderedOutputHasEveryLine() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      ParallelFileScanner<String> scanner = scanner();
+      scanner.setOrdered(false);
+      scanner.setExecutor(executor);
+      scanner.setChunkSize(2048);
+      ConcurrentLinkedQueue<String> out = new ConcurrentLinkedQueue<>();
+      scanner.scan(file.toPath(), out::add);
+      List<String> sorted = new ArrayList<>(out);
+      List<String> sortedExpected = new ArrayList<>(expected);
+      Collections.sort(sorted);
+      Collections.sort(sortedExpected);
+      assertEquals(sortedExpected, sorted);
+      assertTrue(!executor.isShutdown());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void workerFailureAbortsTheScan() throws Exception {
+    ParallelFileScanner<String> scanner = new ParallelFileScanner<>(new GrokFileScanner(grok),
+        (line, result) -> {
+          if (line.toString().equals("GET /item/4001")) {
+            throw new IllegalStateException("boom");
+          }
+          return "";
+        });
+    scanner.setChunkSize(1024);
+    try {
+      scanner.scan(file.toPath(), value -> { });
+      fail("expected GrokException");
+    } catch (GrokException e) {
+      assertTrue(e.getMessage().contains("boom"));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void missingFile() throws Exception {
+    scanner().scan(new File(tempFolder.getRoot(), "missing.log").toPath(), value -> { });
+  }
+
+  @Test
+  public void scalingBenchmark() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200_000; i++) {
+      sb.append("GET /item/").append(i).append('\n');
+    }
+    File large = tempFolder.newFile();
+    Files.write(large.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int parallelism = 1; parallelism <= Math.max(4, processors); parallelism *= 2) {
+      ParallelFileScanner<Object> scanner = new ParallelFileScanner<>(new GrokFileScanner(grok),
+          (line, result) -> null);
+      scanner.setParallelism(parallelism);
+      scanner.setChunkSize(256 * 1024);
+      scanner.setOrdered(false);
+      scanner.scan(large.toPath(), value -> { });
+      long start = System.nanoTime();
+      List<ChunkStats> stats = scanner.scan(large.toPath(), value -> { });
+      double seconds = (System.nanoTime() - start) / 1e9;
+      double perChunk = stats.stream().mapToDouble(ChunkStats::bytesPerSecond).average().orElse(0);
+      System.out.printf("parallel scan x%d (%d cpus): %.1f MB/s total, %.1f MB/s per chunk%n",
+          parallelism, processors, large.length() / seconds / 1e6, perChunk / 1e6);
+    }
+  }
+}